@@ -1,67 +1,225 @@
 package com.vogulev.online_monitor;
 
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.LongSupplier;
 
 /**
- * Manager for tracking AFK (Away From Keyboard) players
+ * Manager for tracking AFK (Away From Keyboard) players.
+ * Players are tracked from {@link #register} (on join) to {@link #removePlayer} (on quit); activity of
+ * untracked players is ignored. Every tracked player gets an int slot; activity time and AFK state live in primitive arrays indexed
+ * by slot, so recording activity is lock-free and allocation-free from any thread (including async chat).
+ * AFK deadlines are kept in a hashed timing wheel advanced by {@link #tick()}: a bucket is only checked
+ * when it expires, and players whose activity moved their deadline are re-inserted lazily.
+ * Enter and exit transitions happen under one lock and are reported exactly once to the {@link Listener}.
+ * Activity within the throttle window of the last recorded one is only read, not written, so high-rate
+ * sources like movement cost one map lookup and one volatile read per event.
  */
 public class AFKManager {
 
-    private final Map<String, Long> lastActivityTime = new HashMap<>();
+    /**
+     * Receives AFK transitions. Called while holding the tracker lock, so implementations must be quick
+     * and must not call back into AFKManager.
+     */
+    public interface Listener {
+        /**
+         * @param playerName Player name
+         * @param lastActivity Time of the last activity, epoch milliseconds
+         */
+        void onEnterAfk(String playerName, long lastActivity);
+
+        /**
+         * Called when the player becomes active again or stops being tracked while AFK
+         * @param playerName Player name
+         * @param lastActivity Time of the last activity before going AFK, epoch milliseconds
+         * @param now Time the AFK state ended, epoch milliseconds
+         */
+        void onExitAfk(String playerName, long lastActivity, long now);
+    }
+
+    private static final Listener NO_LISTENER = new Listener() {
+        @Override
+        public void onEnterAfk(final String playerName, final long lastActivity) {
+        }
+
+        @Override
+        public void onExitAfk(final String playerName, final long lastActivity, final long now) {
+        }
+    };
+
+    /**
+     * Resolution of the timing wheel
+     */
+    public static final long TICK_MILLIS = 1000L;
+
+    private static final int PAGE_BITS = 6;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private static final int FREE = 0;
+    private static final int ACTIVE = 1;
+    private static final int AFK = 2;
+
+    private static final int NONE = -1;
+
+    /**
+     * Lock-free part of a slot range; pages are never moved, so writes are never lost on growth
+     */
+    private static final class Page {
+        final AtomicLongArray lastActivity = new AtomicLongArray(PAGE_SIZE);
+        final AtomicIntegerArray state = new AtomicIntegerArray(PAGE_SIZE);
+    }
+
+    private final LongSupplier clock;
     private final long afkThresholdMillis;
+    private final long throttleMillis;
+    private final Map<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    private volatile Page[] pages = new Page[0];
+    private volatile int afkCount = 0;
+    private volatile Listener listener = NO_LISTENER;
+
+    // Guarded by lock
+    private String[] names = new String[0];
+    private int[] next = new int[0];
+    private int[] prev = new int[0];
+    private int[] bucketOf = new int[0];
+    private long[] afkSince = new long[0];
+    private int[] freeSlots = new int[0];
+    private int freeCount = 0;
+    private int slotCount = 0;
+    private final int[] wheel;
+    private long currentTick;
 
     /**
      * Create AFK manager with specified threshold
      * @param afkThresholdMinutes Minutes of inactivity before marking as AFK
+     * @param throttleMillis Activity closer than this to the last recorded one is not recorded again
+     */
+    public AFKManager(final int afkThresholdMinutes, final long throttleMillis) {
+        this(afkThresholdMinutes, throttleMillis, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock Current time, epoch milliseconds
      */
-    public AFKManager(final int afkThresholdMinutes) {
+    AFKManager(final int afkThresholdMinutes, final long throttleMillis, final LongSupplier clock) {
+        this.clock = clock;
         this.afkThresholdMillis = afkThresholdMinutes * 60 * 1000L;
+        // Recorded activity may lag by up to the throttle window, keep that well below the threshold
+        this.throttleMillis = Math.max(0, Math.min(throttleMillis, afkThresholdMillis / 2));
+        // One rotation covers the whole threshold, so every deadline lands within the next rotation
+        this.wheel = new int[(int) (afkThresholdMillis / TICK_MILLIS) + 2];
+        Arrays.fill(wheel, NONE);
+        this.currentTick = clock.getAsLong() / TICK_MILLIS;
+    }
+
+    /**
+     * @param listener Receiver of AFK transitions, or null to remove it
+     */
+    public void setListener(final Listener listener) {
+        this.listener = listener != null ? listener : NO_LISTENER;
+    }
+
+    /**
+     * Start tracking a player (on join); joining counts as activity
+     * @param playerId Player UUID
+     * @param playerName Player name, reported to the listener
+     */
+    public void register(final UUID playerId, final String playerName) {
+        final long now = clock.getAsLong();
+        synchronized (lock) {
+            final Integer existing = slots.get(playerId);
+            if (existing != null) {
+                pages[existing >>> PAGE_BITS].lastActivity.set(existing & PAGE_MASK, now);
+                names[existing] = playerName;
+                return;
+            }
+            final int slot = freeCount > 0 ? freeSlots[--freeCount] : allocateSlot();
+            final Page page = pages[slot >>> PAGE_BITS];
+            page.lastActivity.set(slot & PAGE_MASK, now);
+            page.state.set(slot & PAGE_MASK, ACTIVE);
+            names[slot] = playerName;
+            link(slot, now + afkThresholdMillis);
+            slots.put(playerId, slot);
+        }
     }
 
     /**
-     * Update player's last activity time
-     * @param playerName Player name
+     * Update player's last activity time. Safe to call from any thread.
+     * Ignored for players that are not tracked (not registered or already removed).
+     * @param playerId Player UUID
      */
-    public void updateActivity(final String playerName) {
-        lastActivityTime.put(playerName, System.currentTimeMillis());
+    public void updateActivity(final UUID playerId) {
+        final Integer slot = slots.get(playerId);
+        if (slot == null) {
+            return;
+        }
+        final Page page = pages[slot >>> PAGE_BITS];
+        final int index = slot & PAGE_MASK;
+        final long now = clock.getAsLong();
+        if (now - page.lastActivity.get(index) < throttleMillis && page.state.get(index) != AFK) {
+            return;
+        }
+        // Write first, then check: either tick() sees the new time or this sees its AFK state
+        page.lastActivity.set(index, now);
+        if (page.state.get(index) == AFK) {
+            exitAfk(slot, now);
+        }
     }
 
     /**
-     * Remove player from tracking (e.g., on quit)
-     * @param playerName Player name
+     * Remove player from tracking (e.g., on quit). Reports the AFK exit if the player was AFK.
+     * @param playerId Player UUID
      */
-    public void removePlayer(final String playerName) {
-        lastActivityTime.remove(playerName);
+    public void removePlayer(final UUID playerId) {
+        synchronized (lock) {
+            final Integer slot = slots.remove(playerId);
+            if (slot == null) {
+                return;
+            }
+            final Page page = pages[slot >>> PAGE_BITS];
+            final int index = slot & PAGE_MASK;
+            if (page.state.getAndSet(index, FREE) == AFK) {
+                afkCount--;
+                listener.onExitAfk(names[slot], afkSince[slot], clock.getAsLong());
+            }
+            unlink(slot);
+            names[slot] = null;
+            if (freeCount == freeSlots.length) {
+                freeSlots = Arrays.copyOf(freeSlots, Math.max(PAGE_SIZE, freeSlots.length * 2));
+            }
+            freeSlots[freeCount++] = slot;
+        }
     }
 
     /**
      * Check if player is AFK
-     * @param playerName Player name
+     * @param playerId Player UUID
      * @return true if player is AFK
      */
-    public boolean isAFK(final String playerName) {
-        final Long lastActivity = lastActivityTime.get(playerName);
-        if (lastActivity == null) {
-            return false;
-        }
-        final long timeSinceActivity = System.currentTimeMillis() - lastActivity;
-        return timeSinceActivity >= afkThresholdMillis;
+    public boolean isAFK(final UUID playerId) {
+        final Integer slot = slots.get(playerId);
+        return slot != null && pages[slot >>> PAGE_BITS].state.get(slot & PAGE_MASK) == AFK;
     }
 
     /**
      * Get time in milliseconds since last activity
-     * @param playerName Player name
+     * @param playerId Player UUID
      * @return Time since last activity, or 0 if not tracked
      */
-    public long getTimeSinceActivity(final String playerName) {
-        final Long lastActivity = lastActivityTime.get(playerName);
-        if (lastActivity == null) {
+    public long getTimeSinceActivity(final UUID playerId) {
+        final Integer slot = slots.get(playerId);
+        if (slot == null) {
             return 0;
         }
-        return System.currentTimeMillis() - lastActivity;
+        return clock.getAsLong() - pages[slot >>> PAGE_BITS].lastActivity.get(slot & PAGE_MASK);
     }
 
     /**
@@ -69,11 +227,15 @@ public class AFKManager {
      * @return Set of AFK player names
      */
     public Set<String> getAFKPlayers() {
-        final long currentTime = System.currentTimeMillis();
-        return lastActivityTime.entrySet().stream()
-            .filter(entry -> currentTime - entry.getValue() >= afkThresholdMillis)
-            .map(Map.Entry::getKey)
-            .collect(Collectors.toSet());
+        final Set<String> afkPlayers = new HashSet<>();
+        synchronized (lock) {
+            for (final int slot : slots.values()) {
+                if (pages[slot >>> PAGE_BITS].state.get(slot & PAGE_MASK) == AFK) {
+                    afkPlayers.add(names[slot]);
+                }
+            }
+        }
+        return afkPlayers;
     }
 
     /**
@@ -81,13 +243,119 @@ public class AFKManager {
      * @return Number of AFK players
      */
     public int getAFKCount() {
-        return getAFKPlayers().size();
+        return afkCount;
+    }
+
+    /**
+     * Advances the timing wheel to the current time and marks players whose deadline passed as AFK.
+     * Intended to run every {@link #TICK_MILLIS} on an async timer; late ticks catch up.
+     */
+    public void tick() {
+        final long now = clock.getAsLong();
+        final long targetTick = now / TICK_MILLIS;
+        synchronized (lock) {
+            // After a long stall one full rotation visits every bucket
+            final long from = Math.max(currentTick + 1, targetTick - wheel.length + 1);
+            currentTick = targetTick;
+            for (long tick = from; tick <= targetTick; tick++) {
+                expireBucket((int) (tick % wheel.length), now);
+            }
+        }
     }
 
     /**
      * Clear all tracking data
      */
     public void clear() {
-        lastActivityTime.clear();
+        synchronized (lock) {
+            for (final UUID playerId : slots.keySet().toArray(new UUID[0])) {
+                removePlayer(playerId);
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        final int slot = slotCount++;
+        if (slot >= names.length) {
+            final int capacity = names.length + PAGE_SIZE;
+            final Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+            grown[pages.length] = new Page();
+            pages = grown;
+            names = Arrays.copyOf(names, capacity);
+            next = Arrays.copyOf(next, capacity);
+            prev = Arrays.copyOf(prev, capacity);
+            bucketOf = Arrays.copyOf(bucketOf, capacity);
+            afkSince = Arrays.copyOf(afkSince, capacity);
+            Arrays.fill(bucketOf, slot, capacity, NONE);
+        }
+        return slot;
+    }
+
+    private void exitAfk(final int slot, final long now) {
+        synchronized (lock) {
+            if (pages[slot >>> PAGE_BITS].state.compareAndSet(slot & PAGE_MASK, AFK, ACTIVE)) {
+                afkCount--;
+                listener.onExitAfk(names[slot], afkSince[slot], now);
+                link(slot, now + afkThresholdMillis);
+            }
+        }
+    }
+
+    private void expireBucket(final int bucket, final long now) {
+        int slot = wheel[bucket];
+        wheel[bucket] = NONE;
+        while (slot != NONE) {
+            final int following = next[slot];
+            bucketOf[slot] = NONE;
+            final Page page = pages[slot >>> PAGE_BITS];
+            final int index = slot & PAGE_MASK;
+            final long lastActivity = page.lastActivity.get(index);
+            final long deadline = lastActivity + afkThresholdMillis;
+            if (deadline > now) {
+                link(slot, deadline);
+            } else if (page.state.compareAndSet(index, ACTIVE, AFK)) {
+                // Activity recorded between the read and the state change wins
+                final long latest = page.lastActivity.get(index);
+                if (latest + afkThresholdMillis > now) {
+                    page.state.set(index, ACTIVE);
+                    link(slot, latest + afkThresholdMillis);
+                } else {
+                    afkSince[slot] = latest;
+                    afkCount++;
+                    listener.onEnterAfk(names[slot], latest);
+                }
+            }
+            slot = following;
+        }
+    }
+
+    private void link(final int slot, final long deadline) {
+        // Never into a bucket that was already processed in this rotation
+        final long tick = Math.max(deadline / TICK_MILLIS, currentTick + 1);
+        final int bucket = (int) (tick % wheel.length);
+        final int head = wheel[bucket];
+        next[slot] = head;
+        prev[slot] = NONE;
+        if (head != NONE) {
+            prev[head] = slot;
+        }
+        wheel[bucket] = slot;
+        bucketOf[slot] = bucket;
+    }
+
+    private void unlink(final int slot) {
+        final int bucket = bucketOf[slot];
+        if (bucket == NONE) {
+            return;
+        }
+        if (prev[slot] != NONE) {
+            next[prev[slot]] = next[slot];
+        } else {
+            wheel[bucket] = next[slot];
+        }
+        if (next[slot] != NONE) {
+            prev[next[slot]] = prev[slot];
+        }
+        bucketOf[slot] = NONE;
     }
 }
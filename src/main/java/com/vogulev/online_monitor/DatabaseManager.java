@@ -1,16 +1,51 @@
 package com.vogulev.online_monitor;
 
 import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.DatabaseExecutor;
+import com.vogulev.online_monitor.database.DatabaseExecutor.RejectionPolicy;
+import com.vogulev.online_monitor.database.LeaderboardEngine;
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.LeaderboardPeriod;
+import com.vogulev.online_monitor.database.PeriodLeaderboards;
+import com.vogulev.online_monitor.database.PlayerLifecycleEvent;
+import com.vogulev.online_monitor.database.PlayerLifecyclePipeline;
+import com.vogulev.online_monitor.database.PlayerProfile;
+import com.vogulev.online_monitor.database.PlayerProfileCache;
+import com.vogulev.online_monitor.database.PlayerStatsBuffer;
+import com.vogulev.online_monitor.database.PlayerStatsDelta;
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+import com.vogulev.online_monitor.database.OnlineHistory;
+import com.vogulev.online_monitor.database.QueryPlanVerifier;
+import com.vogulev.online_monitor.database.RetentionEngine;
+import com.vogulev.online_monitor.database.RetentionPolicy;
+import com.vogulev.online_monitor.database.RetentionPolicy.Resolution;
+import com.vogulev.online_monitor.database.ServerStatsSnapshot;
 import com.vogulev.online_monitor.database.repositories.AnalyticsRepository;
+import com.vogulev.online_monitor.database.repositories.AnalyticsRepository.OnlineSample;
+import com.vogulev.online_monitor.database.repositories.PlayerDailyStatsRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository.PlayerRef;
 import com.vogulev.online_monitor.database.repositories.PlayerStatsRepository;
+import com.vogulev.online_monitor.database.repositories.ServerCountersRepository;
 import com.vogulev.online_monitor.database.repositories.ServerStatsRepository;
 import com.vogulev.online_monitor.database.repositories.SessionRepository;
 import org.bukkit.plugin.Plugin;
 
 import java.io.File;
+import java.sql.Connection;
 import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
 import java.util.logging.Logger;
 
 /**
@@ -20,54 +55,161 @@ import java.util.logging.Logger;
 public class DatabaseManager {
     private static final Logger logger = Logger.getLogger("OnlineMonitor");
     private final File dataFolder;
+    private ZoneId zone = ZoneOffset.UTC;
 
     private ConnectionManager connectionManager;
     private ServerStatsRepository serverStatsRepo;
+    private PlayerRepository playerRepo;
     private PlayerStatsRepository playerStatsRepo;
+    private PlayerDailyStatsRepository dailyStatsRepo;
     private SessionRepository sessionRepo;
+    private ServerCountersRepository countersRepo;
     private AnalyticsRepository analyticsRepo;
+    private final PlayerStatsBuffer statsBuffer = new PlayerStatsBuffer();
+    private final LeaderboardEngine leaderboards = new LeaderboardEngine();
+    private PeriodLeaderboards periodLeaderboards;
+    private PlayerProfileCache profiles;
+    private int dailyStatsDaysToKeep;
+    private final AtomicInteger pendingMaxOnline = new AtomicInteger();
+    private final ConcurrentLinkedDeque<OnlineSample> pendingSnapshots = new ConcurrentLinkedDeque<>();
+    private DatabaseExecutor executor;
+    private PlayerLifecyclePipeline lifecyclePipeline;
+    private RetentionPolicy retentionPolicy;
+    private RetentionEngine retentionEngine;
+    private volatile ServerStatsSnapshot statsSnapshot = ServerStatsSnapshot.EMPTY;
 
     public DatabaseManager(final File dataFolder) {
         this.dataFolder = dataFolder;
     }
 
-    public void setTimezoneOffset(final String offset) {
+    /**
+     * Sets the time zone used for hour/day/weekday analytics
+     * @param timezone Zone id (e.g. Europe/Moscow), or null/empty to use the fixed offset
+     * @param offset Fallback offset in hours from UTC (e.g. +3)
+     */
+    public void setTimezone(final String timezone, final String offset) {
+        try {
+            if (timezone != null && !timezone.isBlank()) {
+                zone = ZoneId.of(timezone.trim());
+            } else if (offset != null && !offset.isBlank()) {
+                zone = ZoneOffset.of(offset.trim());
+            }
+        } catch (final DateTimeException e) {
+            logger.warning("Invalid timezone setting, using UTC: " + e.getMessage());
+            zone = ZoneOffset.UTC;
+        }
+        logger.info("Analytics timezone set to " + zone);
         if (connectionManager != null) {
-            connectionManager.setTimezoneOffset(offset);
+            connectionManager.setZone(zone);
         }
     }
 
     public void connect(final org.bukkit.configuration.file.FileConfiguration config) throws SQLException {
         connectionManager = new ConnectionManager();
+        connectionManager.setZone(zone);
         connectionManager.connect(config, dataFolder);
 
+        if (config.getBoolean("database.query-plan-check.enabled", true)) {
+            try (Connection conn = connectionManager.getReadConnection()) {
+                new QueryPlanVerifier(conn)
+                        .verify(config.getBoolean("database.query-plan-check.fail-on-full-scan", false));
+            }
+        }
+
         serverStatsRepo = new ServerStatsRepository(connectionManager);
-        playerStatsRepo = new PlayerStatsRepository(connectionManager);
+        playerRepo = new PlayerRepository(connectionManager);
+        dailyStatsRepo = new PlayerDailyStatsRepository(connectionManager);
+        dailyStatsRepo.backfill(LeaderboardPeriod.maxDays());
+        periodLeaderboards = new PeriodLeaderboards(dailyStatsRepo,
+                config.getInt("statistics.period-leaderboard-cache-seconds", 60));
+        dailyStatsDaysToKeep = Math.max(LeaderboardPeriod.maxDays(),
+                config.getInt("player-daily-stats-days-to-keep", 90));
+        playerStatsRepo = new PlayerStatsRepository(connectionManager, playerRepo, dailyStatsRepo);
+        playerStatsRepo.loadLeaderboards(leaderboards);
         sessionRepo = new SessionRepository(connectionManager);
+        countersRepo = new ServerCountersRepository(connectionManager);
+        countersRepo.load();
+        sessionRepo.closeStaleSessions(countersRepo);
         analyticsRepo = new AnalyticsRepository(connectionManager);
+        analyticsRepo.backfillDailyRollups();
+        retentionPolicy = RetentionPolicy.fromConfig(config);
+        retentionEngine = new RetentionEngine(analyticsRepo, retentionPolicy,
+                ConnectionManager.MYSQL.equals(connectionManager.getDatabaseType()));
+
+        profiles = new PlayerProfileCache(config.getInt("statistics.profile-cache-size", 1000),
+                config.getInt("statistics.profile-cache-seconds", 300));
+
+        executor = createExecutor(config);
+        lifecyclePipeline = new PlayerLifecyclePipeline(connectionManager, executor, playerRepo, playerStatsRepo,
+                dailyStatsRepo, sessionRepo, countersRepo, leaderboards, profiles);
+        refreshStatsSnapshot();
     }
 
     public void disconnect() {
+        if (retentionEngine != null) {
+            retentionEngine.stop();
+        }
+        if (executor != null) {
+            executor.shutdown(10000L);
+        }
+        if (lifecyclePipeline != null) {
+            lifecyclePipeline.flush();
+        }
         if (connectionManager != null) {
+            flushStatsBuffer();
+            flushOnlineSnapshots();
+            if (serverStatsRepo != null) {
+                serverStatsRepo.flushUniquePlayers();
+            }
             connectionManager.disconnect();
         }
     }
 
-    // === Async Helper Methods ===
-    private CompletableFuture<Void> runAsync(final Runnable task) {
-        return CompletableFuture.runAsync(() -> {
-            try {
-                task.run();
-            } catch (Exception e) {
-                logger.severe("Error in async database operation: " + e.getMessage());
-                e.printStackTrace();
-            }
-        });
+    /**
+     * Creates the write executor from the database.executor section
+     */
+    private DatabaseExecutor createExecutor(final org.bukkit.configuration.file.FileConfiguration config) {
+        final int queueCapacity = config.getInt("database.executor.queue-capacity", 10000);
+        final RejectionPolicy policy = RejectionPolicy.fromString(
+                config.getString("database.executor.rejection-policy", "discard-oldest"));
+        return new DatabaseExecutor(queueCapacity, policy);
+    }
+
+    // === Executor Metrics ===
+    public DatabaseExecutor.Metrics getExecutorMetrics() {
+        return executor.getMetrics();
+    }
+
+    // === Shared Statistics Snapshot ===
+
+    /**
+     * Recomputes the server statistics snapshot and publishes it to all readers.
+     * Runs database queries, call it off the server thread.
+     */
+    public void refreshStatsSnapshot() {
+        statsSnapshot = new ServerStatsSnapshot(
+                serverStatsRepo.getMaxOnline(),
+                serverStatsRepo.getUniquePlayersCount(),
+                (int) countersRepo.getTotalSessions(),
+                (int) countersRepo.getActiveSessions(),
+                countersRepo.getTotalPlaytime(),
+                countersRepo.getTotalActiveTime(),
+                getTopPlayersByJoins(ServerStatsSnapshot.TOP_PLAYERS),
+                getTopScores(LeaderboardMetric.ACTIVE_TIME, ServerStatsSnapshot.TOP_PLAYERS),
+                System.currentTimeMillis());
+    }
+
+    /**
+     * @return Latest server statistics snapshot, never null; does not touch the database
+     */
+    public ServerStatsSnapshot getStatsSnapshot() {
+        return statsSnapshot;
     }
 
     // === Server Stats Methods (delegate to ServerStatsRepository) ===
     public void updateMaxOnline(final int currentOnline) {
-        runAsync(() -> serverStatsRepo.updateMaxOnline(currentOnline));
+        pendingMaxOnline.accumulateAndGet(currentOnline, Math::max);
+        executor.executeMerging("max-online", () -> serverStatsRepo.updateMaxOnline(pendingMaxOnline.get()));
     }
 
     public int getMaxOnline() {
@@ -75,7 +217,8 @@ public class DatabaseManager {
     }
 
     public void incrementUniquePlayer() {
-        runAsync(() -> serverStatsRepo.incrementUniquePlayer());
+        serverStatsRepo.recordUniquePlayer();
+        executor.executeMerging("unique-players", serverStatsRepo::flushUniquePlayers);
     }
 
     public int getUniquePlayersCount() {
@@ -83,50 +226,166 @@ public class DatabaseManager {
     }
 
     // === Player Stats Methods (delegate to PlayerStatsRepository) ===
-    public void recordPlayerJoin(final String playerName) {
-        runAsync(() -> {
-            playerStatsRepo.recordPlayerJoin(playerName);
-            sessionRepo.createSession(playerName);
-        });
+    public void recordPlayerJoin(final UUID playerId, final String playerName) {
+        lifecyclePipeline.enqueue(new PlayerLifecycleEvent.Join(playerId, playerName, System.currentTimeMillis()));
+    }
+
+    /**
+     * @param sessionDuration Whole session length, milliseconds
+     * @param afkDuration Part of the session the player was AFK, milliseconds
+     */
+    public void recordPlayerQuit(final UUID playerId, final String playerName, final long sessionDuration,
+                                 final long afkDuration) {
+        final long afk = Math.max(0, Math.min(afkDuration, sessionDuration));
+        lifecyclePipeline.enqueue(new PlayerLifecycleEvent.Quit(playerId, playerName, sessionDuration, afk,
+                System.currentTimeMillis()));
+    }
+
+    /**
+     * @param listener Called with the player UUID and session id after a session row is committed
+     */
+    public void setSessionOpenedListener(final BiConsumer<UUID, Long> listener) {
+        lifecyclePipeline.setSessionOpenedListener(listener);
+    }
+
+    /**
+     * Profile of the player that last used the given name, including statistics not written yet.
+     * Online players and recently read players are served from memory; others are read with one query.
+     * @return Profile, or null if no player ever used the name
+     */
+    public PlayerProfile getPlayerProfile(final String playerName) {
+        PlayerProfile profile = profiles.get(playerName);
+        if (profile == null) {
+            final long generation = profiles.generation();
+            profile = playerStatsRepo.getProfile(playerName);
+            if (profile == null) {
+                return null;
+            }
+            profiles.put(profile, generation);
+        }
+        final UUID uuid = profile.uuid();
+        return uuid != null ? profile.withCounters(counter -> statsBuffer.getPending(uuid, counter), 0) : profile;
     }
 
-    public void recordPlayerQuit(final String playerName, final long sessionDuration) {
-        runAsync(() -> {
-            sessionRepo.closeSession(playerName, sessionDuration);
-            playerStatsRepo.updatePlaytime(playerName, sessionDuration);
-        });
+    public Map<String, Integer> getTopPlayersByJoins(final int limit) {
+        final Map<String, Integer> topPlayers = new LinkedHashMap<>();
+        for (final Ranking ranking : leaderboards.page(LeaderboardMetric.JOINS, 0, limit)) {
+            topPlayers.put(ranking.playerName(), (int) ranking.score());
+        }
+        return topPlayers;
     }
 
-    public int getPlayerJoinCount(final String playerName) {
-        return playerStatsRepo.getPlayerJoinCount(playerName);
+    // === Leaderboards (in memory, see LeaderboardEngine) ===
+
+    /**
+     * @return Top scores by player name, best first
+     */
+    public Map<String, Long> getTopScores(final LeaderboardMetric metric, final int limit) {
+        final Map<String, Long> topPlayers = new LinkedHashMap<>();
+        for (final Ranking ranking : leaderboards.page(metric, 0, limit)) {
+            topPlayers.put(ranking.playerName(), ranking.score());
+        }
+        return topPlayers;
     }
 
-    public long getPlayerTotalPlaytime(final String playerName) {
-        return playerStatsRepo.getPlayerTotalPlaytime(playerName);
+    /**
+     * @param offset Number of best players to skip
+     * @param limit Maximum number of players
+     * @return Players at positions offset+1 .. offset+limit, best first
+     */
+    public List<Ranking> getLeaderboard(final LeaderboardMetric metric, final int offset, final int limit) {
+        return leaderboards.page(metric, offset, limit);
     }
 
-    public Map<String, Integer> getTopPlayersByJoins(final int limit) {
-        return playerStatsRepo.getTopPlayersByJoins(limit);
+    /**
+     * @return Position and score of the player, or null if the player is unknown
+     */
+    public Ranking getLeaderboardRank(final LeaderboardMetric metric, final String playerName) {
+        final PlayerRef player = playerRepo.findByName(playerName);
+        return player != null ? leaderboards.rank(metric, player.id()) : null;
+    }
+
+    /**
+     * @return Number of players on the leaderboard
+     */
+    public int getLeaderboardSize(final LeaderboardMetric metric) {
+        return leaderboards.size(metric);
+    }
+
+    /**
+     * Daily, weekly or monthly leaderboard, served from a cache refreshed every
+     * statistics.period-leaderboard-cache-seconds; only the best {@value PeriodLeaderboards#MAX_ENTRIES} are kept.
+     * May query the database, call it off the server thread.
+     * @param offset Number of best players to skip
+     * @param limit Maximum number of players
+     */
+    public List<Ranking> getPeriodLeaderboard(final LeaderboardMetric metric, final LeaderboardPeriod period,
+                                              final int offset, final int limit) {
+        return periodLeaderboards.page(metric, period, offset, limit);
+    }
+
+    /**
+     * @return Position and score of the player in the period, or null if not among the best
+     */
+    public Ranking getPeriodLeaderboardRank(final LeaderboardMetric metric, final LeaderboardPeriod period,
+                                            final String playerName) {
+        return periodLeaderboards.rank(metric, period, playerName);
+    }
+
+    /**
+     * @return Number of players in the cached top of the period
+     */
+    public int getPeriodLeaderboardSize(final LeaderboardMetric metric, final LeaderboardPeriod period) {
+        return periodLeaderboards.get(metric, period).size();
     }
 
     public long getTotalPlaytime() {
-        return playerStatsRepo.getTotalPlaytime();
+        return countersRepo.getTotalPlaytime();
     }
 
     // === Session Methods (delegate to SessionRepository) ===
 
     public int getTotalSessions() {
-        return sessionRepo.getTotalSessions();
+        return (int) countersRepo.getTotalSessions();
     }
 
     public int getActiveSessions() {
-        return sessionRepo.getActiveSessions();
+        return (int) countersRepo.getActiveSessions();
+    }
+
+    /**
+     * Queues a reconciliation of the server counters with the source tables.
+     * Runs on the database executor, serialized with the session writes that update the counters.
+     */
+    public void scheduleCounterReconcile() {
+        executor.executeMerging("counters-reconcile", countersRepo::reconcile);
     }
 
     // === Analytics Methods (delegate to AnalyticsRepository) ===
 
     public void recordOnlineSnapshot(final int onlineCount) {
-        runAsync(() -> analyticsRepo.recordOnlineSnapshot(onlineCount));
+        pendingSnapshots.add(new OnlineSample(onlineCount, System.currentTimeMillis()));
+        executor.executeMerging("online-snapshots", this::flushOnlineSnapshots);
+    }
+
+    /**
+     * Writes queued online snapshots in one transaction.
+     * Failed snapshots are put back in front of the queue and retried on the next flush.
+     */
+    private synchronized void flushOnlineSnapshots() {
+        if (analyticsRepo == null) {
+            return;
+        }
+        final List<OnlineSample> drained = new ArrayList<>();
+        OnlineSample sample;
+        while ((sample = pendingSnapshots.poll()) != null) {
+            drained.add(sample);
+        }
+        if (!drained.isEmpty() && !analyticsRepo.recordOnlineSnapshots(drained)) {
+            for (int i = drained.size() - 1; i >= 0; i--) {
+                pendingSnapshots.addFirst(drained.get(i));
+            }
+        }
     }
 
     public Map<Integer, Double> getHourlyAverages(final int days) {
@@ -145,61 +404,121 @@ public class DatabaseManager {
         return analyticsRepo.getPeakHours(days);
     }
 
-    public void cleanOldSnapshots(final int daysToKeep) {
-        analyticsRepo.cleanOldSnapshots(daysToKeep);
+    /**
+     * Online history for the last days, at the finest resolution the retention policy still keeps
+     */
+    public OnlineHistory getOnlineHistory(final int days) {
+        final Resolution resolution = retentionPolicy.resolutionFor(days);
+        return new OnlineHistory(resolution, analyticsRepo.getOnlineHistory(days, resolution));
+    }
+
+    /**
+     * Applies tiered retention: raw snapshots and hourly rollups past their retention are deleted
+     * in chunks, daily rollups are kept forever. Player daily buckets older than
+     * player-daily-stats-days-to-keep are deleted as well. Blocks until done, call it off the server thread.
+     */
+    public void applyRetention() {
+        retentionEngine.run();
+        final int buckets = dailyStatsRepo.deleteBefore(dailyStatsRepo.today().minusDays(dailyStatsDaysToKeep));
+        if (buckets > 0) {
+            logger.info("Retention: deleted " + buckets + " player daily statistics bucket(s)");
+        }
     }
 
-    // === Extended Statistics Methods ===
-
-    public void incrementDeaths(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementDeaths(playerName));
+    public RetentionEngine.Metrics getRetentionMetrics() {
+        return retentionEngine.getMetrics();
     }
 
-    public void incrementMobKills(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementMobKills(playerName));
+    // === Extended Statistics Methods ===
+
+    public void incrementDeaths(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.DEATHS);
     }
 
-    public void incrementPlayerKills(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementPlayerKills(playerName));
+    public void incrementMobKills(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.MOB_KILLS);
     }
 
-    public void incrementBlocksBroken(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementBlocksBroken(playerName));
+    public void incrementPlayerKills(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.PLAYER_KILLS);
     }
 
-    public void incrementBlocksPlaced(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementBlocksPlaced(playerName));
+    public void incrementBlocksBroken(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.BLOCKS_BROKEN);
     }
 
-    public void incrementMessagesSent(final String playerName) {
-        runAsync(() -> playerStatsRepo.incrementMessagesSent(playerName));
+    public void incrementBlocksPlaced(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.BLOCKS_PLACED);
     }
 
-    public void updateLastActivity(final String playerName) {
-        runAsync(() -> playerStatsRepo.updateLastActivity(playerName));
+    public void incrementMessagesSent(final UUID playerId, final String playerName) {
+        statsBuffer.increment(playerId, playerName, Counter.MESSAGES_SENT);
     }
 
-    public int getPlayerDeaths(final String playerName) {
-        return playerStatsRepo.getPlayerDeaths(playerName);
+    /**
+     * Adds a sampled statistics difference to the buffer; written with the next flush
+     */
+    public void addStatistic(final UUID playerId, final String playerName, final Counter counter, final int amount) {
+        statsBuffer.add(playerId, playerName, counter, amount);
     }
 
-    public int getPlayerMobKills(final String playerName) {
-        return playerStatsRepo.getPlayerMobKills(playerName);
+    /**
+     * Queues a write of buffered statistics counters; merged with an already queued one
+     */
+    public void scheduleStatsFlush() {
+        executor.executeMerging("stats-flush", this::flushStatsBuffer);
     }
 
-    public int getPlayerPlayerKills(final String playerName) {
-        return playerStatsRepo.getPlayerPlayerKills(playerName);
+    /**
+     * Writes buffered statistics counters to the database.
+     * Failed writes are returned to the buffer and retried on the next flush.
+     */
+    public synchronized void flushStatsBuffer() {
+        if (playerStatsRepo == null) {
+            return;
+        }
+        final Map<UUID, PlayerStatsDelta> drained = statsBuffer.drain();
+        if (drained.isEmpty()) {
+            return;
+        }
+        final Map<UUID, PlayerRef> players = playerStatsRepo.applyStatsDeltas(drained);
+        if (players != null) {
+            statsBuffer.complete(drained);
+            publishProfiles(drained, players);
+            publishLeaderboards(drained, players);
+        } else {
+            statsBuffer.restore(drained);
+        }
     }
 
-    public int getPlayerBlocksBroken(final String playerName) {
-        return playerStatsRepo.getPlayerBlocksBroken(playerName);
+    /**
+     * Applies committed statistics deltas to the cached profiles; done after the deltas stop
+     * being pending, so a profile read never counts them twice
+     */
+    private void publishProfiles(final Map<UUID, PlayerStatsDelta> deltas, final Map<UUID, PlayerRef> players) {
+        for (final Map.Entry<UUID, PlayerStatsDelta> entry : deltas.entrySet()) {
+            final PlayerStatsDelta delta = entry.getValue();
+            profiles.update(players.get(entry.getKey()).id(),
+                    profile -> profile.withCounters(delta::get, delta.getLastActivity()));
+        }
     }
 
-    public int getPlayerBlocksPlaced(final String playerName) {
-        return playerStatsRepo.getPlayerBlocksPlaced(playerName);
+    /**
+     * Applies committed statistics deltas to the leaderboards
+     */
+    private void publishLeaderboards(final Map<UUID, PlayerStatsDelta> deltas, final Map<UUID, PlayerRef> players) {
+        for (final Map.Entry<UUID, PlayerStatsDelta> entry : deltas.entrySet()) {
+            final PlayerRef player = players.get(entry.getKey());
+            for (final Counter counter : Counter.values()) {
+                leaderboards.add(player.id(), player.name(), LeaderboardMetric.of(counter), entry.getValue().get(counter));
+            }
+        }
     }
 
-    public int getPlayerMessagesSent(final String playerName) {
-        return playerStatsRepo.getPlayerMessagesSent(playerName);
+    /**
+     * Records player activity in memory; last_activity is written with the next statistics flush
+     */
+    public void updateLastActivity(final UUID playerId, final String playerName) {
+        statsBuffer.touch(playerId, playerName, System.currentTimeMillis());
     }
 }
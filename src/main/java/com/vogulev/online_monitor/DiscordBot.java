@@ -1,5 +1,10 @@
 package com.vogulev.online_monitor;
 
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.LeaderboardPeriod;
+import com.vogulev.online_monitor.database.PlayerProfile;
+import com.vogulev.online_monitor.database.ServerStatsSnapshot;
 import net.dv8tion.jda.api.EmbedBuilder;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
@@ -8,11 +13,13 @@ import net.dv8tion.jda.api.entities.channel.concrete.TextChannel;
 import net.dv8tion.jda.api.events.interaction.command.SlashCommandInteractionEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
 import net.dv8tion.jda.api.interactions.commands.OptionType;
+import net.dv8tion.jda.api.interactions.commands.OptionMapping;
 import net.dv8tion.jda.api.interactions.commands.build.Commands;
+import net.dv8tion.jda.api.interactions.commands.build.OptionData;
 import net.dv8tion.jda.api.requests.GatewayIntent;
 
 import java.awt.Color;
-import java.util.Map;
+import java.util.List;
 import java.util.logging.Logger;
 
 import static com.vogulev.online_monitor.i18n.LocalizationManager.getMessage;
@@ -49,7 +56,9 @@ public class DiscordBot extends ListenerAdapter {
             jda.updateCommands().addCommands(
                     Commands.slash("online", getMessage("discord.command.online")),
                     Commands.slash("stats", getMessage("discord.command.stats")),
-                    Commands.slash("top", getMessage("discord.command.top")),
+                    Commands.slash("top", getMessage("discord.command.top"))
+                            .addOptions(createMetricOption(), createPeriodOption())
+                            .addOption(OptionType.STRING, "nickname", getMessage("discord.command.top.player"), false),
                     Commands.slash("player", getMessage("discord.command.player"))
                             .addOption(OptionType.STRING, "nickname", getMessage("discord.command.player.option"), true)
             ).queue(
@@ -110,7 +119,7 @@ public class DiscordBot extends ListenerAdapter {
     private void handleOnlineCommand(final SlashCommandInteractionEvent event) {
         event.deferReply().queue();
 
-        final int currentOnline = plugin.getServer().getOnlinePlayers().size();
+        final int currentOnline = plugin.getOnlineRoster().size();
         final int maxOnline = plugin.getDatabase().getMaxOnline();
         final int uniquePlayers = plugin.getDatabase().getUniquePlayersCount();
 
@@ -130,53 +139,92 @@ public class DiscordBot extends ListenerAdapter {
     private void handleStatsCommand(final SlashCommandInteractionEvent event) {
         event.deferReply().queue();
 
-        final DatabaseManager db = plugin.getDatabase();
-        final int currentOnline = plugin.getServer().getOnlinePlayers().size();
-        final int maxOnline = db.getMaxOnline();
-        final int uniquePlayers = db.getUniquePlayersCount();
-        final int totalSessions = db.getTotalSessions();
-        final int activeSessions = db.getActiveSessions();
-        final long totalPlaytime = db.getTotalPlaytime();
-        final long averageMinutes = uniquePlayers > 0 ? (totalPlaytime / uniquePlayers) / (1000 * 60) : 0;
+        final ServerStatsSnapshot stats = plugin.getDatabase().getStatsSnapshot();
+        final int currentOnline = plugin.getOnlineRoster().size();
 
         final EmbedBuilder embed = new EmbedBuilder()
                 .setTitle(getMessage("discord.embed.stats.title"))
                 .setColor(Color.BLUE)
                 .addField(getMessage("discord.embed.stats.current"), String.valueOf(currentOnline), true)
-                .addField(getMessage("discord.embed.stats.record"), String.valueOf(maxOnline), true)
-                .addField(getMessage("discord.embed.stats.unique"), String.valueOf(uniquePlayers), true)
-                .addField(getMessage("discord.embed.stats.sessions"), String.valueOf(totalSessions), true)
+                .addField(getMessage("discord.embed.stats.record"), String.valueOf(stats.maxOnline()), true)
+                .addField(getMessage("discord.embed.stats.unique"), String.valueOf(stats.uniquePlayers()), true)
+                .addField(getMessage("discord.embed.stats.sessions"), String.valueOf(stats.totalSessions()), true)
                 .addField(getMessage("discord.embed.stats.avg_time"),
-                          getMessage("discord.embed.stats.avg_time.value", averageMinutes), true)
-                .addField(getMessage("discord.embed.stats.active"), String.valueOf(activeSessions), true)
+                          getMessage("discord.embed.stats.avg_time.value", stats.averagePlaytimeMinutes()), true)
+                .addField(getMessage("discord.embed.stats.avg_active"),
+                          getMessage("discord.embed.stats.avg_time.value", stats.averageActiveMinutes()), true)
+                .addField(getMessage("discord.embed.stats.active"), String.valueOf(stats.activeSessions()), true)
                 .setFooter(getMessage("discord.embed.footer"), null)
                 .setTimestamp(java.time.Instant.now());
 
         event.getHook().sendMessageEmbeds(embed.build()).queue();
     }
 
+    private OptionData createMetricOption() {
+        final OptionData option = new OptionData(OptionType.STRING, "metric", getMessage("discord.command.top.metric"), false);
+        for (final LeaderboardMetric metric : LeaderboardMetric.values()) {
+            option.addChoice(getMessage("leaderboard.metric." + metric.getName()), metric.getName());
+        }
+        return option;
+    }
+
+    private OptionData createPeriodOption() {
+        final OptionData option = new OptionData(OptionType.STRING, "period", getMessage("discord.command.top.period"), false);
+        for (final LeaderboardPeriod period : LeaderboardPeriod.values()) {
+            option.addChoice(getMessage("leaderboard.period." + period.getName()), period.getName());
+        }
+        return option;
+    }
+
     private void handleTopCommand(final SlashCommandInteractionEvent event) {
         event.deferReply().queue();
 
-        final Map<String, Integer> topPlayers = plugin.getDatabase().getTopPlayersByJoins(10);
+        final OptionMapping metricOption = event.getOption("metric");
+        final LeaderboardMetric metric = metricOption != null
+                ? LeaderboardMetric.fromString(metricOption.getAsString()).orElse(LeaderboardMetric.JOINS)
+                : LeaderboardMetric.JOINS;
+        final OptionMapping periodOption = event.getOption("period");
+        final LeaderboardPeriod period = periodOption != null
+                ? LeaderboardPeriod.fromString(periodOption.getAsString()).orElse(null)
+                : null;
+        final DatabaseManager db = plugin.getDatabase();
+        final List<Ranking> topPlayers = period != null
+                ? db.getPeriodLeaderboard(metric, period, 0, 10)
+                : db.getLeaderboard(metric, 0, 10);
 
         if (topPlayers.isEmpty()) {
             event.getHook().sendMessage(getMessage("discord.embed.top.empty")).queue();
             return;
         }
 
+        String title = getMessage("leaderboard.metric." + metric.getName());
+        if (period != null) {
+            title += ", " + getMessage("leaderboard.period." + period.getName());
+        }
         final EmbedBuilder embed = new EmbedBuilder()
-                .setTitle(getMessage("discord.embed.top.title"))
+                .setTitle(getMessage("discord.embed.top.title", title))
                 .setColor(Color.ORANGE);
 
-        int position = 1;
         final StringBuilder topList = new StringBuilder();
-        for (final Map.Entry<String, Integer> entry : topPlayers.entrySet()) {
+        for (final Ranking ranking : topPlayers) {
+            final int position = ranking.rank();
             final String medal = position == 1 ? "🥇" : position == 2 ? "🥈" : position == 3 ? "🥉" : "▪️";
             topList.append(medal).append(" **").append(position).append(".** ")
-                    .append(entry.getKey()).append(" - ")
-                    .append(getMessage("discord.embed.top.joins", entry.getValue())).append("\n");
-            position++;
+                    .append(ranking.playerName()).append(" - ")
+                    .append(formatScore(metric, ranking)).append("\n");
+        }
+
+        final OptionMapping playerOption = event.getOption("nickname");
+        if (playerOption != null) {
+            final String playerName = playerOption.getAsString();
+            final Ranking ranking = period != null
+                    ? db.getPeriodLeaderboardRank(metric, period, playerName)
+                    : db.getLeaderboardRank(metric, playerName);
+            final int size = period != null ? db.getPeriodLeaderboardSize(metric, period) : db.getLeaderboardSize(metric);
+            topList.append("\n").append(ranking != null
+                    ? getMessage("discord.embed.top.rank", ranking.playerName(), ranking.rank(),
+                            size, formatScore(metric, ranking))
+                    : getMessage("discord.embed.top.not_ranked", playerName));
         }
 
         embed.setDescription(topList.toString());
@@ -186,21 +234,27 @@ public class DiscordBot extends ListenerAdapter {
         event.getHook().sendMessageEmbeds(embed.build()).queue();
     }
 
+    private String formatScore(final LeaderboardMetric metric, final Ranking ranking) {
+        return metric.isTime()
+                ? getMessage("discord.embed.top.minutes", ranking.score() / (1000 * 60))
+                : String.valueOf(ranking.score());
+    }
+
     private void handlePlayerCommand(final SlashCommandInteractionEvent event) {
         event.deferReply().queue();
 
         final String playerName = event.getOption("nickname").getAsString();
         final DatabaseManager db = plugin.getDatabase();
 
-        final int totalJoins = db.getPlayerJoinCount(playerName);
-        final long totalPlaytime = db.getPlayerTotalPlaytime(playerName);
-        final long totalHours = totalPlaytime / (1000 * 60 * 60);
-        final long totalMinutes = (totalPlaytime / (1000 * 60)) % 60;
-
-        if (totalJoins == 0) {
+        final PlayerProfile profile = db.getPlayerProfile(playerName);
+        if (profile == null || profile.joins() == 0) {
             event.getHook().sendMessage(getMessage("discord.embed.player.not_found", playerName)).queue();
             return;
         }
+        final int totalJoins = profile.joins();
+        final long totalPlaytime = profile.playtime();
+        final long totalHours = totalPlaytime / (1000 * 60 * 60);
+        final long totalMinutes = (totalPlaytime / (1000 * 60)) % 60;
 
         final boolean isOnline = plugin.getServer().getPlayer(playerName) != null;
 
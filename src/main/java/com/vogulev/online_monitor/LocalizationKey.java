@@ -26,13 +26,18 @@ public enum LocalizationKey {
     COMMAND_DETAILED_UNIQUE("command.detailed.unique"),
     COMMAND_DETAILED_SESSIONS("command.detailed.sessions"),
     COMMAND_DETAILED_AVG_TIME("command.detailed.avg_time"),
+    COMMAND_DETAILED_AVG_ACTIVE("command.detailed.avg_active"),
     COMMAND_DETAILED_ACTIVE("command.detailed.active"),
     COMMAND_DETAILED_ONLINE("command.detailed.online"),
 
     // Command - Top players
     COMMAND_TOP_HEADER("command.top.header"),
+    COMMAND_TOP_PERIOD_HEADER("command.top.period.header"),
     COMMAND_TOP_EMPTY("command.top.empty"),
     COMMAND_TOP_POSITION("command.top.position"),
+    COMMAND_TOP_VALUE_MINUTES("command.top.value.minutes"),
+    COMMAND_TOP_OWN_RANK("command.top.own_rank"),
+    COMMAND_TOP_UNKNOWN_METRIC("command.top.unknown_metric"),
 
     // Command - Player stats
     COMMAND_PLAYER_HEADER("command.player.header"),
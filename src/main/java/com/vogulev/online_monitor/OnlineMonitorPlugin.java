@@ -1,17 +1,24 @@
 package com.vogulev.online_monitor;
 
 import com.vogulev.online_monitor.commands.StatsCommandExecutor;
+import com.vogulev.online_monitor.listeners.PlayerCombatListener;
 import com.vogulev.online_monitor.listeners.PlayerEventListener;
+import com.vogulev.online_monitor.listeners.PlayerMoveActivityListener;
 import com.vogulev.online_monitor.listeners.PlayerStatisticsListener;
+import com.vogulev.online_monitor.tasks.AFKTickTask;
+import com.vogulev.online_monitor.tasks.ActivitySamplerTask;
 import com.vogulev.online_monitor.tasks.CleanupTask;
+import com.vogulev.online_monitor.tasks.CounterReconcileTask;
 import com.vogulev.online_monitor.tasks.SnapshotTask;
+import com.vogulev.online_monitor.tasks.StatisticSamplerTask;
+import com.vogulev.online_monitor.tasks.StatsFlushTask;
+import com.vogulev.online_monitor.tasks.StatsSnapshotTask;
 import com.vogulev.online_monitor.tasks.UpdateScoreboardTask;
 import com.vogulev.online_monitor.ui.ScoreboardServerStatisticsManager;
 import com.vogulev.online_monitor.web.WebServer;
+import org.bukkit.entity.Player;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.logging.Logger;
 
 import static com.vogulev.online_monitor.i18n.LocalizationManager.initialize;
@@ -27,7 +34,10 @@ public class OnlineMonitorPlugin extends JavaPlugin {
     private WebServer webServer;
     private ScoreboardServerStatisticsManager scoreboardServerStatisticsManager;
     private AFKManager afkManager;
-    private final Map<String, Long> playerJoinTimes = new HashMap<>();
+    private ActivitySamplerTask activitySampler;
+    private PlayerMoveActivityListener moveActivityListener;
+    private StatisticSamplerTask statisticSampler;
+    private final OnlineRoster roster = new OnlineRoster();
     private int lastMaxOnline = 0;
 
     @Override
@@ -49,21 +59,30 @@ public class OnlineMonitorPlugin extends JavaPlugin {
         }
 
         lastMaxOnline = database.getMaxOnline();
+        database.setSessionOpenedListener(roster::setSessionId);
 
         final int afkThresholdMinutes = getConfig().getInt("afk-threshold-minutes", 5);
-        afkManager = new AFKManager(afkThresholdMinutes);
+        final long activityThrottleMillis = getConfig().getLong("afk-activity-throttle-ms", 1000);
+        afkManager = new AFKManager(afkThresholdMinutes, activityThrottleMillis);
+        afkManager.setListener(roster);
         logger.info("AFK detection threshold set to " + afkThresholdMinutes + " minutes");
 
         final boolean scoreboardEnabled = getConfig().getBoolean("scoreboard.enabled", true);
-        scoreboardServerStatisticsManager = new ScoreboardServerStatisticsManager(database, scoreboardEnabled);
-        logger.info("Scoreboard UI enabled = " + scoreboardEnabled);
+        final boolean scoreboardShared = getConfig().getBoolean("scoreboard.shared", true);
+        final boolean showSessionTime = getConfig().getBoolean("scoreboard.show-session-time", false);
+        scoreboardServerStatisticsManager = new ScoreboardServerStatisticsManager(database, scoreboardEnabled,
+                scoreboardShared, showSessionTime, roster);
+        logger.info("Scoreboard UI enabled = " + scoreboardEnabled + ", shared = " + scoreboardServerStatisticsManager.isShared());
+        if (scoreboardEnabled && scoreboardShared && showSessionTime) {
+            logger.info("scoreboard.shared is ignored: show-session-time needs a separate scoreboard per player");
+        }
 
         final PlayerEventListener playerListener = new PlayerEventListener(
                 database,
                 discordBot,
                 getServer(),
                 getConfig(),
-                playerJoinTimes,
+                roster,
                 this::checkNewRecord
         );
         playerListener.setScoreboardManager(scoreboardServerStatisticsManager);
@@ -71,13 +90,18 @@ public class OnlineMonitorPlugin extends JavaPlugin {
 
         final PlayerStatisticsListener statsListener = new PlayerStatisticsListener(database, afkManager);
         getServer().getPluginManager().registerEvents(statsListener, this);
+        registerCombatStatistics(statsListener);
         logger.info("Extended statistics tracking enabled");
 
-        final StatsCommandExecutor statsCommand = new StatsCommandExecutor(database, getServer(), playerJoinTimes,
+        registerMovementDetection();
+
+        final StatsCommandExecutor statsCommand = new StatsCommandExecutor(database, this, roster,
                 scoreboardServerStatisticsManager);
         getCommand("online").setExecutor(statsCommand);
         getCommand("online").setTabCompleter(statsCommand);
 
+        registerOnlinePlayers();
+
         scheduleTasks();
 
         initializeDiscord();
@@ -92,11 +116,20 @@ public class OnlineMonitorPlugin extends JavaPlugin {
         if (discordBot != null && getConfig().getBoolean("discord.notifications.server-stop", true)) {
             discordBot.sendServerStopNotification();
         }
-        for (final Map.Entry<String, Long> entry : playerJoinTimes.entrySet()) {
-            final long sessionDuration = System.currentTimeMillis() - entry.getValue();
-            database.recordPlayerQuit(entry.getKey(), sessionDuration);
+        for (final Player player : getServer().getOnlinePlayers()) {
+            if (statisticSampler != null) {
+                statisticSampler.stopTracking(player);
+            }
+            final OnlineRoster.Entry session = roster.quit(player.getUniqueId());
+            if (session != null) {
+                final long now = System.currentTimeMillis();
+                database.recordPlayerQuit(player.getUniqueId(), player.getName(), session.sessionMillis(now),
+                        session.afkMillis(now));
+            }
+        }
+        if (afkManager != null) {
+            afkManager.clear();
         }
-        playerJoinTimes.clear();
         if (webServer != null) {
             logger.info("Stopping web server...");
             webServer.stop();
@@ -112,9 +145,26 @@ public class OnlineMonitorPlugin extends JavaPlugin {
         logger.info("OnlineMonitor plugin disabled!");
     }
 
+    /**
+     * Starts sessions of players already online (after /reload), as onDisable ended them.
+     * No join event is fired for them, so they are registered as if they had just joined.
+     */
+    private void registerOnlinePlayers() {
+        final long now = System.currentTimeMillis();
+        for (final Player player : getServer().getOnlinePlayers()) {
+            database.recordPlayerJoin(player.getUniqueId(), player.getName());
+            roster.join(player.getUniqueId(), player.getName(), now);
+            afkManager.register(player.getUniqueId(), player.getName());
+            if (statisticSampler != null) {
+                statisticSampler.startTracking(player);
+            }
+        }
+    }
+
     private void initializeDatabase() throws Exception {
+        final String timezone = getConfig().getString("timezone", "");
         final String timezoneOffset = getConfig().getString("timezone-offset", "+3");
-        database.setTimezoneOffset(timezoneOffset);
+        database.setTimezone(timezone, timezoneOffset);
 
         database.connect(getConfig());
     }
@@ -128,14 +178,44 @@ public class OnlineMonitorPlugin extends JavaPlugin {
                 snapshotInterval
         );
 
-        final int daysToKeep = getConfig().getInt("snapshot-days-to-keep", 30);
-        getServer().getScheduler().runTaskTimer(
+        getServer().getScheduler().runTaskTimerAsynchronously(
                 this,
-                new CleanupTask(database, daysToKeep),
+                new CleanupTask(database),
                 24000L,
                 24000L
         );
 
+        final long statsFlushInterval = getConfig().getLong("statistics.flush-interval-seconds", 30) * 20L;
+        getServer().getScheduler().runTaskTimerAsynchronously(
+                this,
+                new StatsFlushTask(database),
+                statsFlushInterval,
+                statsFlushInterval
+        );
+
+        final long statsSnapshotInterval = getConfig().getLong("statistics.snapshot-refresh-seconds", 5) * 20L;
+        getServer().getScheduler().runTaskTimerAsynchronously(
+                this,
+                new StatsSnapshotTask(database),
+                statsSnapshotInterval,
+                statsSnapshotInterval
+        );
+
+        final long reconcileInterval = getConfig().getLong("statistics.counters-reconcile-minutes", 60) * 60 * 20L;
+        getServer().getScheduler().runTaskTimerAsynchronously(
+                this,
+                new CounterReconcileTask(database),
+                reconcileInterval,
+                reconcileInterval
+        );
+
+        getServer().getScheduler().runTaskTimerAsynchronously(
+                this,
+                new AFKTickTask(afkManager),
+                20L,
+                AFKManager.TICK_MILLIS / 50
+        );
+
         final long scoreboardUpdateInterval = getConfig().getLong("scoreboard.update-interval-seconds", 1) * 20L;
         getServer().getScheduler().runTaskTimer(
                 this,
@@ -145,9 +225,52 @@ public class OnlineMonitorPlugin extends JavaPlugin {
         );
 
         logger.info("Online snapshots will be recorded every " + (snapshotInterval / 1200) + " minutes");
+        logger.info("Buffered player statistics will be written every " + (statsFlushInterval / 20) + " seconds");
         logger.info("Scoreboard will be updated every " + (scoreboardUpdateInterval / 20) + " seconds");
     }
 
+    /**
+     * Deaths and kills are either counted per event ("events") or sampled from the built-in
+     * Bukkit statistics of online players ("sample"), in which case no combat listener is registered
+     */
+    private void registerCombatStatistics(final PlayerStatisticsListener statsListener) {
+        final String mode = getConfig().getString("statistics.collection-mode", "events");
+        if ("sample".equalsIgnoreCase(mode)) {
+            final long interval = Math.max(1, getConfig().getLong("statistics.sample-interval-seconds", 60)) * 20L;
+            statisticSampler = new StatisticSamplerTask(getServer(), database);
+            statsListener.setStatisticSampler(statisticSampler);
+            getServer().getScheduler().runTaskTimer(this, statisticSampler, interval, interval);
+            logger.info("Deaths and kills are sampled from player statistics every " + (interval / 20) + " seconds");
+        } else {
+            if (!"events".equalsIgnoreCase(mode)) {
+                logger.warning("Unknown statistics.collection-mode '" + mode + "', using 'events'");
+            }
+            getServer().getPluginManager().registerEvents(new PlayerCombatListener(database, afkManager), this);
+        }
+    }
+
+    /**
+     * Movement reaches AFKManager either through a PlayerMoveEvent handler ("event") or through a
+     * sampler comparing positions every few ticks ("poll")
+     */
+    private void registerMovementDetection() {
+        final String mode = getConfig().getString("afk-detection-mode", "event");
+        if ("poll".equalsIgnoreCase(mode)) {
+            final long interval = Math.max(1, getConfig().getLong("afk-poll-interval-ticks", 20));
+            activitySampler = new ActivitySamplerTask(getServer(), afkManager);
+            getServer().getScheduler().runTaskTimer(this, activitySampler, interval, interval);
+            logger.info("AFK movement detection: polling every " + interval + " ticks");
+        } else {
+            if (!"event".equalsIgnoreCase(mode)) {
+                logger.warning("Unknown afk-detection-mode '" + mode + "', using 'event'");
+            }
+            final boolean timed = getConfig().getBoolean("afk-detection-timing", false);
+            moveActivityListener = new PlayerMoveActivityListener(afkManager, timed);
+            getServer().getPluginManager().registerEvents(moveActivityListener, this);
+            logger.info("AFK movement detection: PlayerMoveEvent" + (timed ? ", timed" : ""));
+        }
+    }
+
     private void initializeDiscord() {
         final boolean discordEnabled = getConfig().getBoolean("discord.enabled", false);
         logger.info("Discord integration enabled=" + discordEnabled);
@@ -222,7 +345,32 @@ public class OnlineMonitorPlugin extends JavaPlugin {
         return database;
     }
 
+    public ScoreboardServerStatisticsManager getScoreboardManager() {
+        return scoreboardServerStatisticsManager;
+    }
+
+    /**
+     * @return Players currently online, safe to read from any thread
+     */
+    public OnlineRoster getOnlineRoster() {
+        return roster;
+    }
+
     public AFKManager getAFKManager() {
         return afkManager;
     }
+
+    /**
+     * @return Movement sampler, or null when movement is detected through PlayerMoveEvent
+     */
+    public ActivitySamplerTask getActivitySampler() {
+        return activitySampler;
+    }
+
+    /**
+     * @return Movement listener, or null when movement is detected by polling
+     */
+    public PlayerMoveActivityListener getMoveActivityListener() {
+        return moveActivityListener;
+    }
 }
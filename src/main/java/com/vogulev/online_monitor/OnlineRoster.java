@@ -0,0 +1,129 @@
+package com.vogulev.online_monitor;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Players currently online, keyed by UUID.
+ * Entries are immutable and replaced atomically, so web, Discord and async threads can read the roster
+ * lock-free without touching the Bukkit API. Joins and quits are recorded by the player event listener;
+ * AFK transitions arrive from {@link AFKManager}, and the AFK time of each session is accumulated here
+ * until the session ends.
+ */
+public class OnlineRoster implements AFKManager.Listener {
+
+    /**
+     * Online player
+     * @param playerId Player UUID
+     * @param name Player name
+     * @param joinTime Join time, epoch milliseconds
+     * @param sessionId Id of the open session row, or -1 until it is committed
+     * @param afk Whether the player is AFK now
+     * @param afkMillis AFK time of finished AFK periods of this session
+     * @param afkSince Start of the running AFK period (last activity before it), epoch milliseconds
+     */
+    public record Entry(UUID playerId, String name, long joinTime, long sessionId, boolean afk, long afkMillis,
+                        long afkSince) {
+
+        /**
+         * @return Session length so far, milliseconds
+         */
+        public long sessionMillis(final long now) {
+            return now - joinTime;
+        }
+
+        /**
+         * @return AFK time of the session so far, including a running AFK period, milliseconds
+         */
+        public long afkMillis(final long now) {
+            return afk ? afkMillis + (now - afkSince) : afkMillis;
+        }
+
+        Entry withSessionId(final long id) {
+            return new Entry(playerId, name, joinTime, id, afk, afkMillis, afkSince);
+        }
+
+        Entry enterAfk(final long since) {
+            return afk ? this : new Entry(playerId, name, joinTime, sessionId, true, afkMillis, since);
+        }
+
+        Entry exitAfk(final long now) {
+            return afk ? new Entry(playerId, name, joinTime, sessionId, false, afkMillis(now), 0) : this;
+        }
+    }
+
+    private final Map<UUID, Entry> entries = new ConcurrentHashMap<>();
+    private final Map<String, UUID> idsByName = new ConcurrentHashMap<>();
+
+    /**
+     * Adds a joined player
+     */
+    public void join(final UUID playerId, final String name, final long joinTime) {
+        entries.put(playerId, new Entry(playerId, name, joinTime, -1, false, 0, 0));
+        idsByName.put(name, playerId);
+    }
+
+    /**
+     * Removes a player that quit
+     * @return Entry of the finished session, or null if the player was not on the roster
+     */
+    public Entry quit(final UUID playerId) {
+        final Entry entry = entries.remove(playerId);
+        if (entry != null) {
+            idsByName.remove(entry.name(), playerId);
+        }
+        return entry;
+    }
+
+    /**
+     * Stores the id of the player's session row once it is committed
+     */
+    public void setSessionId(final UUID playerId, final long sessionId) {
+        entries.computeIfPresent(playerId, (id, entry) -> entry.withSessionId(sessionId));
+    }
+
+    /**
+     * @return Entry of an online player, or null
+     */
+    public Entry get(final UUID playerId) {
+        return entries.get(playerId);
+    }
+
+    /**
+     * @return Entry of an online player by exact name, or null
+     */
+    public Entry getByName(final String name) {
+        final UUID playerId = idsByName.get(name);
+        return playerId != null ? entries.get(playerId) : null;
+    }
+
+    /**
+     * @return Live, weakly consistent view of all online players
+     */
+    public Collection<Entry> entries() {
+        return Collections.unmodifiableCollection(entries.values());
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void onEnterAfk(final String playerName, final long lastActivity) {
+        final UUID playerId = idsByName.get(playerName);
+        if (playerId != null) {
+            entries.computeIfPresent(playerId, (id, entry) -> entry.enterAfk(lastActivity));
+        }
+    }
+
+    @Override
+    public void onExitAfk(final String playerName, final long lastActivity, final long now) {
+        final UUID playerId = idsByName.get(playerName);
+        if (playerId != null) {
+            entries.computeIfPresent(playerId, (id, entry) -> entry.exitAfk(now));
+        }
+    }
+}
@@ -14,7 +14,7 @@ public enum SubCommand {
     STATS("stats"),
 
     /**
-     * /online top - top players by join count
+     * /online top [leaderboard] [page] - top players by joins, playtime, kills, blocks or messages
      * Requires: Permission.STATS
      */
     TOP("top"),
@@ -1,9 +1,9 @@
 package com.vogulev.online_monitor.commands;
 
 
-import java.util.Map;
-
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.OnlineRoster;
+import com.vogulev.online_monitor.database.PlayerProfile;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
@@ -34,17 +34,17 @@ public class PlayerStatsCommand implements OnlineMonitorCommand
 {
     private final Server server;
 
-    private final Map<String, Long> playerJoinTimes;
+    private final OnlineRoster roster;
 
     private final DatabaseManager database;
 
 
     protected PlayerStatsCommand(final DatabaseManager database, final Server server,
-        final Map<String, Long> playerJoinTimes)
+        final OnlineRoster roster)
     {
         this.database = database;
         this.server = server;
-        this.playerJoinTimes = playerJoinTimes;
+        this.roster = roster;
     }
 
 
@@ -65,24 +65,15 @@ public class PlayerStatsCommand implements OnlineMonitorCommand
     private void sendPlayerStats(final CommandSender sender, final String playerName)
     {
         final Player player = server.getPlayer(playerName);
-        final int totalJoins = database.getPlayerJoinCount(playerName);
-        final long totalPlaytime = database.getPlayerTotalPlaytime(playerName);
-        final long totalHours = totalPlaytime / (1000 * 60 * 60);
-        final long totalMinutes = (totalPlaytime / (1000 * 60)) % 60;
-
-        final int deaths = database.getPlayerDeaths(playerName);
-        final int mobKills = database.getPlayerMobKills(playerName);
-        final int playerKills = database.getPlayerPlayerKills(playerName);
-        final int blocksBroken = database.getPlayerBlocksBroken(playerName);
-        final int blocksPlaced = database.getPlayerBlocksPlaced(playerName);
-        final int messagesSent = database.getPlayerMessagesSent(playerName);
+        final PlayerProfile profile = database.getPlayerProfile(playerName);
+        final int totalJoins = profile != null ? profile.joins() : 0;
 
         sendColoredMessage(sender, getMessage(COMMAND_PLAYER_HEADER, playerName));
 
         if (player != null && player.isOnline())
         {
-            final Long joinTime = playerJoinTimes.get(playerName);
-            final long sessionTime = joinTime != null ? System.currentTimeMillis() - joinTime : 0;
+            final OnlineRoster.Entry session = roster.get(player.getUniqueId());
+            final long sessionTime = session != null ? session.sessionMillis(System.currentTimeMillis()) : 0;
             final long sessionMinutes = sessionTime / (1000 * 60);
 
             sendColoredMessage(sender, getMessage(COMMAND_PLAYER_STATUS_ONLINE));
@@ -97,16 +88,19 @@ public class PlayerStatsCommand implements OnlineMonitorCommand
 
         if (totalJoins > 0)
         {
+            final long totalPlaytime = profile.playtime();
+            final long totalHours = totalPlaytime / (1000 * 60 * 60);
+            final long totalMinutes = (totalPlaytime / (1000 * 60)) % 60;
             sendColoredMessage(sender, getMessage(COMMAND_PLAYER_JOINS, totalJoins));
             sendColoredMessage(sender, getMessage(COMMAND_PLAYER_TOTAL_TIME, totalHours, totalMinutes));
 
             sendColoredMessage(sender, getMessage(COMMAND_PLAYER_STATS_HEADER));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_DEATHS, deaths));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_MOB_KILLS, mobKills));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_PLAYER_KILLS, playerKills));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_BLOCKS_BROKEN, blocksBroken));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_BLOCKS_PLACED, blocksPlaced));
-            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_MESSAGES_SENT, messagesSent));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_DEATHS, profile.deaths()));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_MOB_KILLS, profile.mobKills()));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_PLAYER_KILLS, profile.playerKills()));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_BLOCKS_BROKEN, profile.blocksBroken()));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_BLOCKS_PLACED, profile.blocksPlaced()));
+            sendColoredMessage(sender, getMessage(COMMAND_PLAYER_MESSAGES_SENT, profile.messagesSent()));
         }
         else
         {
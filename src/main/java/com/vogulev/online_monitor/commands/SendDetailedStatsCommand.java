@@ -2,11 +2,13 @@ package com.vogulev.online_monitor.commands;
 
 
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.database.ServerStatsSnapshot;
 import org.bukkit.Server;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_DETAILED_ACTIVE;
+import static com.vogulev.online_monitor.LocalizationKey.COMMAND_DETAILED_AVG_ACTIVE;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_DETAILED_AVG_TIME;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_DETAILED_CURRENT;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_DETAILED_HEADER;
@@ -41,20 +43,16 @@ public class SendDetailedStatsCommand implements OnlineMonitorCommand
     private void sendDetailedStats(final CommandSender sender)
     {
         final int currentOnline = server.getOnlinePlayers().size();
-        final int maxOnline = database.getMaxOnline();
-        final int uniquePlayers = database.getUniquePlayersCount();
-        final int totalSessions = database.getTotalSessions();
-        final int activeSessions = database.getActiveSessions();
-        final long totalPlaytime = database.getTotalPlaytime();
-        final long averageMinutes = uniquePlayers > 0 ? (totalPlaytime / uniquePlayers) / (1000 * 60) : 0;
+        final ServerStatsSnapshot stats = database.getStatsSnapshot();
 
         sendColoredMessage(sender, getMessage(COMMAND_DETAILED_HEADER));
         sendColoredMessage(sender, getMessage(COMMAND_DETAILED_CURRENT, currentOnline));
-        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_RECORD, maxOnline));
-        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_UNIQUE, uniquePlayers));
-        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_SESSIONS, totalSessions));
-        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_AVG_TIME, averageMinutes));
-        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_ACTIVE, activeSessions));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_RECORD, stats.maxOnline()));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_UNIQUE, stats.uniquePlayers()));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_SESSIONS, stats.totalSessions()));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_AVG_TIME, stats.averagePlaytimeMinutes()));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_AVG_ACTIVE, stats.averageActiveMinutes()));
+        sendColoredMessage(sender, getMessage(COMMAND_DETAILED_ACTIVE, stats.activeSessions()));
 
         if (currentOnline > 0)
         {
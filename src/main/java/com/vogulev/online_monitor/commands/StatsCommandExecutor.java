@@ -9,6 +9,7 @@ import java.util.stream.Stream;
 
 import com.vogulev.online_monitor.DatabaseManager;
 import com.vogulev.online_monitor.LocalizationKey;
+import com.vogulev.online_monitor.OnlineRoster;
 import com.vogulev.online_monitor.Permission;
 import com.vogulev.online_monitor.SubCommand;
 import com.vogulev.online_monitor.ui.ScoreboardServerStatisticsManager;
@@ -18,6 +19,7 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabCompleter;
 import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
 
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_STATS_CURRENT;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_STATS_HEADER;
@@ -49,21 +51,24 @@ public class StatsCommandExecutor implements CommandExecutor, TabCompleter
 {
     private final DatabaseManager database;
 
+    private final Plugin plugin;
+
     private final Server server;
 
-    private final Map<String, Long> playerJoinTimes;
+    private final OnlineRoster roster;
 
     private final ScoreboardServerStatisticsManager scoreboardServerStatisticsManager;
 
     private final Map<SubCommand, OnlineMonitorCommand> commandHandlers;
 
 
-    public StatsCommandExecutor(final DatabaseManager database, final Server server, final Map<String, Long> playerJoinTimes,
+    public StatsCommandExecutor(final DatabaseManager database, final Plugin plugin, final OnlineRoster roster,
         final ScoreboardServerStatisticsManager scoreboardServerStatisticsManager)
     {
         this.database = database;
-        this.server = server;
-        this.playerJoinTimes = playerJoinTimes;
+        this.plugin = plugin;
+        this.server = plugin.getServer();
+        this.roster = roster;
         this.scoreboardServerStatisticsManager = scoreboardServerStatisticsManager;
         this.commandHandlers = initializeCommandHandlers();
     }
@@ -78,8 +83,8 @@ public class StatsCommandExecutor implements CommandExecutor, TabCompleter
         final Map<SubCommand, OnlineMonitorCommand> handlers = new EnumMap<>(SubCommand.class);
 
         handlers.put(STATS, new SendDetailedStatsCommand(database, server));
-        handlers.put(TOP, new TopStatsCommand(database));
-        handlers.put(PLAYER, new PlayerStatsCommand(database, server, playerJoinTimes));
+        handlers.put(TOP, new TopStatsCommand(database, plugin));
+        handlers.put(PLAYER, new PlayerStatsCommand(database, server, roster));
         handlers.put(HOURLY, new HourlyStatsCommand(database));
         handlers.put(DAILY, new DailyStatsCommand(database));
         handlers.put(WEEKDAY, new WeekdayCommand(database));
@@ -140,6 +145,19 @@ public class StatsCommandExecutor implements CommandExecutor, TabCompleter
                     .filter(name -> name.toLowerCase().startsWith(args[1].toLowerCase()))
                     .toList();
             }
+            if (subCommand == TOP)
+            {
+                return TopStatsCommand.getMetricNames().stream()
+                    .filter(name -> name.startsWith(args[1].toLowerCase()))
+                    .toList();
+            }
+        }
+
+        if (args.length == 3 && SubCommand.fromString(args[0]).orElse(null) == TOP)
+        {
+            return TopStatsCommand.getPeriodNames().stream()
+                .filter(name -> name.startsWith(args[2].toLowerCase()))
+                .toList();
         }
 
         return Collections.emptyList();
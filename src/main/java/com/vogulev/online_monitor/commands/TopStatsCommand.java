@@ -1,50 +1,172 @@
 package com.vogulev.online_monitor.commands;
 
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
 
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.LeaderboardPeriod;
+import com.vogulev.online_monitor.database.PeriodLeaderboards;
 import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitScheduler;
 
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_EMPTY;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_HEADER;
+import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_OWN_RANK;
+import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_PERIOD_HEADER;
 import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_POSITION;
+import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_UNKNOWN_METRIC;
+import static com.vogulev.online_monitor.LocalizationKey.COMMAND_TOP_VALUE_MINUTES;
 import static com.vogulev.online_monitor.utils.MessageUtils.sendColoredMessage;
+import static com.vogulev.online_monitor.utils.NumericUtils.parseIntOrDefault;
 import static com.vogulev.online_monitor.i18n.LocalizationManager.getMessage;
 
 
+/**
+ * Leaderboard of any player metric: {@code /online top [leaderboard] [day|week|month] [page]}, by joins by default.
+ * Without a period the all-time leaderboard is shown; period leaderboards list the best
+ * {@value PeriodLeaderboards#MAX_ENTRIES} players of the last day, 7 days or 30 days.
+ * Players also see their own position.
+ * The leaderboard is read off the server thread, since a period leaderboard or an uncached player name
+ * may query the database; the reply is sent from the server thread.
+ */
 public class TopStatsCommand implements OnlineMonitorCommand
 {
+    private static final int PAGE_SIZE = 10;
+
     private final DatabaseManager database;
 
+    private final Plugin plugin;
+
 
-    protected TopStatsCommand(final DatabaseManager database)
+    protected TopStatsCommand(final DatabaseManager database, final Plugin plugin)
     {
         this.database = database;
+        this.plugin = plugin;
+    }
+
+
+    /**
+     * @return Leaderboard names for tab completion
+     */
+    public static List<String> getMetricNames()
+    {
+        return Stream.of(LeaderboardMetric.values()).map(LeaderboardMetric::getName).toList();
+    }
+
+
+    /**
+     * @return Period names for tab completion
+     */
+    public static List<String> getPeriodNames()
+    {
+        return Stream.of(LeaderboardPeriod.values()).map(LeaderboardPeriod::getName).toList();
     }
 
 
     @Override
     public void execute(final CommandSender sender, final String[] args)
     {
-        sendColoredMessage(sender, getMessage(COMMAND_TOP_HEADER));
+        LeaderboardMetric metric = LeaderboardMetric.JOINS;
+        if (args.length > 1)
+        {
+            metric = LeaderboardMetric.fromString(args[1]).orElse(null);
+            if (metric == null)
+            {
+                sendColoredMessage(sender, getMessage(COMMAND_TOP_UNKNOWN_METRIC,
+                    String.join(", ", getMetricNames())));
+                return;
+            }
+        }
+
+        final LeaderboardPeriod period = args.length > 2 ? LeaderboardPeriod.fromString(args[2]).orElse(null) : null;
+        final int pageArg = period != null ? 3 : 2;
+        final int requestedPage = args.length > pageArg ? parseIntOrDefault(args[pageArg], 1) : 1;
+        final String playerName = sender instanceof final Player player ? player.getName() : null;
+
+        final LeaderboardMetric selected = metric;
+        final BukkitScheduler scheduler = plugin.getServer().getScheduler();
+        scheduler.runTaskAsynchronously(plugin, () -> {
+            final List<String> lines = buildLines(selected, period, requestedPage, playerName);
+            if (plugin.isEnabled())
+            {
+                scheduler.runTask(plugin, () -> lines.forEach(line -> sendColoredMessage(sender, line)));
+            }
+        });
+    }
+
 
-        final Map<String, Integer> topPlayers = database.getTopPlayersByJoins(10);
-        if (topPlayers.isEmpty())
+    /**
+     * Reads the leaderboard page; may query the database, so never called on the server thread
+     * @param playerName Name of the player to show the own position of, or null
+     * @return Reply lines
+     */
+    private List<String> buildLines(final LeaderboardMetric metric, final LeaderboardPeriod period,
+        final int requestedPage, final String playerName)
+    {
+        final List<String> lines = new ArrayList<>();
+        final int size = period != null
+            ? database.getPeriodLeaderboardSize(metric, period)
+            : database.getLeaderboardSize(metric);
+        if (size == 0)
         {
-            sendColoredMessage(sender, getMessage(COMMAND_TOP_EMPTY));
-            return;
+            lines.add(getMessage(COMMAND_TOP_EMPTY));
+            return lines;
         }
+        final int pages = (size + PAGE_SIZE - 1) / PAGE_SIZE;
+        final int page = Math.max(1, Math.min(requestedPage, pages));
 
-        int position = 1;
-        for (final Map.Entry<String, Integer> entry : topPlayers.entrySet())
+        final List<Ranking> rankings;
+        if (period != null)
+        {
+            lines.add(getMessage(COMMAND_TOP_PERIOD_HEADER, getMetricName(metric),
+                getMessage("leaderboard.period." + period.getName()), page, pages));
+            rankings = database.getPeriodLeaderboard(metric, period, (page - 1) * PAGE_SIZE, PAGE_SIZE);
+        }
+        else
+        {
+            lines.add(getMessage(COMMAND_TOP_HEADER, getMetricName(metric), page, pages));
+            rankings = database.getLeaderboard(metric, (page - 1) * PAGE_SIZE, PAGE_SIZE);
+        }
+        for (final Ranking ranking : rankings)
         {
+            final int position = ranking.rank();
             final String top3position = position == 3 ? "§c§l" : "§e";
             final String top2Position = position == 2 ? "§7§l" : top3position;
             final String medal = position == 1 ? "§6§l" : top2Position;
-            sendColoredMessage(sender,
-                getMessage(COMMAND_TOP_POSITION, medal, position, entry.getKey(), entry.getValue()));
-            position++;
+            lines.add(getMessage(COMMAND_TOP_POSITION, medal, position, ranking.playerName(),
+                formatScore(metric, ranking)));
+        }
+
+        if (playerName != null)
+        {
+            final Ranking own = period != null
+                ? database.getPeriodLeaderboardRank(metric, period, playerName)
+                : database.getLeaderboardRank(metric, playerName);
+            if (own != null)
+            {
+                lines.add(getMessage(COMMAND_TOP_OWN_RANK, own.rank(), size, formatScore(metric, own)));
+            }
         }
+        return lines;
+    }
+
+
+    private static String getMetricName(final LeaderboardMetric metric)
+    {
+        return getMessage("leaderboard.metric." + metric.getName());
+    }
+
+
+    private static String formatScore(final LeaderboardMetric metric, final Ranking ranking)
+    {
+        return metric.isTime()
+            ? getMessage(COMMAND_TOP_VALUE_MINUTES, ranking.score() / (1000 * 60))
+            : String.valueOf(ranking.score());
     }
 }
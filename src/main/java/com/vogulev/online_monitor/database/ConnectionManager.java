@@ -3,7 +3,11 @@ package com.vogulev.online_monitor.database;
 
 import java.io.File;
 import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.Properties;
 import java.util.logging.Logger;
 
@@ -29,7 +33,16 @@ public class ConnectionManager
 
     private HikariDataSource dataSource;
 
-    private String timezoneModifier = "";
+    /**
+     * Pool for read-only queries. For SQLite it is a separate pool, so analytics reads
+     * never wait for the single writer connection; for MySQL it is the main pool.
+     */
+    private HikariDataSource readDataSource;
+
+    /**
+     * Time zone used to bucket stored UTC times into local hours and days
+     */
+    private ZoneId zone = ZoneOffset.UTC;
 
 
     /**
@@ -61,13 +74,92 @@ public class ConnectionManager
 
         logger.info("Connecting to " + databaseType.toUpperCase() + " database: " + jdbcUrl);
 
-        final HikariConfig hikariConfig = new HikariConfig(props);
-        dataSource = new HikariDataSource(hikariConfig);
+        if (MYSQL.equals(databaseType))
+        {
+            dataSource = new HikariDataSource(new HikariConfig(props));
+            readDataSource = dataSource;
+        }
+        else
+        {
+            applySqliteProfile(config, props);
+            final int readers = Math.max(1, config.getInt("database.sqlite.reader-connections", 4));
+
+            final Properties writerProps = new Properties();
+            writerProps.putAll(props);
+            writerProps.setProperty("maximumPoolSize", "1");
+            writerProps.setProperty("minimumIdle", "1");
+            writerProps.setProperty("poolName", props.getProperty("poolName", "OnlineMonitorPool") + "-writer");
+            dataSource = new HikariDataSource(new HikariConfig(writerProps));
+
+            final Properties readerProps = new Properties();
+            readerProps.putAll(props);
+            readerProps.setProperty("maximumPoolSize", String.valueOf(readers));
+            readerProps.setProperty("minimumIdle", String.valueOf(
+                Math.min(readers, Integer.parseInt(props.getProperty("minimumIdle", "1")))));
+            readerProps.setProperty("poolName", props.getProperty("poolName", "OnlineMonitorPool") + "-reader");
+            readDataSource = new HikariDataSource(new HikariConfig(readerProps));
+
+            logger.info("SQLite pools: 1 writer connection, " + readers + " reader connection(s)");
+            logSqliteProfile();
+        }
 
         runMigrations();
     }
 
 
+    /**
+     * SQLite performance profile, applied by the driver to every pooled connection:
+     * WAL lets readers work while the writer commits, synchronous=NORMAL is safe with WAL
+     * and avoids an fsync per transaction, busy_timeout makes connections wait for locks
+     * instead of failing with SQLITE_BUSY.
+     */
+    private void applySqliteProfile(final FileConfiguration config, final Properties props)
+    {
+        setDriverPropertyIfAbsent(props, "journal_mode", config.getString("database.sqlite.journal-mode", "WAL"));
+        setDriverPropertyIfAbsent(props, "synchronous", config.getString("database.sqlite.synchronous", "NORMAL"));
+        setDriverPropertyIfAbsent(props, "mmap_size", String.valueOf(config.getLong("database.sqlite.mmap-size", 268435456L)));
+        setDriverPropertyIfAbsent(props, "cache_size", String.valueOf(config.getInt("database.sqlite.cache-size", -16000)));
+        setDriverPropertyIfAbsent(props, "temp_store", config.getString("database.sqlite.temp-store", "MEMORY"));
+        setDriverPropertyIfAbsent(props, "busy_timeout", String.valueOf(config.getInt("database.sqlite.busy-timeout-ms", 5000)));
+    }
+
+
+    /**
+     * Driver properties are passed to HikariCP with the "dataSource." prefix;
+     * values set explicitly in the database.hikari section win
+     */
+    private void setDriverPropertyIfAbsent(final Properties props, final String name, final String value)
+    {
+        final String key = "dataSource." + name;
+        if (!props.containsKey(key))
+        {
+            props.setProperty(key, value);
+        }
+    }
+
+
+    private void logSqliteProfile()
+    {
+        try (Connection conn = dataSource.getConnection();
+             Statement stmt = conn.createStatement())
+        {
+            final StringBuilder profile = new StringBuilder("SQLite profile:");
+            for (final String pragma : new String[] {"journal_mode", "synchronous", "mmap_size", "cache_size", "temp_store", "busy_timeout"})
+            {
+                try (ResultSet rs = stmt.executeQuery("PRAGMA " + pragma))
+                {
+                    profile.append(' ').append(pragma).append('=').append(rs.next() ? rs.getString(1) : "?");
+                }
+            }
+            logger.info(profile.toString());
+        }
+        catch (final SQLException e)
+        {
+            logger.warning("Could not read SQLite profile: " + e.getMessage());
+        }
+    }
+
+
     /**
      * Automatically load all HikariCP properties from database.hikari section
      * Any property set in config.yml will be passed to HikariCP
@@ -126,6 +218,10 @@ public class ConnectionManager
 
     public void disconnect()
     {
+        if (readDataSource != null && readDataSource != dataSource && !readDataSource.isClosed())
+        {
+            readDataSource.close();
+        }
         if (dataSource != null && !dataSource.isClosed())
         {
             dataSource.close();
@@ -134,37 +230,39 @@ public class ConnectionManager
     }
 
 
+    /**
+     * Connection for writes. For SQLite this is the single writer connection.
+     */
     public Connection getConnection() throws SQLException
     {
         return dataSource.getConnection();
     }
 
 
+    /**
+     * Connection for read-only queries
+     */
+    public Connection getReadConnection() throws SQLException
+    {
+        return readDataSource.getConnection();
+    }
+
+
     public String getDatabaseType()
     {
         return databaseType;
     }
 
 
-    public void setTimezoneOffset(final String offset)
+    public void setZone(final ZoneId zone)
     {
-        if (offset != null && !offset.isEmpty())
-        {
-            this.timezoneModifier = ", '" + offset + " hours'";
-            logger.info("Timezone set to UTC" + offset + " (Moscow Time)");
-        }
+        this.zone = zone;
     }
 
 
-    public String getCurrentTimestamp()
+    public ZoneId getZone()
     {
-        if (MYSQL.equals(databaseType))
-        {
-            return "DATE_ADD(NOW(), INTERVAL " + timezoneModifier
-                .replace(", '", "")
-                .replace(" hours'", "") + " HOUR)";
-        }
-        return "datetime('now'" + timezoneModifier + ")";
+        return zone;
     }
 
 
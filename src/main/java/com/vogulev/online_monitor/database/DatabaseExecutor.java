@@ -0,0 +1,472 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+
+/**
+ * Dedicated executor for blocking database writes.
+ * A single writer thread drains a bounded FIFO queue, so writes are applied in submission order.
+ * Per-player writes are batched by the lifecycle pipeline and the statistics buffer into a few
+ * merged flushes, which leaves nothing for more writer threads to do in parallel.
+ */
+public class DatabaseExecutor
+{
+
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    /**
+     * Behaviour when a worker queue is full
+     */
+    public enum RejectionPolicy
+    {
+        /**
+         * Drop the oldest queued mergeable task (flushes and counter updates whose state is kept in memory
+         * and written by the next run) and queue the new task; drop the new task if none is queued.
+         * Never blocks the submitting thread.
+         */
+        DISCARD_OLDEST,
+        /**
+         * Run the task in the submitting thread. Blocks the submitting thread, usually the server thread,
+         * for the duration of the write.
+         */
+        CALLER_RUNS,
+        /**
+         * Wait until the queue has free space
+         */
+        BLOCK,
+        /**
+         * Drop the task and count it as rejected
+         */
+        DISCARD;
+
+
+        public static RejectionPolicy fromString(final String value)
+        {
+            if (value == null)
+            {
+                return DISCARD_OLDEST;
+            }
+            try
+            {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            }
+            catch (final IllegalArgumentException e)
+            {
+                logger.warning("Unknown database executor rejection policy '" + value + "', using discard-oldest");
+                return DISCARD_OLDEST;
+            }
+        }
+    }
+
+    /**
+     * Point-in-time executor statistics
+     */
+    public record Metrics(int queueDepth, int maxQueueDepth, long submitted, long completed, long failed,
+                          long merged, long rejected)
+    {
+    }
+
+    private final Worker worker;
+
+    /**
+     * Submits delayed tasks to the queue, so a retry never waits on the writer thread
+     */
+    private final ScheduledExecutorService delayer = Executors.newSingleThreadScheduledExecutor(runnable ->
+    {
+        final Thread thread = new Thread(runnable, "OnlineMonitor-DB-delay");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final int queueCapacity;
+
+    private final RejectionPolicy rejectionPolicy;
+
+    private final Map<String, MergeableTask> pendingMerges = new ConcurrentHashMap<>();
+
+    private final LongAdder submitted = new LongAdder();
+
+    private final LongAdder completed = new LongAdder();
+
+    private final LongAdder failed = new LongAdder();
+
+    private final LongAdder merged = new LongAdder();
+
+    private final LongAdder rejected = new LongAdder();
+
+    private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+    private volatile boolean highWaterWarned = false;
+
+    private volatile boolean shutdown = false;
+
+
+    public DatabaseExecutor(final int queueCapacity, final RejectionPolicy rejectionPolicy)
+    {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.rejectionPolicy = rejectionPolicy;
+        this.worker = new Worker(this.queueCapacity);
+        worker.start();
+        logger.info("Database executor started: queue-capacity=" + this.queueCapacity +
+            ", rejection-policy=" + rejectionPolicy.name().toLowerCase(Locale.ROOT).replace('_', '-'));
+    }
+
+
+    /**
+     * Submit a task
+     */
+    public void execute(final Runnable task)
+    {
+        submit(task);
+    }
+
+
+    /**
+     * Submit a named task
+     * @param name Task name used in error messages
+     * @param task Database task
+     */
+    public void execute(final String name, final Runnable task)
+    {
+        submit(new NamedTask(name, task));
+    }
+
+
+    /**
+     * Submit a task that may be merged with a not yet started task of the same key.
+     * If such a task is still queued, it is replaced by the new one instead of queuing a second write.
+     * @param mergeKey Merge key
+     * @param task Database task
+     */
+    public void executeMerging(final String mergeKey, final Runnable task)
+    {
+        while (true)
+        {
+            final MergeableTask queued = pendingMerges.get(mergeKey);
+            if (queued == null)
+            {
+                final MergeableTask created = new MergeableTask(mergeKey, task);
+                if (pendingMerges.putIfAbsent(mergeKey, created) == null)
+                {
+                    if (!submit(created))
+                    {
+                        pendingMerges.remove(mergeKey, created);
+                    }
+                    return;
+                }
+            }
+            else if (queued.replace(task))
+            {
+                merged.increment();
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * @return true if the task was queued or executed, false if it was dropped
+     */
+    /**
+     * Submit a mergeable task after a delay. The writer thread keeps running other tasks meanwhile.
+     * @param mergeKey Merge key
+     * @param task Database task
+     * @param delayMillis Delay before the task is queued
+     * @return false if the executor is shut down and the task was not scheduled
+     */
+    public boolean executeMergingLater(final String mergeKey, final Runnable task, final long delayMillis)
+    {
+        if (shutdown)
+        {
+            return false;
+        }
+        try
+        {
+            delayer.schedule(() -> executeMerging(mergeKey, task), delayMillis, TimeUnit.MILLISECONDS);
+            return true;
+        }
+        catch (final RejectedExecutionException e)
+        {
+            return false;
+        }
+    }
+
+
+    private boolean submit(final Runnable task)
+    {
+        submitted.increment();
+
+        if (shutdown)
+        {
+            runSafely(task);
+            return true;
+        }
+
+        if (!worker.queue.offer(task))
+        {
+            switch (rejectionPolicy)
+            {
+                case BLOCK ->
+                {
+                    try
+                    {
+                        worker.queue.put(task);
+                    }
+                    catch (final InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                        rejected.increment();
+                        return false;
+                    }
+                }
+                case DISCARD ->
+                {
+                    countDiscarded();
+                    return false;
+                }
+                case DISCARD_OLDEST ->
+                {
+                    countDiscarded();
+                    if (!discardOldestMergeable() || !worker.queue.offer(task))
+                    {
+                        return false;
+                    }
+                }
+                default ->
+                {
+                    rejected.increment();
+                    runSafely(task);
+                    return true;
+                }
+            }
+        }
+
+        recordDepth(worker.queue.size());
+        return true;
+    }
+
+
+    /**
+     * Removes the oldest queued mergeable task; a later submission with its key queues a new one
+     * @return true if a task was removed
+     */
+    private boolean discardOldestMergeable()
+    {
+        for (final Runnable queued : worker.queue)
+        {
+            if (queued instanceof final MergeableTask mergeable && worker.queue.remove(mergeable))
+            {
+                pendingMerges.remove(mergeable.key, mergeable);
+                logger.fine("Database queue is full, discarded queued task " + mergeable.key);
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    private void countDiscarded()
+    {
+        final long total = rejected.sum();
+        rejected.increment();
+        if (total % 1000 == 0)
+        {
+            logger.warning("Database queue is full, discarded " + (total + 1) + " write(s) so far");
+        }
+    }
+
+
+    private void recordDepth(final int depth)
+    {
+        maxQueueDepth.accumulateAndGet(depth, Math::max);
+        if (!highWaterWarned && depth >= queueCapacity * 0.8)
+        {
+            highWaterWarned = true;
+            logger.warning("Database queue is above 80% of its capacity (" + depth + "/" + queueCapacity +
+                "), database writes are falling behind");
+        }
+    }
+
+
+    private void runSafely(final Runnable task)
+    {
+        try
+        {
+            task.run();
+            completed.increment();
+        }
+        catch (final Exception e)
+        {
+            failed.increment();
+            logger.severe("Error in database task " + nameOf(task) + ": " + e.getMessage());
+        }
+    }
+
+
+    private static String nameOf(final Runnable task)
+    {
+        if (task instanceof final MergeableTask mergeable)
+        {
+            return mergeable.key;
+        }
+        if (task instanceof final NamedTask named)
+        {
+            return named.name();
+        }
+        return "(unnamed)";
+    }
+
+
+    public int getQueueDepth()
+    {
+        return worker.queue.size();
+    }
+
+
+    public Metrics getMetrics()
+    {
+        return new Metrics(getQueueDepth(), maxQueueDepth.get(), submitted.sum(), completed.sum(), failed.sum(),
+            merged.sum(), rejected.sum());
+    }
+
+
+    /**
+     * Stop accepting queued work, wait for already queued tasks to finish.
+     * Tasks submitted after shutdown are executed in the caller thread, delayed tasks not queued yet are dropped.
+     * @param timeoutMillis Maximum time to wait for the queue to drain
+     */
+    public void shutdown(final long timeoutMillis)
+    {
+        shutdown = true;
+        delayer.shutdownNow();
+        worker.stopWhenDrained();
+        try
+        {
+            worker.join(Math.max(1, timeoutMillis));
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        if (worker.isAlive())
+        {
+            logger.warning("Database worker " + worker.getName() + " did not finish in time, " +
+                worker.queue.size() + " write(s) dropped");
+            worker.interrupt();
+        }
+        logger.info("Database executor stopped: " + getMetrics());
+    }
+
+
+    private final class Worker extends Thread
+    {
+        private final BlockingQueue<Runnable> queue;
+
+        private volatile boolean stopping = false;
+
+
+        private Worker(final int capacity)
+        {
+            super("OnlineMonitor-DB");
+            setDaemon(true);
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+
+        private void stopWhenDrained()
+        {
+            stopping = true;
+        }
+
+
+        @Override
+        public void run()
+        {
+            while (true)
+            {
+                final Runnable task;
+                try
+                {
+                    task = queue.poll(200, TimeUnit.MILLISECONDS);
+                }
+                catch (final InterruptedException e)
+                {
+                    return;
+                }
+                if (task == null)
+                {
+                    if (stopping)
+                    {
+                        return;
+                    }
+                    continue;
+                }
+                runSafely(task);
+            }
+        }
+    }
+
+
+    private record NamedTask(String name, Runnable task) implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            task.run();
+        }
+    }
+
+
+    private final class MergeableTask implements Runnable
+    {
+        private final String key;
+
+        private Runnable task;
+
+        private boolean started = false;
+
+
+        private MergeableTask(final String key, final Runnable task)
+        {
+            this.key = key;
+            this.task = task;
+        }
+
+
+        private synchronized boolean replace(final Runnable newTask)
+        {
+            if (started)
+            {
+                return false;
+            }
+            task = newTask;
+            return true;
+        }
+
+
+        @Override
+        public void run()
+        {
+            pendingMerges.remove(key, this);
+            final Runnable latest;
+            synchronized (this)
+            {
+                started = true;
+                latest = task;
+            }
+            latest.run();
+        }
+    }
+}
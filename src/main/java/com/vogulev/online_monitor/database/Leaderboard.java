@@ -0,0 +1,290 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Ranked scores of one metric, highest first, ties ordered by player id.
+ * Kept in a treap whose nodes know the size of their subtree, so updates, rank of a player and
+ * the entry at any position take O(log n), and a page of k entries takes O(log n + k).
+ * All methods are synchronized; they are short and never touch the database.
+ */
+public class Leaderboard
+{
+
+    /**
+     * A ranked player
+     * @param rank Position, 1 for the best score
+     * @param playerId Player id
+     * @param score Score
+     */
+    public record Entry(int rank, int playerId, long score)
+    {
+    }
+
+    private static final class Node
+    {
+        final int playerId;
+
+        final long score;
+
+        final int priority;
+
+        Node left;
+
+        Node right;
+
+        int size = 1;
+
+
+        Node(final int playerId, final long score, final int priority)
+        {
+            this.playerId = playerId;
+            this.score = score;
+            this.priority = priority;
+        }
+    }
+
+    private final Map<Integer, Long> scores = new HashMap<>();
+
+    private Node root;
+
+    private int seed = 0x2545F491;
+
+
+    /**
+     * Adds to a player's score; a player not on the board starts at 0
+     */
+    public synchronized void add(final int playerId, final long delta)
+    {
+        final Long current = scores.get(playerId);
+        set(playerId, (current != null ? current : 0) + delta);
+    }
+
+
+    /**
+     * Sets a player's score, adding the player if not on the board yet
+     */
+    public synchronized void set(final int playerId, final long score)
+    {
+        final Long current = scores.put(playerId, score);
+        if (current != null)
+        {
+            if (current == score)
+            {
+                return;
+            }
+            root = remove(root, playerId, current);
+        }
+        final Node[] parts = split(root, playerId, score);
+        root = merge(merge(parts[0], new Node(playerId, score, nextPriority())), parts[1]);
+    }
+
+
+    /**
+     * @return Score of the player, or 0 if not on the board
+     */
+    public synchronized long score(final int playerId)
+    {
+        final Long score = scores.get(playerId);
+        return score != null ? score : 0;
+    }
+
+
+    /**
+     * @return Position of the player (1 for the best score), or 0 if not on the board
+     */
+    public synchronized int rank(final int playerId)
+    {
+        final Long score = scores.get(playerId);
+        if (score == null)
+        {
+            return 0;
+        }
+        int ahead = 0;
+        Node node = root;
+        while (node != null)
+        {
+            final int cmp = compare(playerId, score, node);
+            if (cmp < 0)
+            {
+                node = node.left;
+            }
+            else
+            {
+                ahead += size(node.left);
+                if (cmp == 0)
+                {
+                    return ahead + 1;
+                }
+                ahead++;
+                node = node.right;
+            }
+        }
+        return 0;
+    }
+
+
+    /**
+     * @return Position and score of the player, or null if not on the board
+     */
+    public synchronized Entry entry(final int playerId)
+    {
+        final int rank = rank(playerId);
+        return rank > 0 ? new Entry(rank, playerId, scores.get(playerId)) : null;
+    }
+
+
+    /**
+     * @param offset Number of best entries to skip
+     * @param limit Maximum number of entries
+     * @return Entries at positions offset+1 .. offset+limit, best first
+     */
+    public synchronized List<Entry> page(final int offset, final int limit)
+    {
+        final List<Entry> entries = new ArrayList<>(Math.max(0, Math.min(limit, size(root) - offset)));
+        if (offset >= 0 && limit > 0)
+        {
+            collect(root, offset, offset + limit, 0, entries);
+        }
+        return entries;
+    }
+
+
+    public synchronized int size()
+    {
+        return size(root);
+    }
+
+
+    /**
+     * In-order walk that skips subtrees entirely before {@code from} or after {@code to}
+     * @param base Number of entries before this subtree
+     */
+    private void collect(final Node node, final int from, final int to, final int base, final List<Entry> out)
+    {
+        if (node == null || base >= to || base + node.size <= from)
+        {
+            return;
+        }
+        collect(node.left, from, to, base, out);
+        final int index = base + size(node.left);
+        if (index >= from && index < to)
+        {
+            out.add(new Entry(index + 1, node.playerId, node.score));
+        }
+        collect(node.right, from, to, index + 1, out);
+    }
+
+
+    /**
+     * Orders by score descending, then by player id
+     */
+    private static int compare(final int playerId, final long score, final Node node)
+    {
+        if (score != node.score)
+        {
+            return score > node.score ? -1 : 1;
+        }
+        return Integer.compare(playerId, node.playerId);
+    }
+
+
+    /**
+     * Splits into entries ranked before the given key and the rest
+     */
+    private static Node[] split(final Node node, final int playerId, final long score)
+    {
+        if (node == null)
+        {
+            return new Node[] {null, null};
+        }
+        if (compare(playerId, score, node) > 0)
+        {
+            final Node[] parts = split(node.right, playerId, score);
+            node.right = parts[0];
+            update(node);
+            parts[0] = node;
+            return parts;
+        }
+        final Node[] parts = split(node.left, playerId, score);
+        node.left = parts[1];
+        update(node);
+        parts[1] = node;
+        return parts;
+    }
+
+
+    private static Node merge(final Node left, final Node right)
+    {
+        if (left == null)
+        {
+            return right;
+        }
+        if (right == null)
+        {
+            return left;
+        }
+        if (left.priority > right.priority)
+        {
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        }
+        right.left = merge(left, right.left);
+        update(right);
+        return right;
+    }
+
+
+    private static Node remove(final Node node, final int playerId, final long score)
+    {
+        if (node == null)
+        {
+            return null;
+        }
+        final int cmp = compare(playerId, score, node);
+        if (cmp == 0)
+        {
+            return merge(node.left, node.right);
+        }
+        if (cmp < 0)
+        {
+            node.left = remove(node.left, playerId, score);
+        }
+        else
+        {
+            node.right = remove(node.right, playerId, score);
+        }
+        update(node);
+        return node;
+    }
+
+
+    private static void update(final Node node)
+    {
+        node.size = 1 + size(node.left) + size(node.right);
+    }
+
+
+    private static int size(final Node node)
+    {
+        return node != null ? node.size : 0;
+    }
+
+
+    /**
+     * Xorshift; treap balance only needs priorities that are not correlated with the keys
+     */
+    private int nextPriority()
+    {
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}
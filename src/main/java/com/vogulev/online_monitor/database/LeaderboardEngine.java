@@ -0,0 +1,101 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * In-memory leaderboards for every {@link LeaderboardMetric}.
+ * Loaded once from player_stats at startup and then updated with the deltas of every committed
+ * join/quit batch and statistics flush, so leaderboard reads never query the database.
+ * Scores contain only committed values; buffered statistics appear after the next flush.
+ */
+public class LeaderboardEngine
+{
+
+    /**
+     * A ranked player with the name to display
+     * @param rank Position, 1 for the best score
+     * @param playerName Last known name
+     * @param score Score; milliseconds for time metrics
+     */
+    public record Ranking(int rank, String playerName, long score)
+    {
+    }
+
+    private final Map<LeaderboardMetric, Leaderboard> boards = new EnumMap<>(LeaderboardMetric.class);
+
+    private final Map<Integer, String> names = new ConcurrentHashMap<>();
+
+
+    public LeaderboardEngine()
+    {
+        for (final LeaderboardMetric metric : LeaderboardMetric.values())
+        {
+            boards.put(metric, new Leaderboard());
+        }
+    }
+
+
+    /**
+     * Sets the stored score of a player, used when loading
+     */
+    public void set(final int playerId, final String playerName, final LeaderboardMetric metric, final long score)
+    {
+        names.put(playerId, playerName);
+        boards.get(metric).set(playerId, score);
+    }
+
+
+    /**
+     * Adds a committed delta to a player's score
+     */
+    public void add(final int playerId, final String playerName, final LeaderboardMetric metric, final long delta)
+    {
+        names.put(playerId, playerName);
+        if (delta != 0)
+        {
+            boards.get(metric).add(playerId, delta);
+        }
+    }
+
+
+    /**
+     * @param offset Number of best players to skip
+     * @param limit Maximum number of players
+     * @return Players at positions offset+1 .. offset+limit, best first
+     */
+    public List<Ranking> page(final LeaderboardMetric metric, final int offset, final int limit)
+    {
+        final List<Leaderboard.Entry> entries = boards.get(metric).page(offset, limit);
+        final List<Ranking> rankings = new ArrayList<>(entries.size());
+        for (final Leaderboard.Entry entry : entries)
+        {
+            rankings.add(new Ranking(entry.rank(), names.get(entry.playerId()), entry.score()));
+        }
+        return rankings;
+    }
+
+
+    /**
+     * @return Position and score of the player, or null if the player is not on the leaderboard
+     */
+    public Ranking rank(final LeaderboardMetric metric, final int playerId)
+    {
+        final Leaderboard.Entry entry = boards.get(metric).entry(playerId);
+        return entry != null ? new Ranking(entry.rank(), names.get(playerId), entry.score()) : null;
+    }
+
+
+    /**
+     * @return Number of players on the leaderboard
+     */
+    public int size(final LeaderboardMetric metric)
+    {
+        return boards.get(metric).size();
+    }
+}
@@ -0,0 +1,110 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.Optional;
+
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+
+
+/**
+ * Player metrics that have a leaderboard, mapped to their player_stats and player_daily_stats columns
+ */
+public enum LeaderboardMetric
+{
+    JOINS("joins", "total_joins", "joins", false),
+    PLAYTIME("playtime", "total_playtime", "playtime", true),
+    ACTIVE_TIME("active", "total_active_time", "active_time", true),
+    DEATHS("deaths", "deaths", "deaths", false),
+    MOB_KILLS("mobkills", "mob_kills", "mob_kills", false),
+    PLAYER_KILLS("pvp", "player_kills", "player_kills", false),
+    BLOCKS_BROKEN("broken", "blocks_broken", "blocks_broken", false),
+    BLOCKS_PLACED("placed", "blocks_placed", "blocks_placed", false),
+    MESSAGES_SENT("messages", "messages_sent", "messages_sent", false);
+
+    private final String name;
+
+    private final String column;
+
+    private final String dailyColumn;
+
+    private final boolean time;
+
+
+    LeaderboardMetric(final String name, final String column, final String dailyColumn, final boolean time)
+    {
+        this.name = name;
+        this.column = column;
+        this.dailyColumn = dailyColumn;
+        this.time = time;
+    }
+
+
+    /**
+     * @return Name used in commands, the web API and Discord
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    public String getColumn()
+    {
+        return column;
+    }
+
+
+    /**
+     * @return Column in player_daily_stats
+     */
+    public String getDailyColumn()
+    {
+        return dailyColumn;
+    }
+
+
+    /**
+     * @return true if scores are durations in milliseconds
+     */
+    public boolean isTime()
+    {
+        return time;
+    }
+
+
+    /**
+     * Case-insensitive lookup by {@link #getName()}
+     */
+    public static Optional<LeaderboardMetric> fromString(final String name)
+    {
+        if (name == null)
+        {
+            return Optional.empty();
+        }
+        for (final LeaderboardMetric metric : values())
+        {
+            if (metric.name.equalsIgnoreCase(name))
+            {
+                return Optional.of(metric);
+            }
+        }
+        return Optional.empty();
+    }
+
+
+    /**
+     * @return Metric fed by a buffered statistics counter
+     */
+    public static LeaderboardMetric of(final Counter counter)
+    {
+        return switch (counter)
+        {
+            case DEATHS -> DEATHS;
+            case MOB_KILLS -> MOB_KILLS;
+            case PLAYER_KILLS -> PLAYER_KILLS;
+            case BLOCKS_BROKEN -> BLOCKS_BROKEN;
+            case BLOCKS_PLACED -> BLOCKS_PLACED;
+            case MESSAGES_SENT -> MESSAGES_SENT;
+        };
+    }
+}
@@ -0,0 +1,85 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+
+/**
+ * Rolling windows of the period leaderboards, in local days including today
+ */
+public enum LeaderboardPeriod
+{
+    DAY("day", 1),
+    WEEK("week", 7),
+    MONTH("month", 30);
+
+    private final String name;
+
+    private final int days;
+
+
+    LeaderboardPeriod(final String name, final int days)
+    {
+        this.name = name;
+        this.days = days;
+    }
+
+
+    /**
+     * @return Name used in commands, the web API and Discord
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+
+    public int getDays()
+    {
+        return days;
+    }
+
+
+    /**
+     * @return First local day of the window ending with the given day
+     */
+    public LocalDate firstDay(final LocalDate today)
+    {
+        return today.minusDays(days - 1L);
+    }
+
+
+    /**
+     * @return Number of days of the longest window
+     */
+    public static int maxDays()
+    {
+        int max = 0;
+        for (final LeaderboardPeriod period : values())
+        {
+            max = Math.max(max, period.days);
+        }
+        return max;
+    }
+
+
+    /**
+     * Case-insensitive lookup by {@link #getName()}
+     */
+    public static Optional<LeaderboardPeriod> fromString(final String name)
+    {
+        if (name == null)
+        {
+            return Optional.empty();
+        }
+        for (final LeaderboardPeriod period : values())
+        {
+            if (period.name.equalsIgnoreCase(name))
+            {
+                return Optional.of(period);
+            }
+        }
+        return Optional.empty();
+    }
+}
@@ -0,0 +1,16 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.Map;
+
+import com.vogulev.online_monitor.database.RetentionPolicy.Resolution;
+
+
+/**
+ * Online history for a time range
+ * @param resolution Storage tier the points were read from
+ * @param points Average online by bucket start (epoch milliseconds), in time order
+ */
+public record OnlineHistory(Resolution resolution, Map<Long, Double> points)
+{
+}
@@ -0,0 +1,101 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.repositories.PlayerDailyStatsRepository;
+
+
+/**
+ * Daily, weekly and monthly leaderboards summed from the per-day player buckets.
+ * The best {@value #MAX_ENTRIES} players of every metric and period are computed with one query and
+ * kept for the configured time, so repeated reads within it never touch the database.
+ * A cached list is also recomputed when the local day changes and the window moves.
+ */
+public class PeriodLeaderboards
+{
+
+    /**
+     * Number of players computed and cached per metric and period
+     */
+    public static final int MAX_ENTRIES = 100;
+
+    private record Key(LeaderboardMetric metric, LeaderboardPeriod period)
+    {
+    }
+
+    private record Cached(LocalDate firstDay, List<Ranking> rankings, long expiresAt)
+    {
+    }
+
+    private final PlayerDailyStatsRepository dailyStatsRepo;
+
+    private final long ttlMillis;
+
+    private final Map<Key, Cached> cache = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param ttlSeconds How long a computed leaderboard is served, 0 to always query
+     */
+    public PeriodLeaderboards(final PlayerDailyStatsRepository dailyStatsRepo, final int ttlSeconds)
+    {
+        this.dailyStatsRepo = dailyStatsRepo;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+    }
+
+
+    /**
+     * @return Best players of the period, best first, at most {@value #MAX_ENTRIES}; may query the database
+     */
+    public List<Ranking> get(final LeaderboardMetric metric, final LeaderboardPeriod period)
+    {
+        final Key key = new Key(metric, period);
+        final LocalDate firstDay = period.firstDay(dailyStatsRepo.today());
+        final long now = System.currentTimeMillis();
+        final Cached cached = cache.get(key);
+        if (cached != null && cached.expiresAt() > now && cached.firstDay().equals(firstDay))
+        {
+            return cached.rankings();
+        }
+        final List<Ranking> rankings = List.copyOf(dailyStatsRepo.getTopPlayers(metric, firstDay, MAX_ENTRIES));
+        cache.put(key, new Cached(firstDay, rankings, now + ttlMillis));
+        return rankings;
+    }
+
+
+    /**
+     * @param offset Number of best players to skip
+     * @param limit Maximum number of players
+     * @return Players at positions offset+1 .. offset+limit within the cached top, best first
+     */
+    public List<Ranking> page(final LeaderboardMetric metric, final LeaderboardPeriod period, final int offset,
+        final int limit)
+    {
+        final List<Ranking> rankings = get(metric, period);
+        final int from = Math.max(0, Math.min(offset, rankings.size()));
+        final int to = Math.max(from, Math.min(rankings.size(), from + Math.max(0, limit)));
+        return rankings.subList(from, to);
+    }
+
+
+    /**
+     * @return Position and score of the player, or null if the player is not in the cached top
+     */
+    public Ranking rank(final LeaderboardMetric metric, final LeaderboardPeriod period, final String playerName)
+    {
+        for (final Ranking ranking : get(metric, period))
+        {
+            if (ranking.playerName().equalsIgnoreCase(playerName))
+            {
+                return ranking;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,88 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+
+/**
+ * Player join or quit queued for the lifecycle pipeline
+ */
+public sealed interface PlayerLifecycleEvent
+{
+
+    UUID playerId();
+
+    String playerName();
+
+    /**
+     * Event time as UTC epoch milliseconds
+     */
+    long timestamp();
+
+
+    record Join(UUID playerId, String playerName, long timestamp) implements PlayerLifecycleEvent
+    {
+    }
+
+
+    /**
+     * @param sessionDuration Whole session length, milliseconds
+     * @param afkDuration Part of the session the player was AFK, milliseconds
+     */
+    record Quit(UUID playerId, String playerName, long sessionDuration, long afkDuration, long timestamp)
+        implements PlayerLifecycleEvent
+    {
+
+        /**
+         * @return Part of the session the player was active, milliseconds
+         */
+        public long activeDuration()
+        {
+            return sessionDuration - afkDuration;
+        }
+
+
+        /**
+         * Splits the session into the local days it covers. The active time is apportioned to each
+         * day in proportion to the playtime; the last day gets the rounding remainder.
+         * @return Playtime per local day in the given zone, in time order; empty for an empty session
+         */
+        public List<DayPlaytime> playtimeByDay(final ZoneId zone)
+        {
+            final List<DayPlaytime> days = new ArrayList<>();
+            if (sessionDuration <= 0)
+            {
+                return days;
+            }
+            long start = timestamp - sessionDuration;
+            long activeLeft = activeDuration();
+            while (start < timestamp)
+            {
+                final LocalDate day = Instant.ofEpochMilli(start).atZone(zone).toLocalDate();
+                final long nextDay = day.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+                final long pieceEnd = Math.min(timestamp, nextDay);
+                final long piece = pieceEnd - start;
+                final long active = pieceEnd == timestamp ? activeLeft : activeDuration() * piece / sessionDuration;
+                activeLeft -= active;
+                days.add(new DayPlaytime(day, piece, active));
+                start = pieceEnd;
+            }
+            return days;
+        }
+    }
+
+
+    /**
+     * Part of a session within one local day
+     * @param playtime Milliseconds
+     * @param activeTime Milliseconds
+     */
+    record DayPlaytime(LocalDate day, long playtime, long activeTime)
+    {
+    }
+}
@@ -0,0 +1,451 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.function.BiConsumer;
+import java.util.logging.Logger;
+
+import com.vogulev.online_monitor.database.repositories.PlayerDailyStatsRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository.PlayerRef;
+import com.vogulev.online_monitor.database.repositories.PlayerStatsRepository;
+import com.vogulev.online_monitor.database.repositories.ServerCountersRepository;
+import com.vogulev.online_monitor.database.repositories.SessionRepository;
+
+
+/**
+ * Groups queued player joins and quits into one transaction per flush.
+ * A flush is queued on the database executor when the first event arrives; events that
+ * arrive while it waits are merged into the same flush, so a login storm becomes a few
+ * large batches instead of hundreds of autocommit writes.
+ * Player ids are resolved and the daily statistics buckets updated in the same transaction;
+ * leaderboards and cached player profiles are updated after the commit.
+ * A batch failing with a transient error (lock conflict, lost connection) is put back at the head
+ * of the queue and retried by a flush queued after a doubling delay, so the writer thread keeps
+ * running other writes meanwhile. A batch failing with any other error is split in halves until
+ * the failing events are isolated; only those are logged and dropped.
+ */
+public class PlayerLifecyclePipeline
+{
+
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    private static final int MAX_EVENTS_PER_FLUSH = 500;
+
+    private static final String FLUSH_KEY = "lifecycle-flush";
+
+    private static final long RETRY_BACKOFF_MILLIS = 100;
+
+    private static final long MAX_RETRY_DELAY_MILLIS = 5000;
+
+    /**
+     * Immediate attempts of a flush that cannot be rescheduled because the executor is shut down
+     */
+    private static final int MAX_ATTEMPTS_AT_SHUTDOWN = 3;
+
+    private final Deque<PlayerLifecycleEvent> queue = new ConcurrentLinkedDeque<>();
+
+    private final ConnectionManager connectionManager;
+
+    private final DatabaseExecutor executor;
+
+    private final PlayerRepository playerRepo;
+
+    private final PlayerStatsRepository playerStatsRepo;
+
+    private final PlayerDailyStatsRepository dailyStatsRepo;
+
+    private final SessionRepository sessionRepo;
+
+    private final ServerCountersRepository countersRepo;
+
+    private final LeaderboardEngine leaderboards;
+
+    private final PlayerProfileCache profiles;
+
+    private final boolean sqlite;
+
+    /**
+     * Consecutive flushes stopped by a transient error, guarded by the flush lock
+     */
+    private int failedAttempts = 0;
+
+    /**
+     * Set while a delayed retry is pending; new events wait for it instead of queuing an immediate flush
+     */
+    private volatile boolean retryScheduled = false;
+
+    private volatile BiConsumer<UUID, Long> sessionOpenedListener = (playerId, sessionId) -> {
+    };
+
+
+    public PlayerLifecyclePipeline(final ConnectionManager connectionManager, final DatabaseExecutor executor,
+        final PlayerRepository playerRepo, final PlayerStatsRepository playerStatsRepo,
+        final PlayerDailyStatsRepository dailyStatsRepo, final SessionRepository sessionRepo, final ServerCountersRepository countersRepo,
+        final LeaderboardEngine leaderboards, final PlayerProfileCache profiles)
+    {
+        this.connectionManager = connectionManager;
+        this.executor = executor;
+        this.playerRepo = playerRepo;
+        this.playerStatsRepo = playerStatsRepo;
+        this.dailyStatsRepo = dailyStatsRepo;
+        this.sessionRepo = sessionRepo;
+        this.countersRepo = countersRepo;
+        this.leaderboards = leaderboards;
+        this.profiles = profiles;
+        this.sqlite = !ConnectionManager.MYSQL.equals(connectionManager.getDatabaseType());
+    }
+
+
+    /**
+     * @param listener Called with the player UUID and session id after a session row is committed
+     */
+    public void setSessionOpenedListener(final BiConsumer<UUID, Long> listener)
+    {
+        this.sessionOpenedListener = listener;
+    }
+
+
+    public void enqueue(final PlayerLifecycleEvent event)
+    {
+        queue.add(event);
+        if (!retryScheduled)
+        {
+            executor.executeMerging(FLUSH_KEY, this::flush);
+        }
+    }
+
+
+    /**
+     * Write all queued events, one transaction per chunk of at most {@value #MAX_EVENTS_PER_FLUSH} events.
+     * On a transient error the unwritten events stay queued and a retry is queued after a doubling delay.
+     */
+    public synchronized void flush()
+    {
+        retryScheduled = false;
+        while (!queue.isEmpty())
+        {
+            final List<PlayerLifecycleEvent> batch = new ArrayList<>();
+            PlayerLifecycleEvent event;
+            while (batch.size() < MAX_EVENTS_PER_FLUSH && (event = queue.poll()) != null)
+            {
+                batch.add(event);
+            }
+
+            final int unwritten = writeIsolating(batch);
+            if (unwritten == 0)
+            {
+                failedAttempts = 0;
+                continue;
+            }
+
+            requeue(batch.subList(batch.size() - unwritten, batch.size()));
+            failedAttempts++;
+            final long delay = Math.min(MAX_RETRY_DELAY_MILLIS, RETRY_BACKOFF_MILLIS << Math.min(failedAttempts - 1, 16));
+            retryScheduled = true;
+            if (executor.executeMergingLater(FLUSH_KEY, this::flush, delay))
+            {
+                return;
+            }
+            retryScheduled = false;
+
+            // Shutting down: nothing runs the flush later, retry at once
+            if (failedAttempts >= MAX_ATTEMPTS_AT_SHUTDOWN)
+            {
+                final List<PlayerLifecycleEvent> remaining = new ArrayList<>(queue);
+                queue.clear();
+                drop(remaining, "the database stayed busy during shutdown");
+                failedAttempts = 0;
+                return;
+            }
+        }
+    }
+
+
+    /**
+     * Writes the events in one transaction. On a permanent error the events are split in halves and
+     * written separately, down to single events that are dropped.
+     * @return Number of events at the end of the list left unwritten by a transient error
+     */
+    private int writeIsolating(final List<PlayerLifecycleEvent> events)
+    {
+        final SQLException error = writeBatch(events);
+        if (error == null)
+        {
+            return 0;
+        }
+        if (isTransient(error))
+        {
+            return events.size();
+        }
+        if (events.size() == 1)
+        {
+            drop(events, error.getMessage());
+            return 0;
+        }
+
+        final int half = events.size() / 2;
+        final int unwrittenHead = writeIsolating(events.subList(0, half));
+        if (unwrittenHead > 0)
+        {
+            return unwrittenHead + events.size() - half;
+        }
+        return writeIsolating(events.subList(half, events.size()));
+    }
+
+
+    /**
+     * Lock conflicts and lost connections go away on their own; constraint, schema and data errors do not
+     */
+    private boolean isTransient(final SQLException e)
+    {
+        if (e instanceof SQLTransientException || e instanceof SQLRecoverableException)
+        {
+            return true;
+        }
+        final String state = e.getSQLState();
+        if (state != null && (state.startsWith("08") || state.startsWith("40")))
+        {
+            return true;
+        }
+        // SQLITE_BUSY and SQLITE_LOCKED; MySQL lock wait timeout and deadlock
+        return sqlite
+            ? e.getErrorCode() == 5 || e.getErrorCode() == 6
+            : e.getErrorCode() == 1205 || e.getErrorCode() == 1213;
+    }
+
+
+    /**
+     * Puts failed events back at the head of the queue, in their original order
+     */
+    private void requeue(final List<PlayerLifecycleEvent> events)
+    {
+        for (int i = events.size() - 1; i >= 0; i--)
+        {
+            queue.addFirst(events.get(i));
+        }
+    }
+
+
+    private void drop(final List<PlayerLifecycleEvent> events, final String reason)
+    {
+        logger.severe("Dropping " + events.size() + " player join/quit event(s): " + reason);
+        for (final PlayerLifecycleEvent event : events)
+        {
+            if (event instanceof final PlayerLifecycleEvent.Quit quit)
+            {
+                logger.severe("Dropped quit of " + quit.playerName() + " (" + quit.playerId() + ") at " +
+                    quit.timestamp() + ", session " + quit.sessionDuration() + " ms, AFK " + quit.afkDuration() + " ms");
+            }
+            else
+            {
+                logger.severe("Dropped join of " + event.playerName() + " (" + event.playerId() + ") at " +
+                    event.timestamp());
+            }
+        }
+    }
+
+
+    /**
+     * @return null if the batch was committed, the error if it was rolled back
+     */
+    private SQLException writeBatch(final List<PlayerLifecycleEvent> batch)
+    {
+        final List<PlayerLifecycleEvent.Join> joins = new ArrayList<>();
+        final List<PlayerLifecycleEvent.Quit> quits = new ArrayList<>();
+        // For every quit: index of the join in this batch it closes, or null if it closes a registered session
+        final List<Integer> quitJoinIndexes = new ArrayList<>();
+        final Map<UUID, Integer> lastJoinIndex = new HashMap<>();
+        // Latest name of every player in the batch
+        final Map<UUID, String> names = new HashMap<>();
+
+        for (final PlayerLifecycleEvent event : batch)
+        {
+            if (event instanceof final PlayerLifecycleEvent.Join join)
+            {
+                lastJoinIndex.put(join.playerId(), joins.size());
+                joins.add(join);
+                names.put(join.playerId(), join.playerName());
+            }
+            else if (event instanceof final PlayerLifecycleEvent.Quit quit)
+            {
+                quitJoinIndexes.add(lastJoinIndex.remove(quit.playerId()));
+                quits.add(quit);
+                names.put(quit.playerId(), quit.playerName());
+            }
+        }
+
+        final long startTime = System.nanoTime();
+        final Map<UUID, PlayerRef> players;
+        try (Connection conn = connectionManager.getConnection())
+        {
+            conn.setAutoCommit(false);
+            try
+            {
+                players = playerRepo.resolve(conn, names);
+                playerStatsRepo.recordPlayerJoins(conn, joins, players);
+                dailyStatsRepo.addJoins(conn, joins, players);
+                final long[] sessionIds = sessionRepo.insertSessions(conn, joins, players);
+
+                final List<Long> closedIds = new ArrayList<>();
+                final List<PlayerLifecycleEvent.Quit> closedQuits = new ArrayList<>();
+                final List<UUID> closedOwners = new ArrayList<>();
+                final Set<UUID> registryUsed = new HashSet<>();
+                for (int i = 0; i < quits.size(); i++)
+                {
+                    final PlayerLifecycleEvent.Quit quit = quits.get(i);
+                    final Integer joinIndex = quitJoinIndexes.get(i);
+                    Long sessionId = null;
+                    if (joinIndex != null)
+                    {
+                        sessionId = sessionIds[joinIndex] >= 0 ? sessionIds[joinIndex] : null;
+                    }
+                    else if (registryUsed.add(quit.playerId()))
+                    {
+                        sessionId = sessionRepo.getOpenSessionId(quit.playerId());
+                    }
+
+                    if (sessionId == null)
+                    {
+                        logger.warning("No active session found for player: " + quit.playerName());
+                        continue;
+                    }
+                    closedIds.add(sessionId);
+                    closedQuits.add(quit);
+                    closedOwners.add(quit.playerId());
+                }
+                sessionRepo.closeSessions(conn, closedIds, closedQuits);
+                playerStatsRepo.updatePlaytimes(conn, quits, players);
+                dailyStatsRepo.addPlaytimes(conn, quits, players);
+
+                long openedSessions = 0;
+                for (final long sessionId : sessionIds)
+                {
+                    if (sessionId >= 0)
+                    {
+                        openedSessions++;
+                    }
+                }
+                long playtime = 0;
+                long activeTime = 0;
+                for (final PlayerLifecycleEvent.Quit quit : quits)
+                {
+                    playtime += quit.sessionDuration();
+                    activeTime += quit.activeDuration();
+                }
+                final long activeDelta = openedSessions - closedIds.size();
+                countersRepo.add(conn, playtime, activeTime, openedSessions, activeDelta);
+
+                conn.commit();
+                playerRepo.cache(players.values());
+                countersRepo.publish(playtime, activeTime, openedSessions, activeDelta);
+                publishLeaderboards(joins, quits, players);
+
+                for (int i = 0; i < joins.size(); i++)
+                {
+                    if (sessionIds[i] >= 0)
+                    {
+                        sessionRepo.registerOpenSession(joins.get(i).playerId(), sessionIds[i]);
+                        sessionOpenedListener.accept(joins.get(i).playerId(), sessionIds[i]);
+                    }
+                }
+                for (int i = 0; i < closedIds.size(); i++)
+                {
+                    sessionRepo.unregisterOpenSession(closedOwners.get(i), closedIds.get(i));
+                }
+            }
+            catch (final SQLException e)
+            {
+                conn.rollback();
+                throw e;
+            }
+            finally
+            {
+                conn.setAutoCommit(true);
+            }
+        }
+        catch (final SQLException e)
+        {
+            logger.severe("Error writing player joins/quits (" + batch.size() + " events): " + e.getMessage());
+            return e;
+        }
+
+        // May load profiles, so done with the writer connection released
+        publishProfiles(batch, players);
+
+        if (batch.size() > 1)
+        {
+            final long elapsedMillis = (System.nanoTime() - startTime) / 1_000_000;
+            logger.fine("Wrote " + joins.size() + " join(s) and " + quits.size() + " quit(s) in one transaction, " +
+                elapsedMillis + " ms");
+        }
+        return null;
+    }
+
+
+    /**
+     * Applies committed joins and quits to the cached profiles, in event order. Joined players are pinned
+     * as online and the profiles of those not cached yet are loaded with one query.
+     */
+    private void publishProfiles(final List<PlayerLifecycleEvent> batch, final Map<UUID, PlayerRef> players)
+    {
+        final Set<Integer> toLoad = new HashSet<>();
+        for (final PlayerLifecycleEvent event : batch)
+        {
+            final PlayerRef player = players.get(event.playerId());
+            if (event instanceof final PlayerLifecycleEvent.Join join)
+            {
+                profiles.update(player.id(), profile -> profile.withJoin(player.name(), join.timestamp()));
+                if (profiles.pin(player.id()))
+                {
+                    toLoad.add(player.id());
+                }
+            }
+            else if (event instanceof final PlayerLifecycleEvent.Quit quit)
+            {
+                profiles.update(player.id(),
+                    profile -> profile.withSession(quit.sessionDuration(), quit.activeDuration(), quit.afkDuration()));
+                profiles.unpin(player.id());
+                toLoad.remove(player.id());
+            }
+        }
+
+        final long generation = profiles.generation();
+        for (final PlayerProfile profile : playerStatsRepo.getProfiles(toLoad))
+        {
+            profiles.put(profile, generation);
+        }
+    }
+
+
+    /**
+     * Applies committed joins and playtimes to the leaderboards
+     */
+    private void publishLeaderboards(final List<PlayerLifecycleEvent.Join> joins,
+        final List<PlayerLifecycleEvent.Quit> quits, final Map<UUID, PlayerRef> players)
+    {
+        for (final PlayerLifecycleEvent.Join join : joins)
+        {
+            final PlayerRef player = players.get(join.playerId());
+            leaderboards.add(player.id(), player.name(), LeaderboardMetric.JOINS, 1);
+        }
+        for (final PlayerLifecycleEvent.Quit quit : quits)
+        {
+            final PlayerRef player = players.get(quit.playerId());
+            leaderboards.add(player.id(), player.name(), LeaderboardMetric.PLAYTIME, quit.sessionDuration());
+            leaderboards.add(player.id(), player.name(), LeaderboardMetric.ACTIVE_TIME, quit.activeDuration());
+        }
+    }
+}
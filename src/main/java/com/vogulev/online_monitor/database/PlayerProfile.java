@@ -0,0 +1,81 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.UUID;
+import java.util.function.ToIntFunction;
+
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+
+
+/**
+ * Immutable view of a player's stored statistics, read with one query.
+ * Updates of the write path produce a changed copy.
+ * @param playerId Player id
+ * @param uuid Player UUID, or null for players recorded before UUIDs were stored
+ * @param name Last known name
+ * @param joins Number of joins
+ * @param playtime Total playtime, milliseconds
+ * @param activeTime Playtime without AFK time, milliseconds
+ * @param afkTime AFK time, milliseconds
+ * @param firstJoin First join, epoch milliseconds (0 if unknown)
+ * @param lastJoin Last join, epoch milliseconds (0 if unknown)
+ * @param lastActivity Last written activity, epoch milliseconds (0 if unknown)
+ */
+public record PlayerProfile(int playerId, UUID uuid, String name, int joins, long playtime, long activeTime,
+                            long afkTime, long firstJoin, long lastJoin, long lastActivity, int deaths, int mobKills,
+                            int playerKills, int blocksBroken, int blocksPlaced, int messagesSent)
+{
+
+    public int get(final Counter counter)
+    {
+        return switch (counter)
+        {
+            case DEATHS -> deaths;
+            case MOB_KILLS -> mobKills;
+            case PLAYER_KILLS -> playerKills;
+            case BLOCKS_BROKEN -> blocksBroken;
+            case BLOCKS_PLACED -> blocksPlaced;
+            case MESSAGES_SENT -> messagesSent;
+        };
+    }
+
+
+    /**
+     * @return Copy with one more join at the given time, under the given name
+     */
+    public PlayerProfile withJoin(final String playerName, final long timestamp)
+    {
+        return new PlayerProfile(playerId, uuid, playerName, joins + 1, playtime, activeTime, afkTime,
+            firstJoin > 0 ? firstJoin : timestamp, timestamp, lastActivity, deaths, mobKills, playerKills,
+            blocksBroken, blocksPlaced, messagesSent);
+    }
+
+
+    /**
+     * @return Copy with a finished session added to the playtimes
+     */
+    public PlayerProfile withSession(final long sessionDuration, final long activeDuration, final long afkDuration)
+    {
+        return new PlayerProfile(playerId, uuid, name, joins, playtime + sessionDuration,
+            activeTime + activeDuration, afkTime + afkDuration, firstJoin, lastJoin, lastActivity, deaths, mobKills,
+            playerKills, blocksBroken, blocksPlaced, messagesSent);
+    }
+
+
+    /**
+     * @param deltas Amount to add to each counter
+     * @param activity Activity time, epoch milliseconds; older than the current one (or 0) is ignored
+     * @return Copy with the counters increased
+     */
+    public PlayerProfile withCounters(final ToIntFunction<Counter> deltas, final long activity)
+    {
+        return new PlayerProfile(playerId, uuid, name, joins, playtime, activeTime, afkTime, firstJoin, lastJoin,
+            Math.max(lastActivity, activity),
+            deaths + deltas.applyAsInt(Counter.DEATHS),
+            mobKills + deltas.applyAsInt(Counter.MOB_KILLS),
+            playerKills + deltas.applyAsInt(Counter.PLAYER_KILLS),
+            blocksBroken + deltas.applyAsInt(Counter.BLOCKS_BROKEN),
+            blocksPlaced + deltas.applyAsInt(Counter.BLOCKS_PLACED),
+            messagesSent + deltas.applyAsInt(Counter.MESSAGES_SENT));
+    }
+}
@@ -0,0 +1,198 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+
+/**
+ * Read-through cache of player profiles, looked up by name.
+ * Profiles of online players are pinned: they are loaded when the join is committed, kept up to date by
+ * the write path and never expire. Other profiles are kept for a limited time in a size-bounded LRU map.
+ * Every committed write updates the cached profile of its player and bumps a generation, so a profile
+ * loaded concurrently with a write (and possibly missing it) is not cached; see {@link #put}.
+ * All methods are synchronized; they are short and never touch the database.
+ */
+public class PlayerProfileCache
+{
+
+    private record Entry(PlayerProfile profile, long loadedAt)
+    {
+    }
+
+    private final long ttlMillis;
+
+    private final Map<Integer, PlayerProfile> online = new HashMap<>();
+
+    private final Set<Integer> pinned = new HashSet<>();
+
+    private final LinkedHashMap<Integer, Entry> offline;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    private long generation;
+
+
+    /**
+     * @param maxSize Maximum number of cached profiles of offline players
+     * @param ttlSeconds How long a profile of an offline player is served
+     */
+    public PlayerProfileCache(final int maxSize, final int ttlSeconds)
+    {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(Math.max(0, ttlSeconds));
+        final int capacity = Math.max(0, maxSize);
+        this.offline = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<Integer, Entry> eldest)
+            {
+                if (size() <= capacity)
+                {
+                    return false;
+                }
+                forgetName(eldest.getValue().profile());
+                return true;
+            }
+        };
+    }
+
+
+    /**
+     * @return Cached profile of the player that last used the name, or null if not cached or expired
+     */
+    public synchronized PlayerProfile get(final String playerName)
+    {
+        final Integer playerId = ids.get(playerName);
+        if (playerId == null)
+        {
+            return null;
+        }
+        final PlayerProfile profile = online.get(playerId);
+        if (profile != null)
+        {
+            return profile;
+        }
+        final Entry entry = offline.get(playerId);
+        if (entry == null)
+        {
+            return null;
+        }
+        if (System.currentTimeMillis() - entry.loadedAt() >= ttlMillis)
+        {
+            offline.remove(playerId);
+            forgetName(entry.profile());
+            return null;
+        }
+        return entry.profile();
+    }
+
+
+    /**
+     * @return Current generation; take it before loading a profile and pass it to {@link #put}
+     */
+    public synchronized long generation()
+    {
+        return generation;
+    }
+
+
+    /**
+     * Caches a loaded profile unless a write was published after the given generation was taken
+     */
+    public synchronized void put(final PlayerProfile profile, final long loadedGeneration)
+    {
+        if (loadedGeneration != generation)
+        {
+            return;
+        }
+        if (pinned.contains(profile.playerId()))
+        {
+            online.put(profile.playerId(), profile);
+        }
+        else
+        {
+            offline.put(profile.playerId(), new Entry(profile, System.currentTimeMillis()));
+        }
+        ids.put(profile.name(), profile.playerId());
+    }
+
+
+    /**
+     * Applies a committed write to the cached profile of the player, if any
+     */
+    public synchronized void update(final int playerId, final UnaryOperator<PlayerProfile> change)
+    {
+        generation++;
+        final PlayerProfile current = online.get(playerId);
+        if (current != null)
+        {
+            final PlayerProfile changed = change.apply(current);
+            online.put(playerId, changed);
+            rename(current, changed);
+            return;
+        }
+        final Entry entry = offline.get(playerId);
+        if (entry != null)
+        {
+            final PlayerProfile changed = change.apply(entry.profile());
+            offline.put(playerId, new Entry(changed, entry.loadedAt()));
+            rename(entry.profile(), changed);
+        }
+    }
+
+
+    /**
+     * Marks a player as online; a cached profile stops expiring
+     * @return true if the profile still has to be loaded
+     */
+    public synchronized boolean pin(final int playerId)
+    {
+        pinned.add(playerId);
+        if (online.containsKey(playerId))
+        {
+            return false;
+        }
+        final Entry entry = offline.remove(playerId);
+        if (entry == null)
+        {
+            return true;
+        }
+        online.put(playerId, entry.profile());
+        return false;
+    }
+
+
+    /**
+     * Marks a player as offline; the profile is kept as a freshly loaded one
+     */
+    public synchronized void unpin(final int playerId)
+    {
+        pinned.remove(playerId);
+        final PlayerProfile profile = online.remove(playerId);
+        if (profile != null)
+        {
+            offline.put(playerId, new Entry(profile, System.currentTimeMillis()));
+        }
+    }
+
+
+    private void rename(final PlayerProfile before, final PlayerProfile after)
+    {
+        if (!before.name().equals(after.name()))
+        {
+            forgetName(before);
+            ids.put(after.name(), after.playerId());
+        }
+    }
+
+
+    private void forgetName(final PlayerProfile profile)
+    {
+        ids.remove(profile.name(), profile.playerId());
+    }
+}
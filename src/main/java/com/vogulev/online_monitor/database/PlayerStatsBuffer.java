@@ -0,0 +1,137 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+
+
+/**
+ * Write-behind buffer for extended player statistics and last activity times.
+ * Event handlers only increment in-memory counters; the buffer is periodically drained
+ * and written to the database as one batched upsert per player.
+ * Deltas are keyed by player UUID and carry the latest name, which is stored when the player id is resolved.
+ */
+public class PlayerStatsBuffer
+{
+
+    private final Map<UUID, PlayerStatsDelta> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Deltas taken by a flush that is still running, kept visible for readers until committed
+     */
+    private final Map<UUID, PlayerStatsDelta> inFlight = new ConcurrentHashMap<>();
+
+
+    public void increment(final UUID playerId, final String playerName, final Counter counter)
+    {
+        add(playerId, playerName, counter, 1);
+    }
+
+
+    public void add(final UUID playerId, final String playerName, final Counter counter, final int amount)
+    {
+        // compute() makes the increment atomic with respect to drain(), so no update lands in a drained delta
+        pending.compute(playerId, (id, delta) -> {
+            final PlayerStatsDelta target = delta != null ? delta : new PlayerStatsDelta(playerName);
+            target.setPlayerName(playerName);
+            target.add(counter, amount);
+            return target;
+        });
+    }
+
+
+    /**
+     * Record player activity; only the latest time per player is written
+     */
+    public void touch(final UUID playerId, final String playerName, final long timestamp)
+    {
+        pending.compute(playerId, (id, delta) -> {
+            final PlayerStatsDelta target = delta != null ? delta : new PlayerStatsDelta(playerName);
+            target.setPlayerName(playerName);
+            target.touch(timestamp);
+            return target;
+        });
+    }
+
+
+    /**
+     * Get the not yet persisted part of a player's counter
+     * @param playerId Player UUID
+     * @param counter Counter to read
+     * @return Pending delta, including deltas of a flush in progress
+     */
+    public int getPending(final UUID playerId, final Counter counter)
+    {
+        int value = 0;
+        final PlayerStatsDelta queued = pending.get(playerId);
+        if (queued != null)
+        {
+            value += queued.get(counter);
+        }
+        final PlayerStatsDelta flushing = inFlight.get(playerId);
+        if (flushing != null)
+        {
+            value += flushing.get(counter);
+        }
+        return value;
+    }
+
+
+    /**
+     * Take all pending deltas for writing. They stay visible to readers until
+     * {@link #complete(Map)} or {@link #restore(Map)} is called.
+     * @return Drained deltas by player UUID
+     */
+    public Map<UUID, PlayerStatsDelta> drain()
+    {
+        final Map<UUID, PlayerStatsDelta> drained = new HashMap<>();
+        for (final UUID playerId : pending.keySet())
+        {
+            pending.computeIfPresent(playerId, (id, delta) -> {
+                if (!delta.isEmpty())
+                {
+                    inFlight.put(id, delta);
+                    drained.put(id, delta);
+                }
+                return null;
+            });
+        }
+        return drained;
+    }
+
+
+    /**
+     * Mark drained deltas as persisted
+     */
+    public void complete(final Map<UUID, PlayerStatsDelta> drained)
+    {
+        inFlight.keySet().removeAll(drained.keySet());
+    }
+
+
+    /**
+     * Return drained deltas to the buffer after a failed write, so they are retried on the next flush
+     */
+    public void restore(final Map<UUID, PlayerStatsDelta> drained)
+    {
+        for (final Map.Entry<UUID, PlayerStatsDelta> entry : drained.entrySet())
+        {
+            pending.compute(entry.getKey(), (id, delta) -> {
+                final PlayerStatsDelta target = delta != null ? delta : new PlayerStatsDelta(entry.getValue().getPlayerName());
+                target.merge(entry.getValue());
+                return target;
+            });
+        }
+        complete(drained);
+    }
+
+
+    public int size()
+    {
+        return pending.size();
+    }
+}
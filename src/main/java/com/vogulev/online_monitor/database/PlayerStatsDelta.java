@@ -0,0 +1,129 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Accumulated, not yet persisted changes of a player's extended statistics counters and last activity time
+ */
+public class PlayerStatsDelta
+{
+
+    /**
+     * Extended statistics counters buffered in memory, mapped to their player_stats column
+     */
+    public enum Counter
+    {
+        DEATHS("deaths"),
+        MOB_KILLS("mob_kills"),
+        PLAYER_KILLS("player_kills"),
+        BLOCKS_BROKEN("blocks_broken"),
+        BLOCKS_PLACED("blocks_placed"),
+        MESSAGES_SENT("messages_sent");
+
+        private final String column;
+
+
+        Counter(final String column)
+        {
+            this.column = column;
+        }
+
+
+        public String getColumn()
+        {
+            return column;
+        }
+    }
+
+    private static final Counter[] COUNTERS = Counter.values();
+
+    /**
+     * Latest known name of the player, stored with the counters
+     */
+    private volatile String playerName;
+
+    private final AtomicIntegerArray values = new AtomicIntegerArray(COUNTERS.length);
+
+    /**
+     * Latest activity time, epoch milliseconds, or 0 if there was none
+     */
+    private final AtomicLong lastActivity = new AtomicLong();
+
+
+    public PlayerStatsDelta(final String playerName)
+    {
+        this.playerName = playerName;
+    }
+
+
+    public String getPlayerName()
+    {
+        return playerName;
+    }
+
+
+    public void setPlayerName(final String playerName)
+    {
+        this.playerName = playerName;
+    }
+
+
+    public void add(final Counter counter, final int amount)
+    {
+        values.addAndGet(counter.ordinal(), amount);
+    }
+
+
+    public int get(final Counter counter)
+    {
+        return values.get(counter.ordinal());
+    }
+
+
+    /**
+     * Moves the last activity time forward; older times are ignored
+     */
+    public void touch(final long timestamp)
+    {
+        lastActivity.accumulateAndGet(timestamp, Math::max);
+    }
+
+
+    public long getLastActivity()
+    {
+        return lastActivity.get();
+    }
+
+
+    /**
+     * Adds all counters of another delta to this one
+     */
+    public void merge(final PlayerStatsDelta other)
+    {
+        for (final Counter counter : COUNTERS)
+        {
+            add(counter, other.get(counter));
+        }
+        touch(other.getLastActivity());
+    }
+
+
+    public boolean isEmpty()
+    {
+        if (getLastActivity() != 0)
+        {
+            return false;
+        }
+        for (final Counter counter : COUNTERS)
+        {
+            if (get(counter) != 0)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
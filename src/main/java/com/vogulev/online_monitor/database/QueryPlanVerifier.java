@@ -0,0 +1,190 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import com.vogulev.online_monitor.database.repositories.AnalyticsRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerDailyStatsRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerStatsRepository;
+import com.vogulev.online_monitor.database.repositories.SessionRepository;
+
+
+/**
+ * Checks the query plans of the frequent repository statements after migrations.
+ * Runs EXPLAIN QUERY PLAN on SQLite and EXPLAIN on MySQL, and reports every statement
+ * that would read a whole table instead of using an index.
+ * Server-wide totals are maintained counters and only aggregated during reconciliation, and leaderboards are
+ * kept in memory and loaded once at startup, so they are not listed.
+ */
+public class QueryPlanVerifier
+{
+
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    private final Connection conn;
+
+    private final Map<String, String> statements = new LinkedHashMap<>();
+
+
+    /**
+     * @param conn Connection to the migrated database, the dialect is taken from its metadata
+     */
+    public QueryPlanVerifier(final Connection conn)
+    {
+        this.conn = conn;
+
+        statements.put("player by uuid", PlayerRepository.PLAYER_BY_UUID_SQL);
+        statements.put("player by name", PlayerRepository.PLAYER_BY_NAME_SQL);
+        statements.put("player profile", PlayerStatsRepository.PROFILE_BY_NAME_SQL);
+        statements.put("update playtime", PlayerStatsRepository.UPDATE_PLAYTIME_SQL);
+        statements.put("period leaderboard", String.format(PlayerDailyStatsRepository.TOP_PLAYERS_SQL,
+            LeaderboardMetric.JOINS.getDailyColumn()));
+        statements.put("delete old daily stats", PlayerDailyStatsRepository.DELETE_BEFORE_SQL);
+        statements.put("close session", SessionRepository.CLOSE_SESSION_SQL);
+        statements.put("hourly rollups", AnalyticsRepository.HOURLY_ROLLUPS_SQL);
+        statements.put("daily averages", AnalyticsRepository.DAILY_AVERAGES_SQL);
+        statements.put("weekday averages", AnalyticsRepository.WEEKDAY_AVERAGES_SQL);
+        statements.put("raw history", AnalyticsRepository.RAW_HISTORY_SQL);
+        statements.put("hourly history", AnalyticsRepository.HOURLY_HISTORY_SQL);
+        statements.put("expired snapshot ids", AnalyticsRepository.EXPIRED_SNAPSHOT_IDS_SQL);
+        statements.put("delete snapshot range", AnalyticsRepository.DELETE_SNAPSHOT_RANGE_SQL);
+        statements.put("oldest hourly rollup", AnalyticsRepository.OLDEST_HOURLY_SQL);
+        statements.put("delete hourly range", AnalyticsRepository.DELETE_HOURLY_RANGE_SQL);
+    }
+
+
+    /**
+     * Explain every frequent statement and log the ones that fall back to a full table scan.
+     * On SQLite every statement must be explainable, one that is not counts as failed
+     * @param failOnFullScan Throw if any statement does a full table scan or cannot be explained on SQLite
+     * @return Names of the statements that do a full table scan or cannot be explained on SQLite
+     */
+    public List<String> verify(final boolean failOnFullScan)
+    {
+        final List<String> failed = new ArrayList<>();
+        final boolean mysql;
+
+        try
+        {
+            mysql = "MySQL".equalsIgnoreCase(conn.getMetaData().getDatabaseProductName());
+        }
+        catch (final SQLException e)
+        {
+            logger.warning("Query plan check skipped: " + e.getMessage());
+            return failed;
+        }
+
+        for (final Map.Entry<String, String> statement : statements.entrySet())
+        {
+            try
+            {
+                final String scannedTable = mysql
+                    ? explainMysql(statement.getValue())
+                    : explainSqlite(statement.getValue());
+                if (scannedTable != null)
+                {
+                    failed.add(statement.getKey());
+                    logger.warning("Query '" + statement.getKey() + "' does a full scan of table " + scannedTable);
+                }
+            }
+            catch (final SQLException e)
+            {
+                if (mysql)
+                {
+                    // Some statements use SQLite functions (strftime) and are never executed on MySQL
+                    logger.fine("Could not explain query '" + statement.getKey() + "': " + e.getMessage());
+                }
+                else
+                {
+                    // SQLite is the dialect every statement is written for, so this one would fail when executed
+                    failed.add(statement.getKey());
+                    logger.warning("Could not explain query '" + statement.getKey() + "': " + e.getMessage());
+                }
+            }
+        }
+
+        if (failed.isEmpty())
+        {
+            logger.info("Query plan check passed: " + statements.size() + " frequent queries use indexes");
+        }
+        else if (failOnFullScan)
+        {
+            throw new IllegalStateException("Queries without a usable index: " + String.join(", ", failed) +
+                ". Check that all database migrations were applied.");
+        }
+        return failed;
+    }
+
+
+    /**
+     * @return Name of the fully scanned table, or null if every step uses an index
+     */
+    private String explainSqlite(final String sql) throws SQLException
+    {
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN QUERY PLAN " + sql))
+        {
+            bindNulls(pstmt);
+            try (ResultSet rs = pstmt.executeQuery())
+            {
+                while (rs.next())
+                {
+                    // "SCAN player_stats" (or "SCAN TABLE player_stats" before SQLite 3.36) without "USING ... INDEX"
+                    final String detail = rs.getString("detail");
+                    if (detail != null && detail.startsWith("SCAN ") && !detail.contains(" USING "))
+                    {
+                        return detail.substring("SCAN ".length()).replace("TABLE ", "").trim();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * @return Name of the fully scanned table, or null if every step uses an index
+     */
+    private String explainMysql(final String sql) throws SQLException
+    {
+        try (PreparedStatement pstmt = conn.prepareStatement("EXPLAIN " + sql))
+        {
+            bindNulls(pstmt);
+            try (ResultSet rs = pstmt.executeQuery())
+            {
+                while (rs.next())
+                {
+                    // Access type ALL means every row of the table is read
+                    final String type = rs.getString("type");
+                    if (type != null && "ALL".equals(type.toUpperCase(Locale.ROOT)))
+                    {
+                        return rs.getString("table");
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Drivers refuse to run statements with unbound parameters; the values are irrelevant for the plan
+     */
+    private void bindNulls(final PreparedStatement pstmt) throws SQLException
+    {
+        final int count = pstmt.getParameterMetaData().getParameterCount();
+        for (int i = 1; i <= count; i++)
+        {
+            pstmt.setObject(i, null);
+        }
+    }
+}
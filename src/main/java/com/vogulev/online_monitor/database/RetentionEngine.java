@@ -0,0 +1,195 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+import com.vogulev.online_monitor.database.repositories.AnalyticsRepository;
+
+
+/**
+ * Applies the retention policy outside the server thread.
+ * Expired rows are deleted in primary-key ranges of at most chunk-size rows, every chunk in its own
+ * short transaction, with a pause between chunks so queued writes get the writer connection in between.
+ * On MySQL, expired RANGE partitions of online_snapshots can be dropped instead of deleting rows.
+ */
+public class RetentionEngine
+{
+
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    /**
+     * Result of the last retention run
+     * @param runs Completed runs since start
+     * @param snapshotsDeleted Raw snapshots deleted by the last run
+     * @param hourlyDeleted Hourly rollups deleted by the last run
+     * @param partitionsDropped Snapshot partitions dropped by the last run
+     * @param chunks Delete statements executed by the last run
+     * @param durationMillis Wall time of the last run, including pauses
+     * @param deleteMillis Time spent in delete statements during the last run
+     * @param rowsPerSecond Deleted rows per second of delete time in the last run
+     * @param finishedAt End of the last run, epoch milliseconds
+     */
+    public record Metrics(long runs, long snapshotsDeleted, long hourlyDeleted, int partitionsDropped, int chunks,
+                          long durationMillis, long deleteMillis, double rowsPerSecond, long finishedAt)
+    {
+    }
+
+    private final AnalyticsRepository analyticsRepo;
+
+    private final RetentionPolicy policy;
+
+    private final boolean mysql;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile Metrics metrics = new Metrics(0, 0, 0, 0, 0, 0, 0, 0, 0);
+
+    private volatile boolean stopped = false;
+
+    private long deleteNanos;
+
+    private int chunks;
+
+
+    public RetentionEngine(final AnalyticsRepository analyticsRepo, final RetentionPolicy policy, final boolean mysql)
+    {
+        this.analyticsRepo = analyticsRepo;
+        this.policy = policy;
+        this.mysql = mysql;
+    }
+
+
+    /**
+     * Run one retention pass in the calling thread. Skipped if a pass is already running.
+     */
+    public void run()
+    {
+        if (!running.compareAndSet(false, true))
+        {
+            logger.fine("Retention is already running, skipping this run");
+            return;
+        }
+        try
+        {
+            final long startNanos = System.nanoTime();
+            deleteNanos = 0;
+            chunks = 0;
+
+            final long now = System.currentTimeMillis();
+            final long rawCutoff = now - TimeUnit.DAYS.toMillis(policy.rawDays());
+            final long hourlyCutoff = AnalyticsRepository.hourStart(now - TimeUnit.DAYS.toMillis(policy.hourlyDays()));
+
+            final int partitions = mysql && policy.dropPartitions() ? dropExpiredPartitions(rawCutoff) : 0;
+            final long snapshots = deleteExpiredSnapshots(rawCutoff);
+            final long hourly = deleteExpiredHourly(hourlyCutoff);
+
+            final long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            final long deleteMillis = TimeUnit.NANOSECONDS.toMillis(deleteNanos);
+            final double rowsPerSecond = deleteNanos > 0 ? (snapshots + hourly) * 1e9 / deleteNanos : 0;
+            metrics = new Metrics(metrics.runs() + 1, snapshots, hourly, partitions, chunks, durationMillis,
+                deleteMillis, rowsPerSecond, System.currentTimeMillis());
+
+            if (snapshots + hourly > 0 || partitions > 0)
+            {
+                logger.info(String.format("Retention: deleted %d snapshot(s) and %d hourly rollup(s), dropped %d partition(s) " +
+                        "in %d chunk(s); %d ms deleting (%.0f rows/s), %d ms total",
+                    snapshots, hourly, partitions, chunks, deleteMillis, rowsPerSecond, durationMillis));
+            }
+        }
+        catch (final SQLException e)
+        {
+            logger.severe("Error applying retention: " + e.getMessage());
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            running.set(false);
+        }
+    }
+
+
+    /**
+     * Stop a running pass after its current chunk
+     */
+    public void stop()
+    {
+        stopped = true;
+    }
+
+
+    public Metrics getMetrics()
+    {
+        return metrics;
+    }
+
+
+    private long deleteExpiredSnapshots(final long cutoff) throws SQLException, InterruptedException
+    {
+        final long[] range = analyticsRepo.getExpiredSnapshotIdRange(cutoff);
+        if (range == null)
+        {
+            return 0;
+        }
+        long deleted = 0;
+        for (long from = range[0]; from <= range[1] && !stopped; from += policy.chunkSize())
+        {
+            final long chunkStart = System.nanoTime();
+            deleted += analyticsRepo.deleteSnapshotRange(from, Math.min(from + policy.chunkSize(), range[1] + 1), cutoff);
+            finishChunk(chunkStart);
+        }
+        return deleted;
+    }
+
+
+    private long deleteExpiredHourly(final long cutoff) throws SQLException, InterruptedException
+    {
+        final Long oldest = analyticsRepo.getOldestHourlyRollup();
+        if (oldest == null)
+        {
+            return 0;
+        }
+        final long step = policy.chunkSize() * HOUR_MILLIS;
+        long deleted = 0;
+        for (long from = oldest; from < cutoff && !stopped; from += step)
+        {
+            final long chunkStart = System.nanoTime();
+            deleted += analyticsRepo.deleteHourlyRange(from, Math.min(from + step, cutoff));
+            finishChunk(chunkStart);
+        }
+        return deleted;
+    }
+
+
+    private int dropExpiredPartitions(final long cutoff) throws SQLException
+    {
+        final List<String> partitions = analyticsRepo.getExpiredSnapshotPartitions(cutoff);
+        for (final String partition : partitions)
+        {
+            final long start = System.nanoTime();
+            analyticsRepo.dropSnapshotPartition(partition);
+            deleteNanos += System.nanoTime() - start;
+            logger.info("Dropped expired snapshot partition " + partition);
+        }
+        return partitions.size();
+    }
+
+
+    private void finishChunk(final long chunkStart) throws InterruptedException
+    {
+        deleteNanos += System.nanoTime() - chunkStart;
+        chunks++;
+        if (policy.chunkPauseMillis() > 0)
+        {
+            Thread.sleep(policy.chunkPauseMillis());
+        }
+    }
+}
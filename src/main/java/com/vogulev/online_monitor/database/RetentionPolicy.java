@@ -0,0 +1,66 @@
+package com.vogulev.online_monitor.database;
+
+
+import org.bukkit.configuration.file.FileConfiguration;
+
+
+/**
+ * Tiered retention of online history: raw snapshots are kept for a short time, hourly rollups
+ * for longer and daily rollups forever. Also picks the finest resolution that still covers a
+ * requested range without returning too many points.
+ * @param rawDays Days to keep raw snapshots
+ * @param hourlyDays Days to keep hourly rollups
+ * @param snapshotIntervalMinutes Interval between raw snapshots
+ * @param chunkSize Maximum rows deleted per transaction
+ * @param chunkPauseMillis Pause between delete chunks
+ * @param dropPartitions Drop expired MySQL partitions of online_snapshots instead of deleting rows
+ */
+public record RetentionPolicy(int rawDays, int hourlyDays, int snapshotIntervalMinutes, int chunkSize,
+                              long chunkPauseMillis, boolean dropPartitions)
+{
+
+    /**
+     * Upper bound for the number of points returned for a history range
+     */
+    public static final int MAX_POINTS = 1000;
+
+    /**
+     * Storage tier of online history
+     */
+    public enum Resolution
+    {
+        RAW,
+        HOURLY,
+        DAILY
+    }
+
+
+    public static RetentionPolicy fromConfig(final FileConfiguration config)
+    {
+        final int rawDays = Math.max(1, config.getInt("snapshot-days-to-keep", 30));
+        final int hourlyDays = Math.max(rawDays, config.getInt("hourly-rollup-days-to-keep", 365));
+        final int interval = Math.max(1, config.getInt("snapshot-interval-minutes", 5));
+        final int chunkSize = Math.max(1, config.getInt("cleanup-chunk-size", 1000));
+        final long chunkPause = Math.max(0, config.getLong("cleanup-chunk-pause-ms", 50));
+        final boolean dropPartitions = config.getBoolean("cleanup-drop-mysql-partitions", false);
+        return new RetentionPolicy(rawDays, hourlyDays, interval, chunkSize, chunkPause, dropPartitions);
+    }
+
+
+    /**
+     * @param days Requested range in days
+     * @return Finest resolution whose data is still kept for the whole range and fits into {@link #MAX_POINTS}
+     */
+    public Resolution resolutionFor(final int days)
+    {
+        if (days <= rawDays && (long) days * 24 * 60 / snapshotIntervalMinutes <= MAX_POINTS)
+        {
+            return Resolution.RAW;
+        }
+        if (days <= hourlyDays && (long) days * 24 <= MAX_POINTS)
+        {
+            return Resolution.HOURLY;
+        }
+        return Resolution.DAILY;
+    }
+}
@@ -0,0 +1,59 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * Immutable point-in-time view of the server-wide statistics.
+ * Recomputed in the background and shared by the scoreboard, commands, web API and Discord bot,
+ * so none of them runs database queries on their own thread.
+ * @param maxOnline Online record
+ * @param uniquePlayers Number of unique players
+ * @param totalSessions Number of recorded sessions
+ * @param activeSessions Number of sessions that are not closed yet
+ * @param totalPlaytime Playtime of all players, in milliseconds
+ * @param totalActiveTime Playtime of all players without AFK time, in milliseconds
+ * @param topPlayers Top players by joins, best first
+ * @param topActivePlayers Top players by active time in milliseconds, best first
+ * @param refreshedAt Time the snapshot was computed, epoch milliseconds (0 if never)
+ */
+public record ServerStatsSnapshot(int maxOnline, int uniquePlayers, int totalSessions, int activeSessions,
+                                  long totalPlaytime, long totalActiveTime, Map<String, Integer> topPlayers,
+                                  Map<String, Long> topActivePlayers, long refreshedAt)
+{
+
+    /**
+     * Number of top players kept in the snapshot
+     */
+    public static final int TOP_PLAYERS = 10;
+
+    public static final ServerStatsSnapshot EMPTY = new ServerStatsSnapshot(0, 0, 0, 0, 0, 0, Map.of(), Map.of(), 0);
+
+
+    public ServerStatsSnapshot
+    {
+        topPlayers = Collections.unmodifiableMap(new LinkedHashMap<>(topPlayers));
+        topActivePlayers = Collections.unmodifiableMap(new LinkedHashMap<>(topActivePlayers));
+    }
+
+
+    /**
+     * @return Average playtime per unique player, in minutes
+     */
+    public long averagePlaytimeMinutes()
+    {
+        return uniquePlayers > 0 ? (totalPlaytime / uniquePlayers) / (1000 * 60) : 0;
+    }
+
+
+    /**
+     * @return Average active (non-AFK) playtime per unique player, in minutes
+     */
+    public long averageActiveMinutes()
+    {
+        return uniquePlayers > 0 ? (totalActiveTime / uniquePlayers) / (1000 * 60) : 0;
+    }
+}
@@ -1,81 +1,244 @@
 package com.vogulev.online_monitor.database.repositories;
 
 import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.RetentionPolicy.Resolution;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
+import java.util.stream.IntStream;
 
 /**
- * Repository for time-based online analytics
+ * Repository for time-based online analytics.
+ * Every snapshot also updates the hourly (UTC hour) and daily (local day) rollups;
+ * analytics queries read the rollups, raw snapshots are only used for short history ranges and for
+ * hour-of-day statistics of zones with sub-hour offsets.
  */
 public class AnalyticsRepository {
 
     private static final Logger logger = Logger.getLogger("OnlineMonitor");
 
+    private static final long HOUR_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    // Frequent statements, also checked by QueryPlanVerifier
+    public static final String HOURLY_ROLLUPS_SQL = """
+        SELECT hour_start, sample_count, online_sum, online_max
+        FROM online_hourly
+        WHERE hour_start >= ?
+        """;
+    public static final String DAILY_AVERAGES_SQL = """
+        SELECT day, online_sum * 1.0 / sample_count as avg_online
+        FROM online_daily
+        WHERE day >= ?
+        ORDER BY day
+        """;
+    public static final String WEEKDAY_AVERAGES_SQL = """
+        SELECT
+            CAST(strftime('%w', day) AS INTEGER) as weekday_num,
+            SUM(online_sum) * 1.0 / SUM(sample_count) as avg_online
+        FROM online_daily
+        WHERE day >= ?
+        GROUP BY weekday_num
+        ORDER BY weekday_num
+        """;
+    public static final String EXPIRED_SNAPSHOT_IDS_SQL =
+        "SELECT MIN(id) as min_id, MAX(id) as max_id FROM online_snapshots WHERE timestamp < ?";
+    public static final String DELETE_SNAPSHOT_RANGE_SQL =
+        "DELETE FROM online_snapshots WHERE id >= ? AND id < ? AND timestamp < ?";
+    public static final String OLDEST_HOURLY_SQL = "SELECT MIN(hour_start) as oldest FROM online_hourly";
+    public static final String DELETE_HOURLY_RANGE_SQL =
+        "DELETE FROM online_hourly WHERE hour_start >= ? AND hour_start < ?";
+    public static final String RAW_HISTORY_SQL = """
+        SELECT timestamp as bucket, online_count as avg_online
+        FROM online_snapshots
+        WHERE timestamp >= ?
+        ORDER BY timestamp
+        """;
+    public static final String HOURLY_HISTORY_SQL = """
+        SELECT hour_start as bucket, online_sum * 1.0 / sample_count as avg_online
+        FROM online_hourly
+        WHERE hour_start >= ?
+        ORDER BY hour_start
+        """;
+
+    private static final int PEAK_HOURS = 5;
+
+    private static final String INSERT_SNAPSHOT_SQL = "INSERT INTO online_snapshots (online_count, timestamp) VALUES (?, ?)";
+    private static final String UPSERT_HOURLY_SQL = """
+        INSERT INTO online_hourly (hour_start, sample_count, online_sum, online_min, online_max)
+        VALUES (?, 1, ?, ?, ?)
+        ON CONFLICT(hour_start) DO UPDATE SET
+            sample_count = sample_count + 1,
+            online_sum = online_sum + excluded.online_sum,
+            online_min = MIN(online_min, excluded.online_min),
+            online_max = MAX(online_max, excluded.online_max)
+        """;
+    private static final String UPSERT_DAILY_SQL = """
+        INSERT INTO online_daily (day, sample_count, online_sum, online_min, online_max)
+        VALUES (?, 1, ?, ?, ?)
+        ON CONFLICT(day) DO UPDATE SET
+            sample_count = sample_count + 1,
+            online_sum = online_sum + excluded.online_sum,
+            online_min = MIN(online_min, excluded.online_min),
+            online_max = MAX(online_max, excluded.online_max)
+        """;
+
     public static final String AVG_ONLINE = "avg_online";
 
     private final ConnectionManager connectionManager;
 
+    /**
+     * Online player count sampled at a time, milliseconds since the epoch
+     */
+    public record OnlineSample(int onlineCount, long timestamp) {
+    }
+
     public AnalyticsRepository(final ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
     }
 
-    public void recordOnlineSnapshot(final int onlineCount) {
-        final String sql = "INSERT INTO online_snapshots (online_count, timestamp) VALUES (?, " + connectionManager.getCurrentTimestamp() + ")";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, onlineCount);
-            pstmt.executeUpdate();
+    /**
+     * Records snapshots and adds them to their hourly and daily rollups in one transaction
+     * @return true if the snapshots were committed, false if the transaction was rolled back
+     */
+    public boolean recordOnlineSnapshots(final List<OnlineSample> samples) {
+        try (Connection conn = connectionManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement snapshot = conn.prepareStatement(INSERT_SNAPSHOT_SQL);
+                 PreparedStatement hourly = conn.prepareStatement(UPSERT_HOURLY_SQL);
+                 PreparedStatement daily = conn.prepareStatement(UPSERT_DAILY_SQL)) {
+                for (final OnlineSample sample : samples) {
+                    snapshot.setInt(1, sample.onlineCount());
+                    snapshot.setLong(2, sample.timestamp());
+                    snapshot.addBatch();
+
+                    hourly.setLong(1, hourStart(sample.timestamp()));
+                    bindSample(hourly, sample.onlineCount());
+                    hourly.addBatch();
+
+                    daily.setString(1, localDay(sample.timestamp()));
+                    bindSample(daily, sample.onlineCount());
+                    daily.addBatch();
+                }
+                snapshot.executeBatch();
+                hourly.executeBatch();
+                daily.executeBatch();
+
+                conn.commit();
+                return true;
+            } catch (final SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
         } catch (final SQLException e) {
-            logger.severe("Error recording online snapshot: " + e.getMessage());
+            logger.severe("Error recording online snapshots: " + e.getMessage());
         }
+        return false;
     }
 
-    public Map<Integer, Double> getHourlyAverages(final int days) {
-        final Map<Integer, Double> hourlyAvg = new LinkedHashMap<>();
-        final String sql = """
-            SELECT strftime('%H', timestamp) as hour, AVG(online_count) as avg_online
-            FROM online_snapshots
-            WHERE timestamp >= datetime('now', '-' || ? || ' days')
-            GROUP BY hour
-            ORDER BY hour
-        """;
-
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, days);
-            final ResultSet rs = pstmt.executeQuery();
+    private static void bindSample(final PreparedStatement pstmt, final int onlineCount) throws SQLException {
+        pstmt.setInt(2, onlineCount);
+        pstmt.setInt(3, onlineCount);
+        pstmt.setInt(4, onlineCount);
+    }
 
-            while (rs.next()) {
-                final int hour = Integer.parseInt(rs.getString("hour"));
-                final double avg = rs.getDouble(AVG_ONLINE);
-                hourlyAvg.put(hour, avg);
+    /**
+     * Fills the daily rollups from raw snapshots if they are empty (first start after the rollup migration).
+     * Done here rather than in the migration because local days depend on the configured timezone;
+     * snapshots are grouped in Java, so each one lands on its local day with the UTC offset in effect then.
+     */
+    public void backfillDailyRollups() {
+        final String emptySql = "SELECT 1 FROM online_daily LIMIT 1";
+        final String snapshotsSql = "SELECT timestamp, online_count FROM online_snapshots";
+        final String insertSql = """
+            INSERT INTO online_daily (day, sample_count, online_sum, online_min, online_max)
+            VALUES (?, ?, ?, ?, ?)
+            """;
+        try (Connection conn = connectionManager.getConnection()) {
+            // Per local day: sample count, sum, min, max
+            final Map<String, long[]> days = new TreeMap<>();
+            try (PreparedStatement empty = conn.prepareStatement(emptySql);
+                 ResultSet rs = empty.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+            try (PreparedStatement snapshots = conn.prepareStatement(snapshotsSql);
+                 ResultSet rs = snapshots.executeQuery()) {
+                while (rs.next()) {
+                    final int online = rs.getInt("online_count");
+                    final long[] day = days.computeIfAbsent(localDay(rs.getLong("timestamp")),
+                            key -> new long[] {0, 0, Long.MAX_VALUE, Long.MIN_VALUE});
+                    day[0]++;
+                    day[1] += online;
+                    day[2] = Math.min(day[2], online);
+                    day[3] = Math.max(day[3], online);
+                }
+            }
+            if (days.isEmpty()) {
+                return;
             }
+            try (PreparedStatement insert = conn.prepareStatement(insertSql)) {
+                for (final Map.Entry<String, long[]> entry : days.entrySet()) {
+                    insert.setString(1, entry.getKey());
+                    for (int i = 0; i < 4; i++) {
+                        insert.setLong(i + 2, entry.getValue()[i]);
+                    }
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+            logger.info("Daily online rollups backfilled: " + days.size() + " day(s)");
+        } catch (final SQLException e) {
+            logger.severe("Error backfilling daily online rollups: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Average online by local hour of day, grouped as described in {@link #groupByLocalHour}
+     */
+    public Map<Integer, Double> getHourlyAverages(final int days) {
+        final Map<Integer, Double> hourlyAvg = new LinkedHashMap<>();
+        final long[] samples = new long[24];
+        final long[] sums = new long[24];
+        try {
+            groupByLocalHour(cutoffDays(days), samples, sums, new int[24]);
         } catch (final SQLException e) {
             logger.severe("Error getting hourly averages: " + e.getMessage());
         }
 
+        for (int hour = 0; hour < 24; hour++) {
+            if (samples[hour] > 0) {
+                hourlyAvg.put(hour, (double) sums[hour] / samples[hour]);
+            }
+        }
         return hourlyAvg;
     }
 
     public Map<String, Double> getDailyAverages(final int days) {
         final Map<String, Double> dailyAvg = new LinkedHashMap<>();
-        final String sql = """
-            SELECT date(timestamp) as day, AVG(online_count) as avg_online
-            FROM online_snapshots
-            WHERE timestamp >= datetime('now', '-' || ? || ' days')
-            GROUP BY day
-            ORDER BY day
-        """;
-
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, days);
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DAILY_AVERAGES_SQL)) {
+            pstmt.setString(1, localDay(cutoffDays(days)));
             final ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -92,19 +255,9 @@ public class AnalyticsRepository {
 
     public Map<Integer, Double> getWeekdayAverages(final int weeks) {
         final Map<Integer, Double> weekdayAvg = new LinkedHashMap<>();
-        final String sql = """
-            SELECT
-                CAST(strftime('%w', timestamp) AS INTEGER) as weekday_num,
-                AVG(online_count) as avg_online
-            FROM online_snapshots
-            WHERE timestamp >= datetime('now', '-' || ? || ' weeks')
-            GROUP BY weekday_num
-            ORDER BY weekday_num
-        """;
-
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, weeks);
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(WEEKDAY_AVERAGES_SQL)) {
+            pstmt.setString(1, localDay(cutoffDays(weeks * 7L)));
             final ResultSet rs = pstmt.executeQuery();
 
             while (rs.next()) {
@@ -119,47 +272,259 @@ public class AnalyticsRepository {
         return weekdayAvg;
     }
 
+    /**
+     * Local hours of day with the highest peak online, highest first; grouped like {@link #getHourlyAverages}
+     */
     public Map<String, Integer> getPeakHours(final int days) {
         final Map<String, Integer> peakHours = new LinkedHashMap<>();
-        final String sql = """
-            SELECT
-                strftime('%H', timestamp) as hour,
-                MAX(online_count) as peak_online
-            FROM online_snapshots
-            WHERE timestamp >= datetime('now', '-' || ? || ' days')
-            GROUP BY hour
-            ORDER BY peak_online DESC
-            LIMIT 5
-        """;
+        final int[] peaks = new int[24];
+        Arrays.fill(peaks, -1);
+        try {
+            groupByLocalHour(cutoffDays(days), new long[24], new long[24], peaks);
+        } catch (final SQLException e) {
+            logger.severe("Error getting peak hours: " + e.getMessage());
+        }
+
+        IntStream.range(0, 24)
+                .filter(hour -> peaks[hour] >= 0)
+                .boxed()
+                .sorted(Comparator.comparingInt((Integer hour) -> peaks[hour]).reversed())
+                .limit(PEAK_HOURS)
+                .forEach(hour -> peakHours.put(String.format("%02d:00", hour), peaks[hour]));
+        return peakHours;
+    }
+
+    /**
+     * Online history for the last days at the given resolution
+     * @return Average online by bucket start (epoch milliseconds), in time order
+     */
+    public Map<Long, Double> getOnlineHistory(final int days, final Resolution resolution) {
+        final Map<Long, Double> history = new LinkedHashMap<>();
+        final long cutoff = cutoffDays(days);
+        try (Connection conn = connectionManager.getReadConnection()) {
+            if (resolution == Resolution.DAILY) {
+                try (PreparedStatement pstmt = conn.prepareStatement(DAILY_AVERAGES_SQL)) {
+                    pstmt.setString(1, localDay(cutoff));
+                    final ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        final long dayStart = LocalDate.parse(rs.getString("day"))
+                                .atStartOfDay(connectionManager.getZone()).toInstant().toEpochMilli();
+                        history.put(dayStart, rs.getDouble(AVG_ONLINE));
+                    }
+                }
+            } else {
+                final boolean raw = resolution == Resolution.RAW;
+                try (PreparedStatement pstmt = conn.prepareStatement(raw ? RAW_HISTORY_SQL : HOURLY_HISTORY_SQL)) {
+                    pstmt.setLong(1, raw ? cutoff : hourStart(cutoff));
+                    final ResultSet rs = pstmt.executeQuery();
+                    while (rs.next()) {
+                        history.put(rs.getLong("bucket"), rs.getDouble(AVG_ONLINE));
+                    }
+                }
+            }
+        } catch (final SQLException | DateTimeParseException e) {
+            logger.severe("Error getting online history: " + e.getMessage());
+        }
+        return history;
+    }
 
+    /**
+     * Id range of raw snapshots older than the cutoff. Ids grow with time, so the range is a
+     * cheap primary-key range to delete in chunks.
+     * @return {min id, max id}, or null if no snapshot is older than the cutoff
+     */
+    public long[] getExpiredSnapshotIdRange(final long cutoff) throws SQLException {
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(EXPIRED_SNAPSHOT_IDS_SQL)) {
+            pstmt.setLong(1, cutoff);
+            final ResultSet rs = pstmt.executeQuery();
+            if (rs.next()) {
+                final long minId = rs.getLong("min_id");
+                if (!rs.wasNull()) {
+                    return new long[] {minId, rs.getLong("max_id")};
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes snapshots with ids in [fromId, toId) that are older than the cutoff.
+     * Their data stays in the hourly and daily rollups.
+     */
+    public int deleteSnapshotRange(final long fromId, final long toId, final long cutoff) throws SQLException {
         try (Connection conn = connectionManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_SNAPSHOT_RANGE_SQL)) {
+            pstmt.setLong(1, fromId);
+            pstmt.setLong(2, toId);
+            pstmt.setLong(3, cutoff);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * @return Start of the oldest hourly rollup, or null if there are none
+     */
+    public Long getOldestHourlyRollup() throws SQLException {
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(OLDEST_HOURLY_SQL);
+             ResultSet rs = pstmt.executeQuery()) {
+            if (rs.next()) {
+                final long oldest = rs.getLong("oldest");
+                return rs.wasNull() ? null : oldest;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Deletes hourly rollups starting in [from, to). Their data stays in the daily rollups.
+     */
+    public int deleteHourlyRange(final long from, final long to) throws SQLException {
+        try (Connection conn = connectionManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_HOURLY_RANGE_SQL)) {
+            pstmt.setLong(1, from);
+            pstmt.setLong(2, to);
+            return pstmt.executeUpdate();
+        }
+    }
+
+    /**
+     * MySQL only: RANGE partitions of online_snapshots that hold nothing newer than the cutoff.
+     * The table must be partitioned by RANGE on timestamp by the server administrator.
+     */
+    public List<String> getExpiredSnapshotPartitions(final long cutoff) throws SQLException {
+        final String sql = """
+            SELECT PARTITION_NAME FROM information_schema.PARTITIONS
+            WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'online_snapshots'
+                AND PARTITION_METHOD LIKE 'RANGE%' AND PARTITION_DESCRIPTION <> 'MAXVALUE'
+                AND CAST(PARTITION_DESCRIPTION AS SIGNED) <= ?
+            ORDER BY PARTITION_ORDINAL_POSITION
+            """;
+        final List<String> partitions = new ArrayList<>();
+        try (Connection conn = connectionManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, days);
+            pstmt.setLong(1, cutoff);
             final ResultSet rs = pstmt.executeQuery();
-
             while (rs.next()) {
-                final String hour = rs.getString("hour") + ":00";
-                final int peak = rs.getInt("peak_online");
-                peakHours.put(hour, peak);
+                partitions.add(rs.getString("PARTITION_NAME"));
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting peak hours: " + e.getMessage());
         }
-
-        return peakHours;
+        return partitions;
     }
 
-    public void cleanOldSnapshots(final int daysToKeep) {
-        final String sql = "DELETE FROM online_snapshots WHERE timestamp < datetime('now', '-' || ? || ' days')";
+    /**
+     * MySQL only: drops a partition of online_snapshots, a metadata operation regardless of its size
+     */
+    public void dropSnapshotPartition(final String partition) throws SQLException {
         try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, daysToKeep);
-            final int deleted = pstmt.executeUpdate();
-            if (deleted > 0) {
-                logger.info("Cleaned " + deleted + " old snapshots from database");
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("ALTER TABLE online_snapshots DROP PARTITION `" + partition.replace("`", "``") + "`");
+        }
+    }
+
+    /**
+     * Range start for "last N days" queries, as epoch milliseconds
+     */
+    private static long cutoffDays(final long days) {
+        return System.currentTimeMillis() - TimeUnit.DAYS.toMillis(days);
+    }
+
+    /**
+     * Adds samples, online sums and peaks since the cutoff to the arrays, indexed by local hour of day.
+     * Hourly rollups are UTC hours; each is assigned to the local hour it starts in, with the offset in effect
+     * then, which is exact for whole-hour offsets. When the zone has a sub-hour offset (e.g. +05:30) in the
+     * range, a UTC hour spans two local hours, so every hour whose raw snapshots are all still stored (as many
+     * as the rollup counted) is read from the snapshots instead. Older hours, whose snapshots have been
+     * deleted, come from the rollups and are only approximate for such zones.
+     */
+    private void groupByLocalHour(final long cutoff, final long[] samples, final long[] sums, final int[] peaks)
+            throws SQLException {
+        // UTC hour start -> sample count, online sum, online max
+        final Map<Long, long[]> rollups = new LinkedHashMap<>();
+        final List<OnlineSample> snapshots = new ArrayList<>();
+        final Map<Long, Integer> snapshotCounts = new HashMap<>();
+        try (Connection conn = connectionManager.getReadConnection()) {
+            try (PreparedStatement pstmt = conn.prepareStatement(HOURLY_ROLLUPS_SQL)) {
+                pstmt.setLong(1, hourStart(cutoff));
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        rollups.put(rs.getLong("hour_start"), new long[] {
+                                rs.getLong("sample_count"), rs.getLong("online_sum"), rs.getInt("online_max")});
+                    }
+                }
+            }
+            if (hasSubHourOffset(cutoff, System.currentTimeMillis())) {
+                try (PreparedStatement pstmt = conn.prepareStatement(RAW_HISTORY_SQL)) {
+                    pstmt.setLong(1, hourStart(cutoff));
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            final long timestamp = rs.getLong("bucket");
+                            snapshots.add(new OnlineSample(rs.getInt(AVG_ONLINE), timestamp));
+                            snapshotCounts.merge(hourStart(timestamp), 1, Integer::sum);
+                        }
+                    }
+                }
+            }
+        }
+
+        for (final OnlineSample snapshot : snapshots) {
+            final long[] rollup = rollups.get(hourStart(snapshot.timestamp()));
+            if (rollup != null && rollup[0] == snapshotCounts.get(hourStart(snapshot.timestamp()))) {
+                final int hour = localHour(snapshot.timestamp());
+                samples[hour]++;
+                sums[hour] += snapshot.onlineCount();
+                peaks[hour] = Math.max(peaks[hour], snapshot.onlineCount());
             }
-        } catch (final SQLException e) {
-            logger.severe("Error cleaning old snapshots: " + e.getMessage());
         }
+        for (final Map.Entry<Long, long[]> rollup : rollups.entrySet()) {
+            final Integer stored = snapshotCounts.get(rollup.getKey());
+            if (stored == null || stored != rollup.getValue()[0]) {
+                final int hour = localHour(rollup.getKey());
+                samples[hour] += rollup.getValue()[0];
+                sums[hour] += rollup.getValue()[1];
+                peaks[hour] = Math.max(peaks[hour], (int) rollup.getValue()[2]);
+            }
+        }
+    }
+
+    /**
+     * @return true if the configured zone uses an offset that is not a whole number of hours at any time in the range
+     */
+    private boolean hasSubHourOffset(final long from, final long to) {
+        final ZoneRules rules = connectionManager.getZone().getRules();
+        Instant instant = Instant.ofEpochMilli(from);
+        if (rules.getOffset(instant).getTotalSeconds() % 3600 != 0) {
+            return true;
+        }
+        ZoneOffsetTransition transition;
+        while ((transition = rules.nextTransition(instant)) != null && transition.getInstant().toEpochMilli() <= to) {
+            if (transition.getOffsetAfter().getTotalSeconds() % 3600 != 0) {
+                return true;
+            }
+            instant = transition.getInstant();
+        }
+        return false;
+    }
+
+    /**
+     * Start of the UTC hour containing the given time, as epoch milliseconds
+     */
+    public static long hourStart(final long timestamp) {
+        return Math.floorDiv(timestamp, HOUR_MILLIS) * HOUR_MILLIS;
+    }
+
+    /**
+     * Hour of day (0-23) of the given time in the configured timezone
+     */
+    private int localHour(final long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(connectionManager.getZone()).getHour();
+    }
+
+    /**
+     * Local date ('YYYY-MM-DD') of the given time in the configured timezone
+     */
+    private String localDay(final long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(connectionManager.getZone()).toLocalDate().toString();
     }
 }
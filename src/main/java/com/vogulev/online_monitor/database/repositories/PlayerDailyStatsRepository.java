@@ -0,0 +1,278 @@
+package com.vogulev.online_monitor.database.repositories;
+
+import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.PlayerLifecycleEvent;
+import com.vogulev.online_monitor.database.PlayerStatsDelta;
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository.PlayerRef;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Repository for per-player, per-day statistics buckets (local days in the configured timezone).
+ * Buckets are written in the transactions that update player_stats and read by the period leaderboards.
+ */
+public class PlayerDailyStatsRepository {
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+    private static final Counter[] COUNTERS = Counter.values();
+
+    // Frequent statements, also checked by QueryPlanVerifier
+    public static final String TOP_PLAYERS_SQL = """
+            SELECT d.player_id, p.name, SUM(d.%s) AS score
+            FROM player_daily_stats d
+            JOIN players p ON p.id = d.player_id
+            WHERE d.day >= ?
+            GROUP BY d.player_id, p.name
+            HAVING score > 0
+            ORDER BY score DESC, d.player_id
+            LIMIT ?
+            """;
+    public static final String DELETE_BEFORE_SQL = "DELETE FROM player_daily_stats WHERE day < ?";
+
+    private static final String ADD_JOIN_SQL = """
+            INSERT INTO player_daily_stats (day, player_id, joins) VALUES (?, ?, 1)
+            ON CONFLICT(day, player_id) DO UPDATE SET joins = joins + 1
+            """;
+    private static final String ADD_PLAYTIME_SQL = """
+            INSERT INTO player_daily_stats (day, player_id, playtime, active_time) VALUES (?, ?, ?, ?)
+            ON CONFLICT(day, player_id) DO UPDATE SET
+                playtime = playtime + excluded.playtime,
+                active_time = active_time + excluded.active_time
+            """;
+
+    private static final String BACKFILL_SQL = """
+            INSERT INTO player_daily_stats (day, player_id, joins, playtime, active_time) VALUES (?, ?, ?, ?, ?)
+            """;
+
+    private final ConnectionManager connectionManager;
+
+    public PlayerDailyStatsRepository(final ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Adds one join to the bucket of the join day of every join, within the caller's transaction
+     * @param players Players of the joins, resolved in the same transaction
+     */
+    public void addJoins(final Connection conn, final List<PlayerLifecycleEvent.Join> joins,
+                         final Map<UUID, PlayerRef> players) throws SQLException {
+        if (joins.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_JOIN_SQL)) {
+            for (final PlayerLifecycleEvent.Join join : joins) {
+                pstmt.setString(1, localDay(join.timestamp()));
+                pstmt.setInt(2, players.get(join.playerId()).id());
+                pstmt.addBatch();
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Adds session playtimes within the caller's transaction. A session spanning midnight is split
+     * into the days it covers, see {@link PlayerLifecycleEvent.Quit#playtimeByDay}.
+     * @param players Players of the quits, resolved in the same transaction
+     */
+    public void addPlaytimes(final Connection conn, final List<PlayerLifecycleEvent.Quit> quits,
+                             final Map<UUID, PlayerRef> players) throws SQLException {
+        if (quits.isEmpty()) {
+            return;
+        }
+        final ZoneId zone = connectionManager.getZone();
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_PLAYTIME_SQL)) {
+            for (final PlayerLifecycleEvent.Quit quit : quits) {
+                final int playerId = players.get(quit.playerId()).id();
+                for (final PlayerLifecycleEvent.DayPlaytime day : quit.playtimeByDay(zone)) {
+                    pstmt.setString(1, day.day().toString());
+                    pstmt.setInt(2, playerId);
+                    pstmt.setLong(3, day.playtime());
+                    pstmt.setLong(4, day.activeTime());
+                    pstmt.addBatch();
+                }
+            }
+            pstmt.executeBatch();
+        }
+    }
+
+    /**
+     * Adds buffered counter deltas to the buckets of the day of the flush, within the caller's transaction.
+     * Counters are attributed to the day they are written, so events just before midnight may land on the next day.
+     * @param players Players of the deltas, resolved in the same transaction
+     * @param timestamp Flush time, epoch milliseconds
+     */
+    public void addCounters(final Connection conn, final Map<UUID, PlayerStatsDelta> deltas,
+                            final Map<UUID, PlayerRef> players, final long timestamp) throws SQLException {
+        final StringBuilder columns = new StringBuilder();
+        final StringBuilder placeholders = new StringBuilder();
+        final StringBuilder updates = new StringBuilder();
+        for (final Counter counter : COUNTERS) {
+            final String column = counter.getColumn();
+            columns.append(", ").append(column);
+            placeholders.append(", ?");
+            if (updates.length() > 0) {
+                updates.append(", ");
+            }
+            updates.append(column).append(" = ").append(column).append(" + excluded.").append(column);
+        }
+        final String sql = "INSERT INTO player_daily_stats (day, player_id" + columns + ") VALUES (?, ?" +
+                placeholders + ") ON CONFLICT(day, player_id) DO UPDATE SET " + updates;
+
+        final String day = localDay(timestamp);
+        boolean batched = false;
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (final Map.Entry<UUID, PlayerStatsDelta> entry : deltas.entrySet()) {
+                if (!hasCounters(entry.getValue())) {
+                    continue;
+                }
+                pstmt.setString(1, day);
+                pstmt.setInt(2, players.get(entry.getKey()).id());
+                int index = 3;
+                for (final Counter counter : COUNTERS) {
+                    pstmt.setInt(index++, entry.getValue().get(counter));
+                }
+                pstmt.addBatch();
+                batched = true;
+            }
+            if (batched) {
+                pstmt.executeBatch();
+            }
+        }
+    }
+
+    /**
+     * Sums a metric over the days from the given one to today.
+     * Reads the buckets of those days only: at most (number of days) x (players active in them) rows.
+     * @param firstDay First local day of the period
+     * @param limit Maximum number of players
+     * @return Best players of the period, best first; players without a score are not listed
+     */
+    public List<Ranking> getTopPlayers(final LeaderboardMetric metric, final LocalDate firstDay, final int limit) {
+        final List<Ranking> rankings = new ArrayList<>();
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(String.format(TOP_PLAYERS_SQL, metric.getDailyColumn()))) {
+            pstmt.setString(1, firstDay.toString());
+            pstmt.setInt(2, limit);
+            final ResultSet rs = pstmt.executeQuery();
+            while (rs.next()) {
+                rankings.add(new Ranking(rankings.size() + 1, rs.getString("name"), rs.getLong("score")));
+            }
+        } catch (final SQLException e) {
+            logger.severe("Error getting period leaderboard: " + e.getMessage());
+        }
+        return rankings;
+    }
+
+    /**
+     * Deletes the buckets of days before the given one
+     * @return Number of deleted buckets
+     */
+    public int deleteBefore(final LocalDate day) {
+        try (Connection conn = connectionManager.getConnection();
+             PreparedStatement pstmt = conn.prepareStatement(DELETE_BEFORE_SQL)) {
+            pstmt.setString(1, day.toString());
+            return pstmt.executeUpdate();
+        } catch (final SQLException e) {
+            logger.severe("Error deleting old player daily statistics: " + e.getMessage());
+        }
+        return 0;
+    }
+
+    /**
+     * Fills the buckets with joins and playtime of the sessions of the last days if the table is empty
+     * (first start after the migration). Each session is attributed to the day it started.
+     * Done here rather than in the migration because local days depend on the configured timezone;
+     * sessions are grouped in Java, so each one lands on its local day with the UTC offset in effect then.
+     */
+    public void backfill(final int days) {
+        final String emptySql = "SELECT 1 FROM player_daily_stats LIMIT 1";
+        final String sessionsSql = """
+                SELECT player_id, join_time, session_duration, active_time
+                FROM player_sessions
+                WHERE join_time >= ?
+                """;
+        try (Connection conn = connectionManager.getConnection()) {
+            try (PreparedStatement empty = conn.prepareStatement(emptySql);
+                 ResultSet rs = empty.executeQuery()) {
+                if (rs.next()) {
+                    return;
+                }
+            }
+            // Joins, playtime and active time per local day and player
+            final Map<String, Map<Integer, long[]>> buckets = new HashMap<>();
+            try (PreparedStatement sessions = conn.prepareStatement(sessionsSql)) {
+                sessions.setLong(1, today().minusDays(days).atStartOfDay(connectionManager.getZone())
+                        .toInstant().toEpochMilli());
+                try (ResultSet rs = sessions.executeQuery()) {
+                    while (rs.next()) {
+                        final long[] bucket = buckets
+                                .computeIfAbsent(localDay(rs.getLong("join_time")), day -> new HashMap<>())
+                                .computeIfAbsent(rs.getInt("player_id"), id -> new long[3]);
+                        bucket[0]++;
+                        bucket[1] += rs.getLong("session_duration");
+                        bucket[2] += rs.getLong("active_time");
+                    }
+                }
+            }
+            int count = 0;
+            try (PreparedStatement insert = conn.prepareStatement(BACKFILL_SQL)) {
+                for (final Map.Entry<String, Map<Integer, long[]>> day : buckets.entrySet()) {
+                    for (final Map.Entry<Integer, long[]> bucket : day.getValue().entrySet()) {
+                        insert.setString(1, day.getKey());
+                        insert.setInt(2, bucket.getKey());
+                        insert.setLong(3, bucket.getValue()[0]);
+                        insert.setLong(4, bucket.getValue()[1]);
+                        insert.setLong(5, bucket.getValue()[2]);
+                        insert.addBatch();
+                        count++;
+                    }
+                }
+                if (count > 0) {
+                    insert.executeBatch();
+                }
+            }
+            if (count > 0) {
+                logger.info("Player daily statistics backfilled: " + count + " bucket(s)");
+            }
+        } catch (final SQLException e) {
+            logger.severe("Error backfilling player daily statistics: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return Current local day in the configured timezone
+     */
+    public LocalDate today() {
+        return LocalDate.now(connectionManager.getZone());
+    }
+
+    private static boolean hasCounters(final PlayerStatsDelta delta) {
+        for (final Counter counter : COUNTERS) {
+            if (delta.get(counter) != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Local date ('YYYY-MM-DD') of the given time in the configured timezone
+     */
+    private String localDay(final long timestamp) {
+        return Instant.ofEpochMilli(timestamp).atZone(connectionManager.getZone()).toLocalDate().toString();
+    }
+}
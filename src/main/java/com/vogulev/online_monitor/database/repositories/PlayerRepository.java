@@ -0,0 +1,163 @@
+package com.vogulev.online_monitor.database.repositories;
+
+import com.vogulev.online_monitor.database.ConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Repository for the players table, which gives every player UUID an integer id.
+ * Resolved players are cached by UUID and by name, so after the first join of a player
+ * statistics writes and name lookups need no extra query.
+ * Ids are resolved within the caller's transaction and cached only after it commits,
+ * so a rolled back id is never handed out.
+ */
+public class PlayerRepository {
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    // Frequent statements, also checked by QueryPlanVerifier
+    public static final String PLAYER_BY_UUID_SQL = "SELECT id, name FROM players WHERE uuid = ?";
+    public static final String PLAYER_BY_NAME_SQL =
+            "SELECT id, uuid, name FROM players WHERE name = ? ORDER BY id DESC LIMIT 1";
+
+    private static final String RENAME_SQL = "UPDATE players SET name = ? WHERE id = ?";
+    // Players recorded before UUIDs were stored get the UUID of the first player joining under their name
+    private static final String CLAIM_SQL = "UPDATE players SET uuid = ? WHERE uuid IS NULL AND name = ?";
+    private static final String INSERT_SQL = "INSERT INTO players (uuid, name) VALUES (?, ?)";
+
+    /**
+     * A player row
+     * @param id Player id
+     * @param uuid Player UUID, or null for players recorded before UUIDs were stored
+     * @param name Last known name
+     */
+    public record PlayerRef(int id, UUID uuid, String name) {
+    }
+
+    private final ConnectionManager connectionManager;
+
+    private final Map<UUID, PlayerRef> byUuid = new ConcurrentHashMap<>();
+    private final Map<String, PlayerRef> byName = new ConcurrentHashMap<>();
+
+    public PlayerRepository(final ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Resolves player ids within the caller's transaction, creating players and storing name changes.
+     * Call {@link #cache} with the result after the commit.
+     * @param players Current name by player UUID
+     * @return Resolved players by UUID
+     */
+    public Map<UUID, PlayerRef> resolve(final Connection conn, final Map<UUID, String> players) throws SQLException {
+        final Map<UUID, PlayerRef> resolved = new HashMap<>();
+        for (final Map.Entry<UUID, String> player : players.entrySet()) {
+            final PlayerRef cached = byUuid.get(player.getKey());
+            if (cached != null && cached.name().equals(player.getValue())) {
+                resolved.put(player.getKey(), cached);
+            } else {
+                resolved.put(player.getKey(), resolve(conn, player.getKey(), player.getValue()));
+            }
+        }
+        return resolved;
+    }
+
+    private PlayerRef resolve(final Connection conn, final UUID uuid, final String name) throws SQLException {
+        PlayerRef player = find(conn, uuid);
+        if (player == null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(CLAIM_SQL)) {
+                pstmt.setString(1, uuid.toString());
+                pstmt.setString(2, name);
+                if (pstmt.executeUpdate() > 0) {
+                    player = find(conn, uuid);
+                }
+            }
+        }
+        if (player == null) {
+            try (PreparedStatement pstmt = conn.prepareStatement(INSERT_SQL, Statement.RETURN_GENERATED_KEYS)) {
+                pstmt.setString(1, uuid.toString());
+                pstmt.setString(2, name);
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    if (!keys.next()) {
+                        throw new SQLException("No id generated for player " + name);
+                    }
+                    return new PlayerRef(keys.getInt(1), uuid, name);
+                }
+            }
+        }
+        if (!player.name().equals(name)) {
+            try (PreparedStatement pstmt = conn.prepareStatement(RENAME_SQL)) {
+                pstmt.setString(1, name);
+                pstmt.setInt(2, player.id());
+                pstmt.executeUpdate();
+            }
+            player = new PlayerRef(player.id(), uuid, name);
+        }
+        return player;
+    }
+
+    private PlayerRef find(final Connection conn, final UUID uuid) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(PLAYER_BY_UUID_SQL)) {
+            pstmt.setString(1, uuid.toString());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? new PlayerRef(rs.getInt("id"), uuid, rs.getString("name")) : null;
+            }
+        }
+    }
+
+    /**
+     * Caches players resolved in a committed transaction
+     */
+    public void cache(final Collection<PlayerRef> players) {
+        for (final PlayerRef player : players) {
+            if (player.uuid() != null) {
+                byUuid.put(player.uuid(), player);
+            }
+            byName.put(player.name(), player);
+        }
+    }
+
+    /**
+     * @return Cached player, or null if the player has not been resolved since startup
+     */
+    public PlayerRef getCached(final UUID uuid) {
+        return byUuid.get(uuid);
+    }
+
+    /**
+     * Finds the player that last used the given name
+     * @return Player, or null if no player ever used the name
+     */
+    public PlayerRef findByName(final String name) {
+        final PlayerRef cached = byName.get(name);
+        if (cached != null) {
+            return cached;
+        }
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PLAYER_BY_NAME_SQL)) {
+            pstmt.setString(1, name);
+            try (ResultSet rs = pstmt.executeQuery()) {
+                if (rs.next()) {
+                    final String uuid = rs.getString("uuid");
+                    final PlayerRef player = new PlayerRef(rs.getInt("id"),
+                            uuid != null ? UUID.fromString(uuid) : null, rs.getString("name"));
+                    byName.putIfAbsent(name, player);
+                    return player;
+                }
+            }
+        } catch (final SQLException | IllegalArgumentException e) {
+            logger.severe("Error finding player " + name + ": " + e.getMessage());
+        }
+        return null;
+    }
+}
@@ -1,13 +1,26 @@
 package com.vogulev.online_monitor.database.repositories;
 
 import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.LeaderboardEngine;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.PlayerLifecycleEvent;
+import com.vogulev.online_monitor.database.PlayerProfile;
+import com.vogulev.online_monitor.database.PlayerStatsDelta;
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository.PlayerRef;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.LinkedHashMap;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 import java.util.logging.Logger;
 
 /**
@@ -15,269 +28,229 @@ import java.util.logging.Logger;
  */
 public class PlayerStatsRepository {
     private static final Logger logger = Logger.getLogger("OnlineMonitor");
-    private final ConnectionManager connectionManager;
+    private static final Counter[] COUNTERS = Counter.values();
+    private static final LeaderboardMetric[] METRICS = LeaderboardMetric.values();
 
-    public PlayerStatsRepository(final ConnectionManager connectionManager) {
-        this.connectionManager = connectionManager;
-    }
+    private static final String PROFILE_SELECT_SQL = """
+            SELECT p.id, p.uuid, p.name, s.total_joins, s.total_playtime, s.total_active_time, s.total_afk_time,
+                s.first_join, s.last_join, s.last_activity, s.deaths, s.mob_kills, s.player_kills,
+                s.blocks_broken, s.blocks_placed, s.messages_sent
+            FROM players p
+            LEFT JOIN player_stats s ON s.player_id = p.id
+            """;
 
-    public void recordPlayerJoin(final String playerName) {
-        final String sql = "INSERT INTO player_stats (player_name, total_joins, first_join, last_join) " +
-                "VALUES (?, 1, " + connectionManager.getCurrentTimestamp() + ", " + connectionManager.getCurrentTimestamp() + ") " +
-                "ON CONFLICT(player_name) DO UPDATE SET " +
-                "total_joins = total_joins + 1, " +
-                "last_join = " + connectionManager.getCurrentTimestamp();
+    // Frequent statements, also checked by QueryPlanVerifier
+    public static final String UPDATE_PLAYTIME_SQL =
+            "UPDATE player_stats SET total_playtime = total_playtime + ?, total_active_time = total_active_time + ?, " +
+            "total_afk_time = total_afk_time + ? WHERE player_id = ?";
+    public static final String PROFILE_BY_NAME_SQL = PROFILE_SELECT_SQL + "WHERE p.name = ? ORDER BY p.id DESC LIMIT 1";
 
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error recording player join: " + e.getMessage());
-        }
-    }
+    private final ConnectionManager connectionManager;
+    private final PlayerRepository playerRepo;
+    private final PlayerDailyStatsRepository dailyStatsRepo;
 
-    public void updatePlaytime(final String playerName, final long sessionDuration) {
-        final String sql = "UPDATE player_stats SET total_playtime = total_playtime + ? WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setLong(1, sessionDuration);
-            pstmt.setString(2, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error updating player playtime: " + e.getMessage());
-        }
+    public PlayerStatsRepository(final ConnectionManager connectionManager, final PlayerRepository playerRepo,
+                                 final PlayerDailyStatsRepository dailyStatsRepo) {
+        this.connectionManager = connectionManager;
+        this.playerRepo = playerRepo;
+        this.dailyStatsRepo = dailyStatsRepo;
     }
 
-    public int getPlayerJoinCount(final String playerName) {
-        final String sql = "SELECT total_joins FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("total_joins");
-            }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player join count: " + e.getMessage());
+    /**
+     * Upserts join counters for the given joins in one batch within the caller's transaction
+     * @param players Players of the joins, resolved in the same transaction
+     */
+    public void recordPlayerJoins(final Connection conn, final List<PlayerLifecycleEvent.Join> joins,
+                                  final Map<UUID, PlayerRef> players) throws SQLException {
+        if (joins.isEmpty()) {
+            return;
         }
-        return 0;
-    }
-
-    public long getPlayerTotalPlaytime(final String playerName) {
-        final String sql = "SELECT total_playtime FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getLong("total_playtime");
+        final String sql = "INSERT INTO player_stats (player_id, total_joins, first_join, last_join) " +
+                "VALUES (?, 1, ?, ?) " +
+                "ON CONFLICT(player_id) DO UPDATE SET " +
+                "total_joins = total_joins + 1, " +
+                "last_join = excluded.last_join";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            for (final PlayerLifecycleEvent.Join join : joins) {
+                pstmt.setInt(1, players.get(join.playerId()).id());
+                pstmt.setLong(2, join.timestamp());
+                pstmt.setLong(3, join.timestamp());
+                pstmt.addBatch();
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player playtime: " + e.getMessage());
+            pstmt.executeBatch();
         }
-        return 0;
     }
 
-    public Map<String, Integer> getTopPlayersByJoins(final int limit) {
-        final Map<String, Integer> topPlayers = new LinkedHashMap<>();
-        final String sql = "SELECT player_name, total_joins FROM player_stats ORDER BY total_joins DESC LIMIT ?";
-
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setInt(1, limit);
-            final ResultSet rs = pstmt.executeQuery();
-
-            while (rs.next()) {
-                topPlayers.put(rs.getString("player_name"), rs.getInt("total_joins"));
-            }
-        } catch (final SQLException e) {
-            logger.severe("Error getting top players: " + e.getMessage());
+    /**
+     * Adds session durations to total, active and AFK playtime in one batch within the caller's transaction
+     * @param players Players of the quits, resolved in the same transaction
+     */
+    public void updatePlaytimes(final Connection conn, final List<PlayerLifecycleEvent.Quit> quits,
+                                final Map<UUID, PlayerRef> players) throws SQLException {
+        if (quits.isEmpty()) {
+            return;
         }
-
-        return topPlayers;
-    }
-
-    public long getTotalPlaytime() {
-        final String sql = "SELECT SUM(total_playtime) as total FROM player_stats";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getLong("total");
+        try (PreparedStatement pstmt = conn.prepareStatement(UPDATE_PLAYTIME_SQL)) {
+            for (final PlayerLifecycleEvent.Quit quit : quits) {
+                pstmt.setLong(1, quit.sessionDuration());
+                pstmt.setLong(2, quit.activeDuration());
+                pstmt.setLong(3, quit.afkDuration());
+                pstmt.setInt(4, players.get(quit.playerId()).id());
+                pstmt.addBatch();
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting total playtime: " + e.getMessage());
-        }
-        return 0;
-    }
-
-    // Extended statistics methods
-
-    public void incrementDeaths(final String playerName) {
-        final String sql = "UPDATE player_stats SET deaths = deaths + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing deaths: " + e.getMessage());
-        }
-    }
-
-    public void incrementMobKills(final String playerName) {
-        final String sql = "UPDATE player_stats SET mob_kills = mob_kills + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing mob kills: " + e.getMessage());
-        }
-    }
-
-    public void incrementPlayerKills(final String playerName) {
-        final String sql = "UPDATE player_stats SET player_kills = player_kills + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing player kills: " + e.getMessage());
+            pstmt.executeBatch();
         }
     }
 
-    public void incrementBlocksBroken(final String playerName) {
-        final String sql = "UPDATE player_stats SET blocks_broken = blocks_broken + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+    /**
+     * Reads the profile of the player that last used the given name with a single query
+     * @return Profile, or null if no player ever used the name
+     */
+    public PlayerProfile getProfile(final String playerName) {
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(PROFILE_BY_NAME_SQL)) {
             pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing blocks broken: " + e.getMessage());
-        }
-    }
-
-    public void incrementBlocksPlaced(final String playerName) {
-        final String sql = "UPDATE player_stats SET blocks_placed = blocks_placed + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing blocks placed: " + e.getMessage());
-        }
-    }
-
-    public void incrementMessagesSent(final String playerName) {
-        final String sql = "UPDATE player_stats SET messages_sent = messages_sent + 1 WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error incrementing messages sent: " + e.getMessage());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                return rs.next() ? readProfile(rs) : null;
+            }
+        } catch (final SQLException | IllegalArgumentException e) {
+            logger.severe("Error getting player profile: " + e.getMessage());
         }
+        return null;
     }
 
-    public void updateLastActivity(final String playerName) {
-        final String sql = "UPDATE player_stats SET last_activity = " + connectionManager.getCurrentTimestamp() + " WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error updating last activity: " + e.getMessage());
+    /**
+     * Reads the profiles of the given players with a single query
+     * @return Profiles of the players that exist
+     */
+    public List<PlayerProfile> getProfiles(final Collection<Integer> playerIds) {
+        final List<PlayerProfile> profiles = new ArrayList<>();
+        if (playerIds.isEmpty()) {
+            return profiles;
         }
-    }
-
-    public int getPlayerDeaths(final String playerName) {
-        final String sql = "SELECT deaths FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
+        final String placeholders = String.join(", ", Collections.nCopies(playerIds.size(), "?"));
+        final String sql = PROFILE_SELECT_SQL + "WHERE p.id IN (" + placeholders + ")";
+        try (Connection conn = connectionManager.getReadConnection();
              PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("deaths");
+            int index = 1;
+            for (final int playerId : playerIds) {
+                pstmt.setInt(index++, playerId);
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player deaths: " + e.getMessage());
+            try (ResultSet rs = pstmt.executeQuery()) {
+                while (rs.next()) {
+                    profiles.add(readProfile(rs));
+                }
+            }
+        } catch (final SQLException | IllegalArgumentException e) {
+            logger.severe("Error getting player profiles: " + e.getMessage());
         }
-        return 0;
+        return profiles;
     }
 
-    public int getPlayerMobKills(final String playerName) {
-        final String sql = "SELECT mob_kills FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("mob_kills");
-            }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player mob kills: " + e.getMessage());
-        }
-        return 0;
+    /**
+     * Missing player_stats columns (a player without statistics) read as 0
+     */
+    private static PlayerProfile readProfile(final ResultSet rs) throws SQLException {
+        final String uuid = rs.getString("uuid");
+        return new PlayerProfile(rs.getInt("id"), uuid != null ? UUID.fromString(uuid) : null, rs.getString("name"),
+                rs.getInt("total_joins"), rs.getLong("total_playtime"), rs.getLong("total_active_time"),
+                rs.getLong("total_afk_time"), rs.getLong("first_join"), rs.getLong("last_join"),
+                rs.getLong("last_activity"), rs.getInt("deaths"), rs.getInt("mob_kills"), rs.getInt("player_kills"),
+                rs.getInt("blocks_broken"), rs.getInt("blocks_placed"), rs.getInt("messages_sent"));
     }
 
-    public int getPlayerPlayerKills(final String playerName) {
-        final String sql = "SELECT player_kills FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("player_kills");
-            }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player kills: " + e.getMessage());
+    /**
+     * Loads the stored score of every player into the leaderboards.
+     * Reads the whole table once, at startup.
+     */
+    public void loadLeaderboards(final LeaderboardEngine leaderboards) {
+        final StringBuilder sql = new StringBuilder("SELECT s.player_id, p.name");
+        for (final LeaderboardMetric metric : METRICS) {
+            sql.append(", s.").append(metric.getColumn());
         }
-        return 0;
-    }
+        sql.append(" FROM player_stats s JOIN players p ON p.id = s.player_id");
 
-    public int getPlayerBlocksBroken(final String playerName) {
-        final String sql = "SELECT blocks_broken FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("blocks_broken");
+        int players = 0;
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql.toString());
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                final int playerId = rs.getInt("player_id");
+                final String name = rs.getString("name");
+                for (final LeaderboardMetric metric : METRICS) {
+                    leaderboards.set(playerId, name, metric, rs.getLong(metric.getColumn()));
+                }
+                players++;
             }
+            logger.info("Leaderboards loaded: " + players + " players");
         } catch (final SQLException e) {
-            logger.severe("Error getting player blocks broken: " + e.getMessage());
+            logger.severe("Error loading leaderboards: " + e.getMessage());
         }
-        return 0;
     }
 
-    public int getPlayerBlocksPlaced(final String playerName) {
-        final String sql = "SELECT blocks_placed FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("blocks_placed");
+    // Extended statistics methods
+
+    /**
+     * Write buffered counter deltas and last activity times as one upsert per player in a single batch.
+     * Player ids are resolved and the counters added to today's daily buckets in the same transaction.
+     * @param deltas Counter deltas by player UUID
+     * @return Players of the deltas by UUID if the batch was committed, null otherwise
+     */
+    public Map<UUID, PlayerRef> applyStatsDeltas(final Map<UUID, PlayerStatsDelta> deltas) {
+        final StringBuilder columns = new StringBuilder();
+        final StringBuilder placeholders = new StringBuilder();
+        final StringBuilder updates = new StringBuilder();
+        for (final Counter counter : COUNTERS) {
+            final String column = counter.getColumn();
+            columns.append(", ").append(column);
+            placeholders.append(", ?");
+            if (updates.length() > 0) {
+                updates.append(", ");
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting player blocks placed: " + e.getMessage());
+            updates.append(column).append(" = ").append(column).append(" + excluded.").append(column);
         }
-        return 0;
-    }
+        // A delta without activity binds NULL and keeps the stored last_activity
+        final String sql = "INSERT INTO player_stats (player_id" + columns + ", last_activity) VALUES (?" +
+                placeholders + ", ?) " +
+                "ON CONFLICT(player_id) DO UPDATE SET " + updates +
+                ", last_activity = COALESCE(excluded.last_activity, last_activity)";
 
-    public int getPlayerMessagesSent(final String playerName) {
-        final String sql = "SELECT messages_sent FROM player_stats WHERE player_name = ?";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            final ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getInt("messages_sent");
+        try (Connection conn = connectionManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement pstmt = conn.prepareStatement(sql)) {
+                final Map<UUID, String> names = new HashMap<>();
+                for (final Map.Entry<UUID, PlayerStatsDelta> entry : deltas.entrySet()) {
+                    names.put(entry.getKey(), entry.getValue().getPlayerName());
+                }
+                final Map<UUID, PlayerRef> players = playerRepo.resolve(conn, names);
+                for (final Map.Entry<UUID, PlayerStatsDelta> entry : deltas.entrySet()) {
+                    pstmt.setInt(1, players.get(entry.getKey()).id());
+                    int index = 2;
+                    for (final Counter counter : COUNTERS) {
+                        pstmt.setInt(index++, entry.getValue().get(counter));
+                    }
+                    final long lastActivity = entry.getValue().getLastActivity();
+                    if (lastActivity > 0) {
+                        pstmt.setLong(index, lastActivity);
+                    } else {
+                        pstmt.setNull(index, Types.BIGINT);
+                    }
+                    pstmt.addBatch();
+                }
+                pstmt.executeBatch();
+                dailyStatsRepo.addCounters(conn, deltas, players, System.currentTimeMillis());
+                conn.commit();
+                playerRepo.cache(players.values());
+                return players;
+            } catch (final SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
         } catch (final SQLException e) {
-            logger.severe("Error getting player messages sent: " + e.getMessage());
+            logger.severe("Error writing buffered player statistics: " + e.getMessage());
         }
-        return 0;
+        return null;
     }
 }
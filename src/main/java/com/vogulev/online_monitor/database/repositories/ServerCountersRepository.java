@@ -0,0 +1,182 @@
+package com.vogulev.online_monitor.database.repositories;
+
+import com.vogulev.online_monitor.database.ConnectionManager;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Repository for maintained server-wide totals (total and active playtime, total and active sessions).
+ * Values live in the server_counters table with atomic in-memory mirrors, so reads are O(1).
+ * Deltas are written in the same transaction as the session changes they come from; the mirrors
+ * are updated only after that transaction commits.
+ */
+public class ServerCountersRepository {
+    private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    public static final String TOTAL_PLAYTIME = "total_playtime";
+    public static final String TOTAL_ACTIVE_TIME = "total_active_time";
+    public static final String TOTAL_SESSIONS = "total_sessions";
+    public static final String ACTIVE_SESSIONS = "active_sessions";
+
+    private static final String ADD_SQL = "UPDATE server_counters SET value = value + ? WHERE name = ?";
+    private static final String SET_SQL = "UPDATE server_counters SET value = ? WHERE name = ?";
+
+    private final ConnectionManager connectionManager;
+
+    private final AtomicLong totalPlaytime = new AtomicLong();
+    private final AtomicLong totalActiveTime = new AtomicLong();
+    private final AtomicLong totalSessions = new AtomicLong();
+    private final AtomicLong activeSessions = new AtomicLong();
+
+    public ServerCountersRepository(final ConnectionManager connectionManager) {
+        this.connectionManager = connectionManager;
+    }
+
+    /**
+     * Loads the persisted counters into the in-memory mirrors
+     */
+    public void load() {
+        final String sql = "SELECT name, value FROM server_counters";
+        try (Connection conn = connectionManager.getReadConnection();
+             PreparedStatement pstmt = conn.prepareStatement(sql);
+             ResultSet rs = pstmt.executeQuery()) {
+            while (rs.next()) {
+                final AtomicLong mirror = mirror(rs.getString("name"));
+                if (mirror != null) {
+                    mirror.set(rs.getLong("value"));
+                }
+            }
+            logger.info("Server counters loaded: totalPlaytime=" + totalPlaytime + ", totalActiveTime=" + totalActiveTime +
+                    ", totalSessions=" + totalSessions +
+                    ", activeSessions=" + activeSessions);
+        } catch (final SQLException e) {
+            logger.severe("Error loading server counters: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds counter deltas within the caller's transaction. Call {@link #publish} after the commit.
+     */
+    public void add(final Connection conn, final long playtime, final long activeTime, final long sessions,
+                    final long active) throws SQLException {
+        try (PreparedStatement pstmt = conn.prepareStatement(ADD_SQL)) {
+            addBatch(pstmt, TOTAL_PLAYTIME, playtime);
+            addBatch(pstmt, TOTAL_ACTIVE_TIME, activeTime);
+            addBatch(pstmt, TOTAL_SESSIONS, sessions);
+            addBatch(pstmt, ACTIVE_SESSIONS, active);
+            pstmt.executeBatch();
+        }
+    }
+
+    private static void addBatch(final PreparedStatement pstmt, final String name, final long value) throws SQLException {
+        if (value != 0) {
+            pstmt.setLong(1, value);
+            pstmt.setString(2, name);
+            pstmt.addBatch();
+        }
+    }
+
+    /**
+     * Applies committed deltas to the in-memory mirrors
+     */
+    public void publish(final long playtime, final long activeTime, final long sessions, final long active) {
+        totalPlaytime.addAndGet(playtime);
+        totalActiveTime.addAndGet(activeTime);
+        totalSessions.addAndGet(sessions);
+        activeSessions.addAndGet(active);
+    }
+
+    /**
+     * Recomputes all counters from the source tables and overwrites the stored values.
+     * Must run serialized with session writes (on the database executor), otherwise a concurrent
+     * delta could be lost.
+     */
+    public void reconcile() {
+        final String sql = """
+            SELECT
+                (SELECT COALESCE(SUM(total_playtime), 0) FROM player_stats) as total_playtime,
+                (SELECT COALESCE(SUM(total_active_time), 0) FROM player_stats) as total_active_time,
+                (SELECT COUNT(*) FROM player_sessions) as total_sessions,
+                (SELECT COUNT(*) FROM player_sessions WHERE quit_time IS NULL) as active_sessions
+            """;
+        try (Connection conn = connectionManager.getConnection()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement select = conn.prepareStatement(sql);
+                 PreparedStatement update = conn.prepareStatement(SET_SQL)) {
+                final long playtime;
+                final long activeTime;
+                final long sessions;
+                final long active;
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    playtime = rs.getLong(TOTAL_PLAYTIME);
+                    activeTime = rs.getLong(TOTAL_ACTIVE_TIME);
+                    sessions = rs.getLong(TOTAL_SESSIONS);
+                    active = rs.getLong(ACTIVE_SESSIONS);
+                }
+                setBatch(update, TOTAL_PLAYTIME, playtime);
+                setBatch(update, TOTAL_ACTIVE_TIME, activeTime);
+                setBatch(update, TOTAL_SESSIONS, sessions);
+                setBatch(update, ACTIVE_SESSIONS, active);
+                update.executeBatch();
+                conn.commit();
+
+                final boolean drifted = totalPlaytime.get() != playtime || totalActiveTime.get() != activeTime
+                        || totalSessions.get() != sessions || activeSessions.get() != active;
+                totalPlaytime.set(playtime);
+                totalActiveTime.set(activeTime);
+                totalSessions.set(sessions);
+                activeSessions.set(active);
+                if (drifted) {
+                    logger.warning("Server counters drifted from source tables and were corrected: totalPlaytime=" +
+                            playtime + ", totalActiveTime=" + activeTime + ", totalSessions=" + sessions +
+                            ", activeSessions=" + active);
+                }
+            } catch (final SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        } catch (final SQLException e) {
+            logger.severe("Error reconciling server counters: " + e.getMessage());
+        }
+    }
+
+    private static void setBatch(final PreparedStatement pstmt, final String name, final long value) throws SQLException {
+        pstmt.setLong(1, value);
+        pstmt.setString(2, name);
+        pstmt.addBatch();
+    }
+
+    private AtomicLong mirror(final String name) {
+        return switch (name) {
+            case TOTAL_PLAYTIME -> totalPlaytime;
+            case TOTAL_ACTIVE_TIME -> totalActiveTime;
+            case TOTAL_SESSIONS -> totalSessions;
+            case ACTIVE_SESSIONS -> activeSessions;
+            default -> null;
+        };
+    }
+
+    public long getTotalPlaytime() {
+        return totalPlaytime.get();
+    }
+
+    public long getTotalActiveTime() {
+        return totalActiveTime.get();
+    }
+
+    public long getTotalSessions() {
+        return totalSessions.get();
+    }
+
+    public long getActiveSessions() {
+        return activeSessions.get();
+    }
+}
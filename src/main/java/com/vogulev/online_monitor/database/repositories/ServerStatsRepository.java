@@ -19,6 +19,11 @@ public class ServerStatsRepository {
 
     private volatile int cachedMaxOnline = 0;
     private final AtomicInteger cachedUniquePlayersCount = new AtomicInteger(0);
+    /**
+     * Unique players counted in memory and not yet written; a queued write can be discarded
+     * when the executor queue is full, the count stays here until a flush commits it
+     */
+    private final AtomicInteger pendingUniquePlayers = new AtomicInteger(0);
     private volatile boolean cacheInitialized = false;
 
     public ServerStatsRepository(final ConnectionManager connectionManager) {
@@ -28,7 +33,7 @@ public class ServerStatsRepository {
     /**
      * Initializes cache from the database
      */
-    private void initializeCache() {
+    private synchronized void initializeCache() {
         if (!cacheInitialized) {
             cachedMaxOnline = getMaxOnlineFromDB();
             cachedUniquePlayersCount.set(getUniquePlayersCountFromDB());
@@ -55,7 +60,7 @@ public class ServerStatsRepository {
 
     private int getMaxOnlineFromDB() {
         final String sql = "SELECT max_online FROM server_stats WHERE id = 1";
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionManager.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
@@ -72,13 +77,33 @@ public class ServerStatsRepository {
         return cachedMaxOnline;
     }
 
-    public void incrementUniquePlayer() {
-        final String sql = "UPDATE server_stats SET total_unique_players = total_unique_players + 1 WHERE id = 1";
+    /**
+     * Counts a new unique player in memory; written by the next {@link #flushUniquePlayers()}
+     */
+    public void recordUniquePlayer() {
+        pendingUniquePlayers.incrementAndGet();
+    }
+
+    /**
+     * Writes the unique players counted since the last flush.
+     * On failure they stay pending and are written by the next flush.
+     */
+    public void flushUniquePlayers() {
+        initializeCache();
+        final int count = pendingUniquePlayers.get();
+        if (count == 0) {
+            return;
+        }
+        final String sql = "UPDATE server_stats SET total_unique_players = total_unique_players + ? WHERE id = 1";
         try (Connection conn = connectionManager.getConnection();
-             Statement stmt = conn.createStatement()) {
-            stmt.execute(sql);
+             PreparedStatement pstmt = conn.prepareStatement(sql)) {
+            pstmt.setInt(1, count);
+            pstmt.executeUpdate();
 
-            cachedUniquePlayersCount.incrementAndGet();
+            synchronized (this) {
+                cachedUniquePlayersCount.addAndGet(count);
+                pendingUniquePlayers.addAndGet(-count);
+            }
         } catch (final SQLException e) {
             logger.severe("Error incrementing unique players: " + e.getMessage());
         }
@@ -86,7 +111,7 @@ public class ServerStatsRepository {
 
     private int getUniquePlayersCountFromDB() {
         final String sql = "SELECT total_unique_players FROM server_stats WHERE id = 1";
-        try (Connection conn = connectionManager.getConnection();
+        try (Connection conn = connectionManager.getReadConnection();
              Statement stmt = conn.createStatement();
              ResultSet rs = stmt.executeQuery(sql)) {
             if (rs.next()) {
@@ -98,8 +123,13 @@ public class ServerStatsRepository {
         return 0;
     }
 
+    /**
+     * @return Written unique players plus the ones still pending
+     */
     public int getUniquePlayersCount() {
         initializeCache();
-        return cachedUniquePlayersCount.get();
+        synchronized (this) {
+            return cachedUniquePlayersCount.get() + pendingUniquePlayers.get();
+        }
     }
 }
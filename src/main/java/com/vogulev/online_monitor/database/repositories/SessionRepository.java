@@ -1,11 +1,18 @@
 package com.vogulev.online_monitor.database.repositories;
 
 import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.PlayerLifecycleEvent;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository.PlayerRef;
 
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.logging.Logger;
 
 /**
@@ -13,85 +20,145 @@ import java.util.logging.Logger;
  */
 public class SessionRepository {
     private static final Logger logger = Logger.getLogger("OnlineMonitor");
+
+    // Frequent statement, also checked by QueryPlanVerifier
+    public static final String CLOSE_SESSION_SQL =
+            "UPDATE player_sessions SET quit_time = ?, session_duration = ?, active_time = ?, afk_time = ? WHERE id = ?";
+
     private final ConnectionManager connectionManager;
 
+    /**
+     * Open session id by player UUID, so closing a session is a primary-key update.
+     * Filled as joins are committed; it starts empty because stale sessions are closed at startup
+     */
+    private final Map<UUID, Long> openSessions = new ConcurrentHashMap<>();
+
     public SessionRepository(final ConnectionManager connectionManager) {
         this.connectionManager = connectionManager;
     }
 
-    public void createSession(final String playerName) {
-        final String sql = "INSERT INTO player_sessions (player_name, join_time) VALUES (?, " + connectionManager.getCurrentTimestamp() + ")";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql)) {
-            pstmt.setString(1, playerName);
-            pstmt.executeUpdate();
-        } catch (final SQLException e) {
-            logger.severe("Error creating player session: " + e.getMessage());
-        }
-    }
-
-    public void closeSession(final String playerName, final long sessionDuration) {
+    /**
+     * Closes sessions left open by a server crash. Runs at startup, before any join is recorded, when no
+     * session can legitimately be open. The quit time is the last recorded online snapshot (the last time
+     * the server was known to be running), or the join time if there is no later snapshot.
+     * Active and AFK time are unknown and stored as 0. The session_duration stored here is never added to
+     * player_stats, player_daily_stats or the server counters, so sums over player_sessions can exceed those
+     * totals by the time of crashed sessions.
+     * The active session counter is corrected in the same transaction.
+     * @return Number of closed sessions
+     */
+    public int closeStaleSessions(final ServerCountersRepository countersRepo) {
+        final String lastSeenSql = "SELECT MAX(timestamp) AS last_seen FROM online_snapshots";
+        final String staleSql = "SELECT id, join_time FROM player_sessions WHERE quit_time IS NULL";
         try (Connection conn = connectionManager.getConnection()) {
-            // Find active session
-            final String findSessionSql = "SELECT id FROM player_sessions " +
-                    "WHERE player_name = ? AND quit_time IS NULL " +
-                    "ORDER BY join_time DESC LIMIT 1";
-
-            int sessionId = -1;
-            try (PreparedStatement findStmt = conn.prepareStatement(findSessionSql)) {
-                findStmt.setString(1, playerName);
-                final ResultSet rs = findStmt.executeQuery();
-                if (rs.next()) {
-                    sessionId = rs.getInt("id");
+            conn.setAutoCommit(false);
+            try (PreparedStatement lastSeenStmt = conn.prepareStatement(lastSeenSql);
+                 PreparedStatement staleStmt = conn.prepareStatement(staleSql);
+                 PreparedStatement close = conn.prepareStatement(CLOSE_SESSION_SQL)) {
+                final long lastSeen;
+                try (ResultSet rs = lastSeenStmt.executeQuery()) {
+                    lastSeen = rs.next() ? rs.getLong("last_seen") : 0;
                 }
-            }
-
-            if (sessionId != -1) {
-                // Update session
-                final String updateSql = "UPDATE player_sessions " +
-                        "SET quit_time = " + connectionManager.getCurrentTimestamp() + ", " +
-                        "session_duration = ? " +
-                        "WHERE id = ?";
-
-                try (PreparedStatement updateStmt = conn.prepareStatement(updateSql)) {
-                    updateStmt.setLong(1, sessionDuration);
-                    updateStmt.setInt(2, sessionId);
-                    updateStmt.executeUpdate();
+                int closed = 0;
+                try (ResultSet rs = staleStmt.executeQuery()) {
+                    while (rs.next()) {
+                        final long joinTime = rs.getLong("join_time");
+                        final long quitTime = Math.max(joinTime, lastSeen);
+                        close.setLong(1, quitTime);
+                        close.setLong(2, quitTime - joinTime);
+                        close.setLong(3, 0);
+                        close.setLong(4, 0);
+                        close.setLong(5, rs.getLong("id"));
+                        close.addBatch();
+                        closed++;
+                    }
                 }
-            } else {
-                logger.warning("No active session found for player: " + playerName);
+                if (closed > 0) {
+                    close.executeBatch();
+                    countersRepo.add(conn, 0, 0, 0, -closed);
+                }
+                conn.commit();
+                if (closed > 0) {
+                    countersRepo.publish(0, 0, 0, -closed);
+                    logger.warning("Closed " + closed + " session(s) left open by an unclean shutdown");
+                }
+                return closed;
+            } catch (final SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(true);
             }
-
         } catch (final SQLException e) {
-            logger.severe("Error closing player session: " + e.getMessage());
+            logger.severe("Error closing stale sessions: " + e.getMessage());
         }
+        return 0;
     }
 
-    public int getTotalSessions() {
-        final String sql = "SELECT COUNT(*) as total FROM player_sessions";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt("total");
+    /**
+     * Inserts sessions for the given joins within the caller's transaction.
+     * Rows are inserted one by one on a single statement, because drivers do not reliably
+     * return generated keys for batches.
+     * @param players Players of the joins, resolved in the same transaction
+     * @return Generated session ids in the order of joins
+     */
+    public long[] insertSessions(final Connection conn, final List<PlayerLifecycleEvent.Join> joins,
+                                 final Map<UUID, PlayerRef> players) throws SQLException {
+        final long[] sessionIds = new long[joins.size()];
+        final String sql = "INSERT INTO player_sessions (player_id, join_time) VALUES (?, ?)";
+        try (PreparedStatement pstmt = conn.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < joins.size(); i++) {
+                pstmt.setInt(1, players.get(joins.get(i).playerId()).id());
+                pstmt.setLong(2, joins.get(i).timestamp());
+                pstmt.executeUpdate();
+                try (ResultSet keys = pstmt.getGeneratedKeys()) {
+                    sessionIds[i] = keys.next() ? keys.getLong(1) : -1;
+                }
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting total sessions: " + e.getMessage());
         }
-        return 0;
+        return sessionIds;
     }
 
-    public int getActiveSessions() {
-        final String sql = "SELECT COUNT(*) as active FROM player_sessions WHERE quit_time IS NULL";
-        try (Connection conn = connectionManager.getConnection();
-             PreparedStatement pstmt = conn.prepareStatement(sql);
-             ResultSet rs = pstmt.executeQuery()) {
-            if (rs.next()) {
-                return rs.getInt("active");
+    /**
+     * Closes sessions by primary key in one batch within the caller's transaction
+     * @param sessionIds Session ids to close
+     * @param quits Quits closing the sessions, parallel to sessionIds
+     */
+    public void closeSessions(final Connection conn, final List<Long> sessionIds, final List<PlayerLifecycleEvent.Quit> quits) throws SQLException {
+        if (sessionIds.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement pstmt = conn.prepareStatement(CLOSE_SESSION_SQL)) {
+            for (int i = 0; i < sessionIds.size(); i++) {
+                pstmt.setLong(1, quits.get(i).timestamp());
+                pstmt.setLong(2, quits.get(i).sessionDuration());
+                pstmt.setLong(3, quits.get(i).activeDuration());
+                pstmt.setLong(4, quits.get(i).afkDuration());
+                pstmt.setLong(5, sessionIds.get(i));
+                pstmt.addBatch();
             }
-        } catch (final SQLException e) {
-            logger.severe("Error getting active sessions: " + e.getMessage());
+            pstmt.executeBatch();
         }
-        return 0;
+    }
+
+    /**
+     * Registers a committed session as the player's open session
+     */
+    public void registerOpenSession(final UUID playerId, final long sessionId) {
+        openSessions.put(playerId, sessionId);
+    }
+
+    /**
+     * Removes a committed closed session from the registry, unless a newer session is already registered
+     */
+    public void unregisterOpenSession(final UUID playerId, final long sessionId) {
+        openSessions.remove(playerId, sessionId);
+    }
+
+    /**
+     * @return Id of the player's open session, or null if the player has none
+     */
+    public Long getOpenSessionId(final UUID playerId) {
+        return openSessions.get(playerId);
     }
 }
@@ -0,0 +1,70 @@
+package com.vogulev.online_monitor.listeners;
+
+
+import com.vogulev.online_monitor.AFKManager;
+import com.vogulev.online_monitor.DatabaseManager;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.EntityDeathEvent;
+import org.bukkit.event.entity.PlayerDeathEvent;
+
+
+/**
+ * Listener counting deaths and kills per event, used in the "events" statistics collection mode
+ */
+public class PlayerCombatListener implements Listener
+{
+
+    private final DatabaseManager databaseManager;
+
+    private final AFKManager afkManager;
+
+
+    public PlayerCombatListener(final DatabaseManager databaseManager, final AFKManager afkManager)
+    {
+        this.databaseManager = databaseManager;
+        this.afkManager = afkManager;
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerDeath(final PlayerDeathEvent event)
+    {
+        final Player player = event.getEntity();
+        final String playerName = player.getName();
+
+        databaseManager.incrementDeaths(player.getUniqueId(), playerName);
+
+        afkManager.updateActivity(player.getUniqueId());
+        databaseManager.updateLastActivity(player.getUniqueId(), playerName);
+    }
+
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onEntityDeath(final EntityDeathEvent event)
+    {
+        final Player killer = event.getEntity().getKiller();
+        if (killer == null)
+        {
+            return;
+        }
+
+        final String killerName = killer.getName();
+        final Entity victim = event.getEntity();
+
+        if (victim instanceof Player)
+        {
+            databaseManager.incrementPlayerKills(killer.getUniqueId(), killerName);
+        }
+        else
+        {
+            databaseManager.incrementMobKills(killer.getUniqueId(), killerName);
+        }
+
+        afkManager.updateActivity(killer.getUniqueId());
+        databaseManager.updateLastActivity(killer.getUniqueId(), killerName);
+    }
+}
@@ -2,6 +2,7 @@ package com.vogulev.online_monitor.listeners;
 
 import com.vogulev.online_monitor.DatabaseManager;
 import com.vogulev.online_monitor.DiscordBot;
+import com.vogulev.online_monitor.OnlineRoster;
 import com.vogulev.online_monitor.ui.ScoreboardServerStatisticsManager;
 import org.bukkit.ChatColor;
 import org.bukkit.Server;
@@ -12,7 +13,6 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.util.Map;
 import java.util.logging.Logger;
 
 import static com.vogulev.online_monitor.i18n.LocalizationManager.getMessage;
@@ -26,18 +26,18 @@ public class PlayerEventListener implements Listener {
     private final DiscordBot discordBot;
     private final Server server;
     private final FileConfiguration config;
-    private final Map<String, Long> playerJoinTimes;
+    private final OnlineRoster roster;
     private final Runnable onNewRecordCallback;
     private ScoreboardServerStatisticsManager scoreboardServerStatisticsManager;
 
     public PlayerEventListener(final DatabaseManager database, final DiscordBot discordBot, final Server server,
-                                final FileConfiguration config, final Map<String, Long> playerJoinTimes,
+                                final FileConfiguration config, final OnlineRoster roster,
                                 final Runnable onNewRecordCallback) {
         this.database = database;
         this.discordBot = discordBot;
         this.server = server;
         this.config = config;
-        this.playerJoinTimes = playerJoinTimes;
+        this.roster = roster;
         this.onNewRecordCallback = onNewRecordCallback;
     }
 
@@ -58,9 +58,9 @@ public class PlayerEventListener implements Listener {
             logger.info("New player joined: " + player.getName());
         }
 
-        database.recordPlayerJoin(playerName);
+        database.recordPlayerJoin(player.getUniqueId(), playerName);
 
-        playerJoinTimes.put(playerName, System.currentTimeMillis());
+        roster.join(player.getUniqueId(), playerName, System.currentTimeMillis());
 
         String welcomeMessage = config.getString("welcome-message",
                 getMessage("welcome.default"));
@@ -100,21 +100,21 @@ public class PlayerEventListener implements Listener {
         final Player player = event.getPlayer();
         final String playerName = player.getName();
 
-        final Long joinTime = playerJoinTimes.get(playerName);
-        if (joinTime != null) {
-            final long sessionTime = System.currentTimeMillis() - joinTime;
+        final OnlineRoster.Entry session = roster.quit(player.getUniqueId());
+        if (session != null) {
+            final long now = System.currentTimeMillis();
+            final long sessionTime = session.sessionMillis(now);
             final long minutes = sessionTime / (1000 * 60);
+            final long afkTime = session.afkMillis(now);
 
-            database.recordPlayerQuit(playerName, sessionTime);
+            database.recordPlayerQuit(player.getUniqueId(), playerName, sessionTime, afkTime);
 
-            logger.info(playerName + " spent in game: " + minutes + " minutes");
+            logger.info(playerName + " spent in game: " + minutes + " minutes (AFK: " + afkTime / (1000 * 60) + " minutes)");
 
             if (discordBot != null && config.getBoolean("discord.notifications.player-quit", true)) {
                 final int currentOnline = server.getOnlinePlayers().size() - 1;
                 discordBot.sendPlayerQuitNotification(playerName, currentOnline, minutes);
             }
-
-            playerJoinTimes.remove(playerName);
         }
 
         if (scoreboardServerStatisticsManager != null) {
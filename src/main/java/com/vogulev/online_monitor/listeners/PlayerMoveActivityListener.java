@@ -0,0 +1,107 @@
+package com.vogulev.online_monitor.listeners;
+
+
+import com.vogulev.online_monitor.AFKManager;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerMoveEvent;
+
+
+/**
+ * Listener reporting movement to AFKManager, used in the "event" AFK detection mode.
+ * Registered separately, so the "poll" mode leaves PlayerMoveEvent without a handler from this plugin.
+ * With timing enabled it measures its handler the way ActivitySamplerTask measures its runs,
+ * so the two modes can be compared on the same server.
+ */
+public class PlayerMoveActivityListener implements Listener
+{
+
+    /**
+     * Handler timing since registration
+     * @param events Handled move events
+     * @param blockChanges Events that changed the block and were reported to AFKManager
+     * @param averageEventNanos Average duration of a handler call
+     * @param nanosPerSecond Time spent in the handler per second since registration, the same measure as
+     *                       ActivitySamplerTask.Metrics#nanosPerSecond. Does not include creating and
+     *                       dispatching the event, which the server skips when no plugin listens for it.
+     */
+    public record Metrics(long events, long blockChanges, long averageEventNanos, long nanosPerSecond)
+    {
+    }
+
+    private final AFKManager afkManager;
+
+    private final boolean timed;
+
+    private final long startNanos = System.nanoTime();
+
+    // Written on the server thread only
+    private volatile long events = 0;
+
+    private volatile long blockChanges = 0;
+
+    private volatile long totalNanos = 0;
+
+
+    /**
+     * @param timed Measure every handler call; costs two clock reads per move event
+     */
+    public PlayerMoveActivityListener(final AFKManager afkManager, final boolean timed)
+    {
+        this.afkManager = afkManager;
+        this.timed = timed;
+    }
+
+
+    /**
+     * Hottest event of the plugin: only block changes count, and AFKManager throttles repeated
+     * activity, so the common case writes nothing; AFKManager allocates nothing per call
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerMove(final PlayerMoveEvent event)
+    {
+        if (!timed)
+        {
+            recordMove(event);
+            return;
+        }
+        final long start = System.nanoTime();
+        final boolean changed = recordMove(event);
+        totalNanos += System.nanoTime() - start;
+        events++;
+        if (changed)
+        {
+            blockChanges++;
+        }
+    }
+
+
+    /**
+     * @return true if the player changed the block
+     */
+    private boolean recordMove(final PlayerMoveEvent event)
+    {
+        if (event.hasChangedBlock())
+        {
+            afkManager.updateActivity(event.getPlayer().getUniqueId());
+            return true;
+        }
+        return false;
+    }
+
+
+    public boolean isTimed()
+    {
+        return timed;
+    }
+
+
+    public Metrics getMetrics()
+    {
+        final long handled = events;
+        final long total = totalNanos;
+        final long elapsedSeconds = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000_000L);
+        return new Metrics(handled, blockChanges, handled > 0 ? total / handled : 0, total / elapsedSeconds);
+    }
+}
@@ -1,25 +1,24 @@
 package com.vogulev.online_monitor.listeners;
 
 
-import java.util.concurrent.CompletableFuture;
-
 import com.vogulev.online_monitor.AFKManager;
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.tasks.StatisticSamplerTask;
 import io.papermc.paper.event.player.AsyncChatEvent;
-import org.bukkit.entity.Entity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
 import org.bukkit.event.block.BlockPlaceEvent;
-import org.bukkit.event.entity.EntityDeathEvent;
-import org.bukkit.event.entity.PlayerDeathEvent;
-import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 
 
 /**
- * Listener for tracking extended player statistics
+ * Listener for tracking extended player statistics.
+ * Deaths and kills are counted by {@link PlayerCombatListener} or sampled by {@link StatisticSamplerTask},
+ * depending on statistics.collection-mode.
  */
 public class PlayerStatisticsListener implements Listener
 {
@@ -28,6 +27,8 @@ public class PlayerStatisticsListener implements Listener
 
     private final AFKManager afkManager;
 
+    private StatisticSamplerTask statisticSampler;
+
 
     public PlayerStatisticsListener(final DatabaseManager databaseManager, final AFKManager afkManager)
     {
@@ -36,44 +37,33 @@ public class PlayerStatisticsListener implements Listener
     }
 
 
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onPlayerDeath(final PlayerDeathEvent event)
+    public void setStatisticSampler(final StatisticSamplerTask statisticSampler)
     {
-        final Player player = event.getEntity();
-        final String playerName = player.getName();
+        this.statisticSampler = statisticSampler;
+    }
 
-        CompletableFuture.runAsync(() -> databaseManager.incrementDeaths(playerName));
 
-        afkManager.updateActivity(playerName);
-        updateLastActivity(playerName);
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(final PlayerJoinEvent event)
+    {
+        afkManager.register(event.getPlayer().getUniqueId(), event.getPlayer().getName());
+        if (statisticSampler != null)
+        {
+            statisticSampler.startTracking(event.getPlayer());
+        }
     }
 
 
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onEntityDeath(final EntityDeathEvent event)
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(final PlayerQuitEvent event)
     {
-        final Player killer = event.getEntity().getKiller();
-        if (killer == null)
+        afkManager.removePlayer(event.getPlayer().getUniqueId());
+        if (statisticSampler != null)
         {
-            return;
+            statisticSampler.stopTracking(event.getPlayer());
         }
-
-        final String killerName = killer.getName();
-        final Entity victim = event.getEntity();
-
-        CompletableFuture.runAsync(() -> {
-            if (victim instanceof Player)
-            {
-                databaseManager.incrementPlayerKills(killerName);
-            }
-            else
-            {
-                databaseManager.incrementMobKills(killerName);
-            }
-        });
-
-        afkManager.updateActivity(killerName);
-        updateLastActivity(killerName);
+        // Persist the player's buffered counters and last activity now instead of at the next interval
+        databaseManager.scheduleStatsFlush();
     }
 
 
@@ -83,10 +73,10 @@ public class PlayerStatisticsListener implements Listener
         final Player player = event.getPlayer();
         final String playerName = player.getName();
 
-        CompletableFuture.runAsync(() -> databaseManager.incrementBlocksBroken(playerName));
+        databaseManager.incrementBlocksBroken(player.getUniqueId(), playerName);
 
-        afkManager.updateActivity(playerName);
-        updateLastActivity(playerName);
+        afkManager.updateActivity(player.getUniqueId());
+        updateLastActivity(player);
     }
 
 
@@ -96,10 +86,10 @@ public class PlayerStatisticsListener implements Listener
         final Player player = event.getPlayer();
         final String playerName = player.getName();
 
-        CompletableFuture.runAsync(() -> databaseManager.incrementBlocksPlaced(playerName));
+        databaseManager.incrementBlocksPlaced(player.getUniqueId(), playerName);
 
-        afkManager.updateActivity(playerName);
-        updateLastActivity(playerName);
+        afkManager.updateActivity(player.getUniqueId());
+        updateLastActivity(player);
     }
 
 
@@ -109,31 +99,15 @@ public class PlayerStatisticsListener implements Listener
         final Player player = event.getPlayer();
         final String playerName = player.getName();
 
-        CompletableFuture.runAsync(() -> databaseManager.incrementMessagesSent(playerName));
+        databaseManager.incrementMessagesSent(player.getUniqueId(), playerName);
 
-        afkManager.updateActivity(playerName);
-        updateLastActivity(playerName);
-    }
-
-
-    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
-    public void onPlayerMove(final PlayerMoveEvent event)
-    {
-        if (event.getFrom().getBlockX() != event.getTo().getBlockX() ||
-            event.getFrom().getBlockY() != event.getTo().getBlockY() ||
-            event.getFrom().getBlockZ() != event.getTo().getBlockZ())
-        {
-
-            final Player player = event.getPlayer();
-            final String playerName = player.getName();
-
-            afkManager.updateActivity(playerName);
-        }
+        afkManager.updateActivity(player.getUniqueId());
+        updateLastActivity(player);
     }
 
 
-    private void updateLastActivity(final String playerName)
+    private void updateLastActivity(final Player player)
     {
-        CompletableFuture.runAsync(() -> databaseManager.updateLastActivity(playerName));
+        databaseManager.updateLastActivity(player.getUniqueId(), player.getName());
     }
 }
@@ -0,0 +1,19 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.AFKManager;
+
+/**
+ * Periodic task advancing the AFK timing wheel
+ */
+public class AFKTickTask implements Runnable {
+    private final AFKManager afkManager;
+
+    public AFKTickTask(final AFKManager afkManager) {
+        this.afkManager = afkManager;
+    }
+
+    @Override
+    public void run() {
+        afkManager.tick();
+    }
+}
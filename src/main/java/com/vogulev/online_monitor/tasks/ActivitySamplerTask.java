@@ -0,0 +1,152 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.AFKManager;
+import org.bukkit.Location;
+import org.bukkit.Server;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Periodic task detecting player activity by polling instead of listening for PlayerMoveEvent.
+ * Every run compares each online player's block position and view direction with the previous sample,
+ * kept in primitive arrays by slot, and reports a change to AFKManager. Must run on the server thread.
+ */
+public class ActivitySamplerTask implements Runnable {
+
+    /**
+     * Sampler timing since start
+     * @param runs Completed sampling runs
+     * @param samples Player positions sampled
+     * @param activities Samples that differed from the previous one
+     * @param lastRunNanos Duration of the last run
+     * @param averageRunNanos Average duration of a run
+     * @param nanosPerSecond Time spent sampling per second since start, the same measure as
+     *                       PlayerMoveActivityListener.Metrics#nanosPerSecond
+     */
+    public record Metrics(long runs, long samples, long activities, long lastRunNanos, long averageRunNanos,
+                          long nanosPerSecond) {
+    }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Server server;
+    private final AFKManager afkManager;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+    private final Location location = new Location(null, 0, 0, 0);
+    private final long startNanos = System.nanoTime();
+
+    private int[] blockX = new int[INITIAL_CAPACITY];
+    private int[] blockY = new int[INITIAL_CAPACITY];
+    private int[] blockZ = new int[INITIAL_CAPACITY];
+    private float[] yaw = new float[INITIAL_CAPACITY];
+    private float[] pitch = new float[INITIAL_CAPACITY];
+    private long[] seenRun = new long[INITIAL_CAPACITY];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int slotCount = 0;
+
+    // Written on the server thread only
+    private volatile long runs = 0;
+    private volatile long samples = 0;
+    private volatile long activities = 0;
+    private volatile long lastRunNanos = 0;
+    private volatile long totalRunNanos = 0;
+
+    public ActivitySamplerTask(final Server server, final AFKManager afkManager) {
+        this.server = server;
+        this.afkManager = afkManager;
+    }
+
+    @Override
+    public void run() {
+        final long start = System.nanoTime();
+        final long run = runs + 1;
+        int sampled = 0;
+        int changed = 0;
+        for (final Player player : server.getOnlinePlayers()) {
+            player.getLocation(location);
+            final int x = location.getBlockX();
+            final int y = location.getBlockY();
+            final int z = location.getBlockZ();
+            final float currentYaw = location.getYaw();
+            final float currentPitch = location.getPitch();
+
+            final Integer known = slots.get(player.getUniqueId());
+            final int slot;
+            if (known == null) {
+                // First sample only sets the baseline, joining already counts as activity
+                slot = allocateSlot();
+                slots.put(player.getUniqueId(), slot);
+            } else {
+                slot = known;
+                if (blockX[slot] != x || blockY[slot] != y || blockZ[slot] != z
+                        || yaw[slot] != currentYaw || pitch[slot] != currentPitch) {
+                    afkManager.updateActivity(player.getUniqueId());
+                    changed++;
+                }
+            }
+            blockX[slot] = x;
+            blockY[slot] = y;
+            blockZ[slot] = z;
+            yaw[slot] = currentYaw;
+            pitch[slot] = currentPitch;
+            seenRun[slot] = run;
+            sampled++;
+        }
+        if (slots.size() > sampled) {
+            releaseUnseen(run);
+        }
+
+        final long elapsed = System.nanoTime() - start;
+        runs = run;
+        samples += sampled;
+        activities += changed;
+        lastRunNanos = elapsed;
+        totalRunNanos += elapsed;
+    }
+
+    public Metrics getMetrics() {
+        final long completedRuns = runs;
+        final long total = totalRunNanos;
+        final long elapsedSeconds = Math.max(1, (System.nanoTime() - startNanos) / 1_000_000_000L);
+        return new Metrics(completedRuns, samples, activities, lastRunNanos,
+                completedRuns > 0 ? total / completedRuns : 0, total / elapsedSeconds);
+    }
+
+    /**
+     * Frees the slots of players that were not online in the given run
+     */
+    private void releaseUnseen(final long run) {
+        final Iterator<Integer> iterator = slots.values().iterator();
+        while (iterator.hasNext()) {
+            final int slot = iterator.next();
+            if (seenRun[slot] != run) {
+                iterator.remove();
+                freeSlots[freeCount++] = slot;
+            }
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        final int slot = slotCount++;
+        if (slot == blockX.length) {
+            final int capacity = blockX.length * 2;
+            blockX = Arrays.copyOf(blockX, capacity);
+            blockY = Arrays.copyOf(blockY, capacity);
+            blockZ = Arrays.copyOf(blockZ, capacity);
+            yaw = Arrays.copyOf(yaw, capacity);
+            pitch = Arrays.copyOf(pitch, capacity);
+            seenRun = Arrays.copyOf(seenRun, capacity);
+            freeSlots = Arrays.copyOf(freeSlots, capacity);
+        }
+        return slot;
+    }
+}
@@ -3,19 +3,18 @@ package com.vogulev.online_monitor.tasks;
 import com.vogulev.online_monitor.DatabaseManager;
 
 /**
- * Periodic task for cleaning up old online snapshots
+ * Periodic task applying tiered retention to online history.
+ * Must be scheduled asynchronously, a run may take a while on large databases.
  */
 public class CleanupTask implements Runnable {
     private final DatabaseManager database;
-    private final int daysToKeep;
 
-    public CleanupTask(final DatabaseManager database, final int daysToKeep) {
+    public CleanupTask(final DatabaseManager database) {
         this.database = database;
-        this.daysToKeep = daysToKeep;
     }
 
     @Override
     public void run() {
-        database.cleanOldSnapshots(daysToKeep);
+        database.applyRetention();
     }
 }
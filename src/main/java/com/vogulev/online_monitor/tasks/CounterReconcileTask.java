@@ -0,0 +1,19 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.DatabaseManager;
+
+/**
+ * Periodic task reconciling the maintained server counters with the source tables
+ */
+public class CounterReconcileTask implements Runnable {
+    private final DatabaseManager database;
+
+    public CounterReconcileTask(final DatabaseManager database) {
+        this.database = database;
+    }
+
+    @Override
+    public void run() {
+        database.scheduleCounterReconcile();
+    }
+}
@@ -0,0 +1,111 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+import org.bukkit.Server;
+import org.bukkit.Statistic;
+import org.bukkit.entity.Player;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Periodic task sampling the built-in Bukkit statistics of online players instead of counting events.
+ * Each sample is compared with the previous one, kept in a primitive array by slot, and only the
+ * difference is added to the statistics buffer, which writes it in the next batched flush.
+ * A player's baseline is taken on join and a final sample on quit. Must run on the server thread.
+ */
+public class StatisticSamplerTask implements Runnable {
+
+    /**
+     * Sampled statistics and the player_stats counters they feed, in the same order
+     */
+    private static final Statistic[] STATISTICS = {Statistic.DEATHS, Statistic.MOB_KILLS, Statistic.PLAYER_KILLS};
+    private static final Counter[] COUNTERS = {Counter.DEATHS, Counter.MOB_KILLS, Counter.PLAYER_KILLS};
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final Server server;
+    private final DatabaseManager database;
+    private final Map<UUID, Integer> slots = new HashMap<>();
+
+    /**
+     * Last sampled values, STATISTICS.length entries per slot
+     */
+    private int[] lastValues = new int[INITIAL_CAPACITY * STATISTICS.length];
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int slotCount = 0;
+
+    public StatisticSamplerTask(final Server server, final DatabaseManager database) {
+        this.server = server;
+        this.database = database;
+    }
+
+    @Override
+    public void run() {
+        for (final Player player : server.getOnlinePlayers()) {
+            final Integer slot = slots.get(player.getUniqueId());
+            if (slot == null) {
+                startTracking(player);
+            } else {
+                sample(player, slot);
+            }
+        }
+    }
+
+    /**
+     * Takes the player's baseline; statistics gained before this are not counted
+     */
+    public void startTracking(final Player player) {
+        final int slot = slots.computeIfAbsent(player.getUniqueId(), id -> allocateSlot());
+        final int base = slot * STATISTICS.length;
+        for (int i = 0; i < STATISTICS.length; i++) {
+            lastValues[base + i] = player.getStatistic(STATISTICS[i]);
+        }
+    }
+
+    /**
+     * Takes the player's final sample and stops tracking
+     */
+    public void stopTracking(final Player player) {
+        final Integer slot = slots.remove(player.getUniqueId());
+        if (slot == null) {
+            return;
+        }
+        sample(player, slot);
+        freeSlots[freeCount++] = slot;
+    }
+
+    private void sample(final Player player, final int slot) {
+        final int base = slot * STATISTICS.length;
+        boolean changed = false;
+        for (int i = 0; i < STATISTICS.length; i++) {
+            final int value = player.getStatistic(STATISTICS[i]);
+            final int delta = value - lastValues[base + i];
+            // A negative delta means the statistic was reset, which only moves the baseline
+            if (delta > 0) {
+                database.addStatistic(player.getUniqueId(), player.getName(), COUNTERS[i], delta);
+                changed = true;
+            }
+            lastValues[base + i] = value;
+        }
+        if (changed) {
+            database.updateLastActivity(player.getUniqueId(), player.getName());
+        }
+    }
+
+    private int allocateSlot() {
+        if (freeCount > 0) {
+            return freeSlots[--freeCount];
+        }
+        final int slot = slotCount++;
+        if (slot == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+            lastValues = Arrays.copyOf(lastValues, freeSlots.length * STATISTICS.length);
+        }
+        return slot;
+    }
+}
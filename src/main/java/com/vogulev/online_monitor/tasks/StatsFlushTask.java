@@ -0,0 +1,19 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.DatabaseManager;
+
+/**
+ * Periodic task for writing buffered player statistics to the database
+ */
+public class StatsFlushTask implements Runnable {
+    private final DatabaseManager database;
+
+    public StatsFlushTask(final DatabaseManager database) {
+        this.database = database;
+    }
+
+    @Override
+    public void run() {
+        database.scheduleStatsFlush();
+    }
+}
@@ -0,0 +1,19 @@
+package com.vogulev.online_monitor.tasks;
+
+import com.vogulev.online_monitor.DatabaseManager;
+
+/**
+ * Periodic task recomputing the shared server statistics snapshot (scheduled asynchronously)
+ */
+public class StatsSnapshotTask implements Runnable {
+    private final DatabaseManager database;
+
+    public StatsSnapshotTask(final DatabaseManager database) {
+        this.database = database;
+    }
+
+    @Override
+    public void run() {
+        database.refreshStatsSnapshot();
+    }
+}
@@ -1,11 +1,14 @@
 package com.vogulev.online_monitor.ui;
 
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.OnlineRoster;
+import com.vogulev.online_monitor.database.ServerStatsSnapshot;
 import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
@@ -18,23 +21,107 @@ import static com.vogulev.online_monitor.i18n.LocalizationManager.getMessage;
 
 
 /**
- * Manages scoreboard for displaying online statistics
+ * Manages scoreboard for displaying online statistics.
+ * Line keys are colorized once; the last sent value of each line is remembered, and only lines
+ * whose value changed are sent, so an update without changes sends no packets.
+ * In shared mode all players see one scoreboard that is updated once per cycle. Per-player
+ * scoreboards are used only when a player-specific line (own session time) is enabled.
  */
 public class ScoreboardServerStatisticsManager
 {
+    private static final int LINE_AVG = 0;
+
+    private static final int LINE_ONLINE = 1;
+
+    private static final int LINE_RECORD = 2;
+
+    private static final int LINE_UNIQUE = 3;
+
+    private static final int SERVER_LINES = 4;
+
+    /**
+     * Player's own session time, only on per-player scoreboards
+     */
+    private static final int LINE_SESSION = 4;
+
+    /**
+     * Value that never matches a real score, forces the first update of a line
+     */
+    private static final int NOT_SENT = Integer.MIN_VALUE;
+
+    /**
+     * Scoreboard render counters since start
+     * @param cycles Update cycles
+     * @param scoreUpdates Score changes sent to players
+     * @param skippedUpdates Score changes skipped because the value was unchanged
+     * @param shared Whether one scoreboard is shared by all players
+     */
+    public record RenderMetrics(long cycles, long scoreUpdates, long skippedUpdates, boolean shared)
+    {
+    }
+
     private final DatabaseManager database;
 
+    /**
+     * Online players, for the session line
+     */
+    private final OnlineRoster roster;
+
+    /**
+     * Colorized line keys, in LINE_* order
+     */
+    private final String[] lineKeys;
+
+    private final String title;
+
     private final Map<UUID, Boolean> playerScoreboardEnabled = new HashMap<>();
 
     private final Map<UUID, Scoreboard> playerScoreboards = new HashMap<>();
 
+    private final Map<UUID, int[]> lastSentValues = new HashMap<>();
+
     private final boolean globallyEnabled;
 
+    private final boolean shared;
+
+    private Scoreboard sharedScoreboard;
+
+    private final int[] sharedLastSent;
+
+    // Written on the server thread only
+    private volatile long cycles = 0;
+
+    private volatile long scoreUpdates = 0;
+
+    private volatile long skippedUpdates = 0;
+
 
-    public ScoreboardServerStatisticsManager(final DatabaseManager database, final boolean enabled)
+    /**
+     * @param enabled Whether the scoreboard is enabled at all
+     * @param shared Use one scoreboard for all players when no player-specific line is shown
+     * @param showSessionTime Show the player's own session time (requires per-player scoreboards)
+     * @param roster Online players
+     */
+    public ScoreboardServerStatisticsManager(final DatabaseManager database, final boolean enabled, final boolean shared,
+        final boolean showSessionTime, final OnlineRoster roster)
     {
         this.database = database;
         this.globallyEnabled = enabled;
+        this.shared = shared && !showSessionTime;
+        this.roster = roster;
+        this.title = colorize(getMessage("scoreboard.title"));
+
+        final String[] keys = new String[showSessionTime ? SERVER_LINES + 1 : SERVER_LINES];
+        keys[LINE_AVG] = colorize(getMessage("scoreboard.avg"));
+        keys[LINE_ONLINE] = colorize(getMessage("scoreboard.online"));
+        keys[LINE_RECORD] = colorize(getMessage("scoreboard.record"));
+        keys[LINE_UNIQUE] = colorize(getMessage("scoreboard.unique"));
+        if (showSessionTime)
+        {
+            keys[LINE_SESSION] = colorize(getMessage("scoreboard.session"));
+        }
+        this.lineKeys = keys;
+        this.sharedLastSent = newLineValues();
     }
 
 
@@ -52,31 +139,92 @@ public class ScoreboardServerStatisticsManager
             return;
         }
 
+        if (shared)
+        {
+            if (sharedScoreboard == null)
+            {
+                sharedScoreboard = createScoreboard();
+            }
+            player.setScoreboard(sharedScoreboard);
+        }
+        else
+        {
+            final Scoreboard scoreboard = createScoreboard();
+            playerScoreboards.put(playerId, scoreboard);
+            lastSentValues.put(playerId, newLineValues());
+            player.setScoreboard(scoreboard);
+        }
+
+        playerScoreboardEnabled.put(playerId, true);
+    }
+
+
+    private Scoreboard createScoreboard()
+    {
         final ScoreboardManager manager = Bukkit.getScoreboardManager();
 
         final Scoreboard scoreboard = manager.getNewScoreboard();
-        final Objective objective = scoreboard.registerNewObjective("online_stats", "dummy",
-            ChatColor.translateAlternateColorCodes('&', getMessage("scoreboard.title")));
+        final Objective objective = scoreboard.registerNewObjective("online_stats", "dummy", title);
         objective.setDisplaySlot(DisplaySlot.SIDEBAR);
-        objective.setDisplayName(ChatColor.translateAlternateColorCodes('&', getMessage("scoreboard.title")));
-
-        playerScoreboards.put(playerId, scoreboard);
-        player.setScoreboard(scoreboard);
-
-        playerScoreboardEnabled.put(playerId, true);
+        return scoreboard;
     }
 
 
     public void updateAllScoreboards()
     {
-        for (final Player player : Bukkit.getOnlinePlayers())
+        final int[] values = currentLineValues();
+        if (shared)
+        {
+            // Players online before the plugin was enabled never joined; attach the board once per player
+            for (final Player player : Bukkit.getOnlinePlayers())
+            {
+                if (!playerScoreboardEnabled.containsKey(player.getUniqueId()))
+                {
+                    showScoreboard(player);
+                }
+            }
+            renderShared(values);
+        }
+        else
         {
-            updateScoreboard(player);
+            for (final Player player : Bukkit.getOnlinePlayers())
+            {
+                updateScoreboard(player, values);
+            }
         }
+        cycles++;
     }
 
 
     public void updateScoreboard(final Player player)
+    {
+        final int[] values = currentLineValues();
+        if (shared)
+        {
+            renderShared(values);
+        }
+        else
+        {
+            updateScoreboard(player, values);
+        }
+    }
+
+
+    private void renderShared(final int[] values)
+    {
+        if (!globallyEnabled || sharedScoreboard == null)
+        {
+            return;
+        }
+        final Objective objective = sharedScoreboard.getObjective("online_stats");
+        if (objective != null)
+        {
+            render(objective, sharedLastSent, values);
+        }
+    }
+
+
+    private void updateScoreboard(final Player player, final int[] values)
     {
         if (!globallyEnabled)
         {
@@ -108,21 +256,60 @@ public class ScoreboardServerStatisticsManager
             return;
         }
 
-        for (final String entry : scoreboard.getEntries())
+        if (lineKeys.length > SERVER_LINES)
+        {
+            final OnlineRoster.Entry session = roster.get(playerId);
+            values[LINE_SESSION] = session != null ? (int) (session.sessionMillis(System.currentTimeMillis()) / (1000 * 60)) : 0;
+        }
+        render(objective, lastSentValues.computeIfAbsent(playerId, id -> newLineValues()), values);
+    }
+
+
+    /**
+     * Send the lines whose value differs from the last sent one
+     */
+    private void render(final Objective objective, final int[] lastSent, final int[] values)
+    {
+        for (int line = 0; line < lineKeys.length; line++)
         {
-            scoreboard.resetScores(entry);
+            if (lastSent[line] == values[line])
+            {
+                skippedUpdates++;
+                continue;
+            }
+            objective.getScore(lineKeys[line]).setScore(values[line]);
+            lastSent[line] = values[line];
+            scoreUpdates++;
         }
+    }
 
-        final int currentOnline = Bukkit.getOnlinePlayers().size();
-        final int maxOnline = database.getMaxOnline();
-        final int uniquePlayers = database.getUniquePlayersCount();
-        final long totalPlaytime = database.getTotalPlaytime();
-        final int averageMinutes = uniquePlayers > 0 ? (int) ((totalPlaytime / uniquePlayers) / (1000 * 60)) : 0;
 
-        objective.getScore(colorize(getMessage("scoreboard.avg"))).setScore(averageMinutes);
-        objective.getScore(colorize(getMessage("scoreboard.online"))).setScore(currentOnline);
-        objective.getScore(colorize(getMessage("scoreboard.record"))).setScore(maxOnline);
-        objective.getScore(colorize(getMessage("scoreboard.unique"))).setScore(uniquePlayers);
+    /**
+     * Line values shared by all players, in LINE_* order; the session line is filled per player
+     */
+    private int[] currentLineValues()
+    {
+        final ServerStatsSnapshot stats = database.getStatsSnapshot();
+        final int[] values = new int[lineKeys.length];
+        values[LINE_AVG] = (int) stats.averagePlaytimeMinutes();
+        values[LINE_ONLINE] = Bukkit.getOnlinePlayers().size();
+        values[LINE_RECORD] = stats.maxOnline();
+        values[LINE_UNIQUE] = stats.uniquePlayers();
+        return values;
+    }
+
+
+    private int[] newLineValues()
+    {
+        final int[] values = new int[lineKeys.length];
+        Arrays.fill(values, NOT_SENT);
+        return values;
+    }
+
+
+    public RenderMetrics getRenderMetrics()
+    {
+        return new RenderMetrics(cycles, scoreUpdates, skippedUpdates, shared);
     }
 
 
@@ -141,6 +328,7 @@ public class ScoreboardServerStatisticsManager
         playerScoreboardEnabled.put(playerId, false);
 
         playerScoreboards.remove(playerId);
+        lastSentValues.remove(playerId);
         player.setScoreboard(Bukkit.getScoreboardManager().getMainScoreboard());
     }
 
@@ -167,6 +355,7 @@ public class ScoreboardServerStatisticsManager
     {
         final UUID playerId = player.getUniqueId();
         playerScoreboards.remove(playerId);
+        lastSentValues.remove(playerId);
     }
 
 
@@ -180,4 +369,10 @@ public class ScoreboardServerStatisticsManager
     {
         return globallyEnabled;
     }
+
+
+    public boolean isShared()
+    {
+        return shared;
+    }
 }
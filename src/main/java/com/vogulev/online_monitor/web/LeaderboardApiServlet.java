@@ -0,0 +1,124 @@
+package com.vogulev.online_monitor.web;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.database.LeaderboardEngine.Ranking;
+import com.vogulev.online_monitor.database.LeaderboardMetric;
+import com.vogulev.online_monitor.database.LeaderboardPeriod;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * API endpoint for the in-memory leaderboards
+ * GET /api/leaderboard?metric=joins&offset=0&limit=10 - a page of a leaderboard
+ * GET /api/leaderboard?metric=playtime&player=Notch - additionally the position of a player
+ * GET /api/leaderboard?metric=playtime&period=week - the last 7 days (day, week or month; top 100 only)
+ * Metrics: joins, playtime, active, deaths, mobkills, pvp, broken, placed, messages; times are in milliseconds
+ */
+public class LeaderboardApiServlet extends HttpServlet {
+    private static final int MAX_LIMIT = 100;
+
+    private final DatabaseManager database;
+    private final Gson gson;
+
+    public LeaderboardApiServlet(final DatabaseManager database) {
+        this.database = database;
+        this.gson = new GsonBuilder().setPrettyPrinting().create();
+    }
+
+    @Override
+    protected void doGet(final HttpServletRequest req, final HttpServletResponse resp) throws IOException {
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        resp.setHeader("Access-Control-Allow-Origin", "*");
+
+        try {
+            final String metricParam = req.getParameter("metric");
+            final LeaderboardMetric metric = metricParam == null
+                    ? LeaderboardMetric.JOINS
+                    : LeaderboardMetric.fromString(metricParam).orElse(null);
+            if (metric == null) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                final Map<String, String> error = new HashMap<>();
+                error.put("error", "Invalid metric parameter. Use: " + String.join(", ",
+                        Stream.of(LeaderboardMetric.values()).map(LeaderboardMetric::getName).toList()));
+                resp.getWriter().write(gson.toJson(error));
+                return;
+            }
+
+            final String periodParam = req.getParameter("period");
+            final LeaderboardPeriod period = periodParam == null || periodParam.equalsIgnoreCase("all")
+                    ? null
+                    : LeaderboardPeriod.fromString(periodParam).orElse(null);
+            if (period == null && periodParam != null && !periodParam.equalsIgnoreCase("all")) {
+                resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                final Map<String, String> error = new HashMap<>();
+                error.put("error", "Invalid period parameter. Use: all, " + String.join(", ",
+                        Stream.of(LeaderboardPeriod.values()).map(LeaderboardPeriod::getName).toList()));
+                resp.getWriter().write(gson.toJson(error));
+                return;
+            }
+
+            final int offset = Math.max(0, getIntParam(req, "offset", 0));
+            final int limit = Math.max(1, Math.min(getIntParam(req, "limit", 10), MAX_LIMIT));
+
+            final Map<String, Object> data = new LinkedHashMap<>();
+            data.put("metric", metric.getName());
+            data.put("period", period != null ? period.getName() : "all");
+            data.put("total", period != null
+                    ? database.getPeriodLeaderboardSize(metric, period)
+                    : database.getLeaderboardSize(metric));
+            data.put("offset", offset);
+            data.put("entries", toJson(period != null
+                    ? database.getPeriodLeaderboard(metric, period, offset, limit)
+                    : database.getLeaderboard(metric, offset, limit)));
+
+            final String playerName = req.getParameter("player");
+            if (playerName != null && !playerName.isEmpty()) {
+                final Ranking ranking = period != null
+                        ? database.getPeriodLeaderboardRank(metric, period, playerName)
+                        : database.getLeaderboardRank(metric, playerName);
+                data.put("player", ranking != null ? toJson(ranking) : null);
+            }
+            resp.getWriter().write(gson.toJson(data));
+        } catch (final Exception e) {
+            resp.setStatus(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+            final Map<String, String> error = new HashMap<>();
+            error.put("error", e.getMessage());
+            resp.getWriter().write(gson.toJson(error));
+        }
+    }
+
+    private List<Map<String, Object>> toJson(final List<Ranking> rankings) {
+        return rankings.stream().map(this::toJson).toList();
+    }
+
+    private Map<String, Object> toJson(final Ranking ranking) {
+        final Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("rank", ranking.rank());
+        entry.put("name", ranking.playerName());
+        entry.put("value", ranking.score());
+        return entry;
+    }
+
+    private int getIntParam(final HttpServletRequest req, final String paramName, final int defaultValue) {
+        final String param = req.getParameter(paramName);
+        if (param != null) {
+            try {
+                return Integer.parseInt(param);
+            } catch (final NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+        return defaultValue;
+    }
+}
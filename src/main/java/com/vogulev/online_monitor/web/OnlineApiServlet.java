@@ -4,11 +4,10 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.vogulev.online_monitor.DatabaseManager;
 import com.vogulev.online_monitor.OnlineMonitorPlugin;
+import com.vogulev.online_monitor.OnlineRoster;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
-import org.bukkit.entity.Player;
-import org.jetbrains.annotations.NotNull;
 
 import java.io.IOException;
 import java.util.ArrayList;
@@ -19,15 +18,18 @@ import java.util.Map;
 /**
  * API endpoint for retrieving current online information
  * GET /api/online
+ * Served from the online roster, so Jetty threads never call the Bukkit API.
  */
 public class OnlineApiServlet extends HttpServlet {
     private final DatabaseManager database;
-    private final OnlineMonitorPlugin plugin;
+    private final OnlineRoster roster;
+    private final int maxPlayers;
     private final Gson gson;
 
     public OnlineApiServlet(final DatabaseManager database, final OnlineMonitorPlugin plugin) {
         this.database = database;
-        this.plugin = plugin;
+        this.roster = plugin.getOnlineRoster();
+        this.maxPlayers = plugin.getServer().getMaxPlayers();
         this.gson = new GsonBuilder().setPrettyPrinting().create();
     }
 
@@ -53,15 +55,18 @@ public class OnlineApiServlet extends HttpServlet {
     {
         final Map<String, Object> data = new HashMap<>();
 
-        final int currentOnline = plugin.getServer().getOnlinePlayers().size();
-        data.put("current", currentOnline);
-        data.put("max", plugin.getServer().getMaxPlayers());
-        data.put("record", database.getMaxOnline());
-
         final List<String> players = new ArrayList<>();
-        for (final Player player : plugin.getServer().getOnlinePlayers()) {
-            players.add(player.getName());
+        int afk = 0;
+        for (final OnlineRoster.Entry entry : roster.entries()) {
+            players.add(entry.name());
+            if (entry.afk()) {
+                afk++;
+            }
         }
+        data.put("current", players.size());
+        data.put("afk", afk);
+        data.put("max", maxPlayers);
+        data.put("record", database.getStatsSnapshot().maxOnline());
         data.put("players", players);
         return data;
     }
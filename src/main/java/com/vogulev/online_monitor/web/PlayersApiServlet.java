@@ -3,6 +3,7 @@ package com.vogulev.online_monitor.web;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.vogulev.online_monitor.DatabaseManager;
+import com.vogulev.online_monitor.database.PlayerProfile;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -38,16 +39,28 @@ public class PlayersApiServlet extends HttpServlet {
             final String playerName = req.getParameter("name");
 
             if (playerName != null && !playerName.isEmpty()) {
+                final PlayerProfile profile = database.getPlayerProfile(playerName);
+                if (profile == null) {
+                    resp.setStatus(HttpServletResponse.SC_NOT_FOUND);
+                    final Map<String, String> error = new HashMap<>();
+                    error.put("error", "Player not found: " + playerName);
+                    resp.getWriter().write(gson.toJson(error));
+                    return;
+                }
                 final Map<String, Object> playerStats = new HashMap<>();
-                playerStats.put("name", playerName);
-                playerStats.put("joinCount", database.getPlayerJoinCount(playerName));
-                playerStats.put("totalPlaytime", database.getPlayerTotalPlaytime(playerName));
-                playerStats.put("deaths", database.getPlayerDeaths(playerName));
-                playerStats.put("mobKills", database.getPlayerMobKills(playerName));
-                playerStats.put("playerKills", database.getPlayerPlayerKills(playerName));
-                playerStats.put("blocksBroken", database.getPlayerBlocksBroken(playerName));
-                playerStats.put("blocksPlaced", database.getPlayerBlocksPlaced(playerName));
-                playerStats.put("messagesSent", database.getPlayerMessagesSent(playerName));
+                playerStats.put("name", profile.name());
+                playerStats.put("joinCount", profile.joins());
+                playerStats.put("totalPlaytime", profile.playtime());
+                playerStats.put("activeTime", profile.activeTime());
+                playerStats.put("afkTime", profile.afkTime());
+                playerStats.put("firstJoin", profile.firstJoin());
+                playerStats.put("lastJoin", profile.lastJoin());
+                playerStats.put("deaths", profile.deaths());
+                playerStats.put("mobKills", profile.mobKills());
+                playerStats.put("playerKills", profile.playerKills());
+                playerStats.put("blocksBroken", profile.blocksBroken());
+                playerStats.put("blocksPlaced", profile.blocksPlaced());
+                playerStats.put("messagesSent", profile.messagesSent());
                 resp.getWriter().write(gson.toJson(playerStats));
             } else {
                 final String limitParam = req.getParameter("limit");
@@ -18,6 +18,7 @@ import java.util.Map;
  * GET /api/snapshots?type=daily&days=30 - daily averages
  * GET /api/snapshots?type=weekday&weeks=4 - averages by weekdays
  * GET /api/snapshots?type=peak&days=7 - peak hours
+ * GET /api/snapshots?type=history&days=7 - online over time, resolution (raw, hourly, daily) is chosen by range
  */
 public class SnapshotsApiServlet extends HttpServlet {
     private final DatabaseManager database;
@@ -58,10 +59,14 @@ public class SnapshotsApiServlet extends HttpServlet {
                     final int peakDays = getIntParam(req, "days", 7);
                     data = database.getPeakHours(peakDays);
                     break;
+                case "history":
+                    final int historyDays = getIntParam(req, "days", 7);
+                    data = database.getOnlineHistory(historyDays);
+                    break;
                 default:
                     resp.setStatus(HttpServletResponse.SC_BAD_REQUEST);
                     final Map<String, String> error = new HashMap<>();
-                    error.put("error", "Invalid type parameter. Use: hourly, daily, weekday, or peak");
+                    error.put("error", "Invalid type parameter. Use: hourly, daily, weekday, peak, or history");
                     resp.getWriter().write(gson.toJson(error));
                     return;
             }
@@ -4,6 +4,7 @@ import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.vogulev.online_monitor.DatabaseManager;
 import com.vogulev.online_monitor.OnlineMonitorPlugin;
+import com.vogulev.online_monitor.database.ServerStatsSnapshot;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -35,14 +36,32 @@ public class StatsApiServlet extends HttpServlet {
 
         try {
             final Map<String, Object> stats = new HashMap<>();
-            stats.put("maxOnline", database.getMaxOnline());
-            stats.put("uniquePlayers", database.getUniquePlayersCount());
-            stats.put("totalSessions", database.getTotalSessions());
-            stats.put("activeSessions", database.getActiveSessions());
-            stats.put("totalPlaytime", database.getTotalPlaytime());
-
-            final Map<String, Integer> topPlayers = database.getTopPlayersByJoins(10);
-            stats.put("topPlayers", topPlayers);
+            final ServerStatsSnapshot snapshot = database.getStatsSnapshot();
+            stats.put("maxOnline", snapshot.maxOnline());
+            stats.put("uniquePlayers", snapshot.uniquePlayers());
+            stats.put("totalSessions", snapshot.totalSessions());
+            stats.put("activeSessions", snapshot.activeSessions());
+            stats.put("totalPlaytime", snapshot.totalPlaytime());
+            stats.put("totalActiveTime", snapshot.totalActiveTime());
+            stats.put("averagePlaytimeMinutes", snapshot.averagePlaytimeMinutes());
+            stats.put("averageActiveMinutes", snapshot.averageActiveMinutes());
+            stats.put("topPlayers", snapshot.topPlayers());
+            stats.put("topActivePlayers", snapshot.topActivePlayers());
+            stats.put("refreshedAt", snapshot.refreshedAt());
+            stats.put("databaseQueue", database.getExecutorMetrics());
+            stats.put("retention", database.getRetentionMetrics());
+            if (plugin.getAFKManager() != null) {
+                stats.put("afkPlayers", plugin.getAFKManager().getAFKCount());
+            }
+            if (plugin.getActivitySampler() != null) {
+                stats.put("activitySampler", plugin.getActivitySampler().getMetrics());
+            }
+            if (plugin.getMoveActivityListener() != null && plugin.getMoveActivityListener().isTimed()) {
+                stats.put("activityListener", plugin.getMoveActivityListener().getMetrics());
+            }
+            if (plugin.getScoreboardManager() != null) {
+                stats.put("scoreboard", plugin.getScoreboardManager().getRenderMetrics());
+            }
 
             resp.getWriter().write(gson.toJson(stats));
         } catch (final Exception e) {
@@ -53,6 +53,7 @@ public class WebServer {
             context.addServlet(new ServletHolder(new OnlineApiServlet(database, plugin)), "/api/online");
             context.addServlet(new ServletHolder(new PlayersApiServlet(database)), "/api/players");
             context.addServlet(new ServletHolder(new SnapshotsApiServlet(database)), "/api/snapshots");
+            context.addServlet(new ServletHolder(new LeaderboardApiServlet(database)), "/api/leaderboard");
             context.addServlet(new ServletHolder(new DashboardServlet()), "/*");
 
             server.start();
@@ -0,0 +1,8 @@
+-- OnlineMonitor Plugin - In-Memory Leaderboards
+-- Version: 10.0
+-- Description: Leaderboards are kept in memory and loaded from player_stats once at startup, so the
+--              indexes that served ORDER BY ... LIMIT leaderboard queries are no longer read.
+--              Dropping them removes two index updates from every player_stats write.
+
+DROP INDEX IF EXISTS idx_player_stats_joins;
+DROP INDEX IF EXISTS idx_player_stats_active_time;
@@ -0,0 +1,25 @@
+-- OnlineMonitor Plugin - Player Daily Statistics
+-- Version: 11.0
+-- Description: Per-player, per-day statistics buckets for daily, weekly and monthly leaderboards.
+--              Maintained in the same transactions as player_stats, so a period leaderboard reads
+--              at most (days in the period) x (players active in it) rows instead of the sessions.
+
+-- One row per player and local day (in the configured timezone), day is 'YYYY-MM-DD'
+CREATE TABLE IF NOT EXISTS player_daily_stats (
+    day VARCHAR(10) NOT NULL,
+    player_id INTEGER NOT NULL,
+    joins INTEGER NOT NULL DEFAULT 0,
+    playtime BIGINT NOT NULL DEFAULT 0,
+    active_time BIGINT NOT NULL DEFAULT 0,
+    deaths INTEGER NOT NULL DEFAULT 0,
+    mob_kills INTEGER NOT NULL DEFAULT 0,
+    player_kills INTEGER NOT NULL DEFAULT 0,
+    blocks_broken INTEGER NOT NULL DEFAULT 0,
+    blocks_placed INTEGER NOT NULL DEFAULT 0,
+    messages_sent INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (day, player_id),
+    FOREIGN KEY (player_id) REFERENCES players(id)
+);
+
+-- Buckets depend on the configured timezone; joins and playtime of recent sessions are backfilled
+-- by the plugin on first start. Extended statistics have no history per day and start empty.
@@ -0,0 +1,10 @@
+-- OnlineMonitor Plugin - Open Session Registry
+-- Version: 3.0
+-- Description: Stores the player's UUID on sessions and indexes open sessions,
+--              so the in-memory open-session registry can be rebuilt with one indexed query
+
+-- Owner of the session, used as the registry key
+ALTER TABLE player_sessions ADD COLUMN player_uuid VARCHAR(36);
+
+-- Partial index over sessions that are not closed yet
+CREATE INDEX IF NOT EXISTS idx_sessions_open ON player_sessions(quit_time) WHERE quit_time IS NULL;
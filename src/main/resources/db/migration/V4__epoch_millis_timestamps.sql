@@ -0,0 +1,28 @@
+-- OnlineMonitor Plugin - Epoch Timestamps
+-- Version: 4.0
+-- Description: Converts all time columns from 'YYYY-MM-DD HH:MM:SS' text (UTC) to UTC epoch milliseconds.
+--              Times are bound from Java from now on; time zones are applied only when querying.
+
+UPDATE online_snapshots
+SET timestamp = CAST(strftime('%s', timestamp) AS INTEGER) * 1000
+WHERE typeof(timestamp) = 'text';
+
+UPDATE player_sessions
+SET join_time = CAST(strftime('%s', join_time) AS INTEGER) * 1000
+WHERE typeof(join_time) = 'text';
+
+UPDATE player_sessions
+SET quit_time = CAST(strftime('%s', quit_time) AS INTEGER) * 1000
+WHERE typeof(quit_time) = 'text';
+
+UPDATE player_stats
+SET first_join = CAST(strftime('%s', first_join) AS INTEGER) * 1000
+WHERE typeof(first_join) = 'text';
+
+UPDATE player_stats
+SET last_join = CAST(strftime('%s', last_join) AS INTEGER) * 1000
+WHERE typeof(last_join) = 'text';
+
+UPDATE player_stats
+SET last_activity = CAST(strftime('%s', last_activity) AS INTEGER) * 1000
+WHERE typeof(last_activity) = 'text';
@@ -0,0 +1,16 @@
+-- OnlineMonitor Plugin - Covering Indexes
+-- Version: 5.0
+-- Description: Indexes for every frequent repository query, so none of them scans a whole table.
+--              Query plans are checked at startup by QueryPlanVerifier.
+
+-- Top players by joins: read in index order and stop after LIMIT rows, no sort of player_stats
+CREATE INDEX IF NOT EXISTS idx_player_stats_joins ON player_stats(total_joins DESC, player_name);
+
+-- Sessions of a player (foreign key to player_stats)
+CREATE INDEX IF NOT EXISTS idx_sessions_player ON player_sessions(player_name);
+
+-- Analytics range queries read only this index, the table itself is never touched
+CREATE INDEX IF NOT EXISTS idx_snapshots_time_count ON online_snapshots(timestamp, online_count);
+
+-- Superseded by idx_snapshots_time_count, which has the same leading column
+DROP INDEX IF EXISTS idx_snapshots_timestamp;
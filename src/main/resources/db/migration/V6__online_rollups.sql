@@ -0,0 +1,30 @@
+-- OnlineMonitor Plugin - Online Rollups
+-- Version: 6.0
+-- Description: Hourly and daily aggregates of online snapshots, maintained as snapshots are recorded.
+--              Analytics read these tables, so their cost depends on the number of buckets in the
+--              requested range instead of the number of raw snapshots.
+
+-- One row per UTC hour; hour_start is the start of the hour in epoch milliseconds
+CREATE TABLE IF NOT EXISTS online_hourly (
+    hour_start INTEGER PRIMARY KEY,
+    sample_count INTEGER NOT NULL,
+    online_sum INTEGER NOT NULL,
+    online_min INTEGER NOT NULL,
+    online_max INTEGER NOT NULL
+);
+
+-- One row per local day (in the configured timezone), day is 'YYYY-MM-DD'
+CREATE TABLE IF NOT EXISTS online_daily (
+    day VARCHAR(10) PRIMARY KEY,
+    sample_count INTEGER NOT NULL,
+    online_sum INTEGER NOT NULL,
+    online_min INTEGER NOT NULL,
+    online_max INTEGER NOT NULL
+);
+
+-- Backfill hourly rollups from existing snapshots.
+-- Daily rollups depend on the configured timezone and are backfilled by the plugin on first start.
+INSERT INTO online_hourly (hour_start, sample_count, online_sum, online_min, online_max)
+SELECT (timestamp / 3600000) * 3600000, COUNT(*), SUM(online_count), MIN(online_count), MAX(online_count)
+FROM online_snapshots
+GROUP BY timestamp / 3600000;
@@ -0,0 +1,22 @@
+-- OnlineMonitor Plugin - Server Counters
+-- Version: 7.0
+-- Description: Maintained server-wide totals, so reading them no longer aggregates whole tables.
+--              Updated together with session writes and reconciled periodically against the source tables.
+
+CREATE TABLE IF NOT EXISTS server_counters (
+    name VARCHAR(32) PRIMARY KEY,
+    value BIGINT NOT NULL DEFAULT 0
+);
+
+-- Seed counters from existing data
+INSERT INTO server_counters (name, value)
+SELECT 'total_playtime', COALESCE(SUM(total_playtime), 0) FROM player_stats
+WHERE NOT EXISTS (SELECT 1 FROM server_counters WHERE name = 'total_playtime');
+
+INSERT INTO server_counters (name, value)
+SELECT 'total_sessions', COUNT(*) FROM player_sessions
+WHERE NOT EXISTS (SELECT 1 FROM server_counters WHERE name = 'total_sessions');
+
+INSERT INTO server_counters (name, value)
+SELECT 'active_sessions', COUNT(*) FROM player_sessions WHERE quit_time IS NULL
+AND NOT EXISTS (SELECT 1 FROM server_counters WHERE name = 'active_sessions');
@@ -0,0 +1,21 @@
+-- OnlineMonitor Plugin - Active and AFK Time
+-- Version: 8.0
+-- Description: Splits session playtime into active and AFK milliseconds, so playtime metrics and
+--              leaderboards are not dominated by idle players.
+--              Sessions recorded before this version had no AFK tracking and count as fully active.
+
+ALTER TABLE player_sessions ADD COLUMN active_time BIGINT DEFAULT 0;
+ALTER TABLE player_sessions ADD COLUMN afk_time BIGINT DEFAULT 0;
+
+ALTER TABLE player_stats ADD COLUMN total_active_time BIGINT DEFAULT 0;
+ALTER TABLE player_stats ADD COLUMN total_afk_time BIGINT DEFAULT 0;
+
+UPDATE player_sessions SET active_time = session_duration WHERE quit_time IS NOT NULL;
+UPDATE player_stats SET total_active_time = total_playtime;
+
+-- Top players by active time: read in index order and stop after LIMIT rows
+CREATE INDEX IF NOT EXISTS idx_player_stats_active_time ON player_stats(total_active_time DESC, player_name);
+
+INSERT INTO server_counters (name, value)
+SELECT 'total_active_time', COALESCE(SUM(total_active_time), 0) FROM player_stats
+WHERE NOT EXISTS (SELECT 1 FROM server_counters WHERE name = 'total_active_time');
@@ -0,0 +1,117 @@
+-- OnlineMonitor Plugin - Player Ids
+-- Version: 9.0
+-- Description: Adds a players table with an integer id per player UUID and rewrites player_stats and
+--              player_sessions to reference it instead of the player name, so a name change no longer
+--              splits a player's history and indexes hold integers instead of strings.
+--              Names recorded before UUIDs were stored (V3) become players without a UUID; such a player
+--              gets the UUID on the next join under that name.
+--              Statistics of names that resolve to the same player are merged.
+
+CREATE TABLE IF NOT EXISTS players (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    uuid VARCHAR(36) UNIQUE,
+    name VARCHAR(16) NOT NULL
+);
+
+-- Lookups by name (commands, web API)
+CREATE INDEX IF NOT EXISTS idx_players_name ON players(name);
+
+-- One player per known UUID, named after its latest session
+INSERT INTO players (uuid, name)
+SELECT s.player_uuid, s.player_name
+FROM player_sessions s
+WHERE s.player_uuid IS NOT NULL
+  AND s.id = (SELECT MAX(id) FROM player_sessions WHERE player_uuid = s.player_uuid)
+ORDER BY s.id;
+
+-- Every recorded name maps to the player that used it last
+CREATE TEMP TABLE player_name_map (
+    name VARCHAR(16) PRIMARY KEY,
+    player_id INTEGER NOT NULL
+);
+
+INSERT INTO player_name_map (name, player_id)
+SELECT s.player_name, p.id
+FROM player_sessions s
+JOIN players p ON p.uuid = s.player_uuid
+WHERE s.id = (SELECT MAX(id) FROM player_sessions WHERE player_name = s.player_name AND player_uuid IS NOT NULL);
+
+INSERT INTO players (uuid, name)
+SELECT NULL, n.player_name
+FROM (SELECT player_name FROM player_stats UNION SELECT player_name FROM player_sessions) n
+WHERE n.player_name NOT IN (SELECT name FROM player_name_map)
+ORDER BY n.player_name;
+
+INSERT INTO player_name_map (name, player_id)
+SELECT name, id FROM players WHERE uuid IS NULL;
+
+CREATE TABLE player_stats_new (
+    player_id INTEGER PRIMARY KEY,
+    total_joins INTEGER DEFAULT 0,
+    total_playtime BIGINT DEFAULT 0,
+    total_active_time BIGINT DEFAULT 0,
+    total_afk_time BIGINT DEFAULT 0,
+    first_join TIMESTAMP,
+    last_join TIMESTAMP,
+    last_activity TIMESTAMP,
+    deaths INTEGER DEFAULT 0,
+    mob_kills INTEGER DEFAULT 0,
+    player_kills INTEGER DEFAULT 0,
+    blocks_broken INTEGER DEFAULT 0,
+    blocks_placed INTEGER DEFAULT 0,
+    messages_sent INTEGER DEFAULT 0,
+    FOREIGN KEY (player_id) REFERENCES players(id)
+);
+
+INSERT INTO player_stats_new (player_id, total_joins, total_playtime, total_active_time, total_afk_time,
+                              first_join, last_join, last_activity, deaths, mob_kills, player_kills,
+                              blocks_broken, blocks_placed, messages_sent)
+SELECT m.player_id,
+       SUM(COALESCE(s.total_joins, 0)),
+       SUM(COALESCE(s.total_playtime, 0)),
+       SUM(COALESCE(s.total_active_time, 0)),
+       SUM(COALESCE(s.total_afk_time, 0)),
+       MIN(s.first_join),
+       MAX(s.last_join),
+       MAX(s.last_activity),
+       SUM(COALESCE(s.deaths, 0)),
+       SUM(COALESCE(s.mob_kills, 0)),
+       SUM(COALESCE(s.player_kills, 0)),
+       SUM(COALESCE(s.blocks_broken, 0)),
+       SUM(COALESCE(s.blocks_placed, 0)),
+       SUM(COALESCE(s.messages_sent, 0))
+FROM player_stats s
+JOIN player_name_map m ON m.name = s.player_name
+GROUP BY m.player_id;
+
+CREATE TABLE player_sessions_new (
+    id INTEGER PRIMARY KEY AUTOINCREMENT,
+    player_id INTEGER NOT NULL,
+    join_time TIMESTAMP NOT NULL,
+    quit_time TIMESTAMP,
+    session_duration BIGINT DEFAULT 0,
+    active_time BIGINT DEFAULT 0,
+    afk_time BIGINT DEFAULT 0,
+    FOREIGN KEY (player_id) REFERENCES players(id)
+);
+
+-- Session ids are kept, so the AUTOINCREMENT sequence continues after the old table's
+INSERT INTO player_sessions_new (id, player_id, join_time, quit_time, session_duration, active_time, afk_time)
+SELECT s.id, COALESCE(p.id, m.player_id), s.join_time, s.quit_time, s.session_duration, s.active_time, s.afk_time
+FROM player_sessions s
+LEFT JOIN players p ON p.uuid = s.player_uuid
+LEFT JOIN player_name_map m ON m.name = s.player_name
+ORDER BY s.id;
+
+DROP TABLE player_sessions;
+DROP TABLE player_stats;
+DROP TABLE player_name_map;
+
+ALTER TABLE player_stats_new RENAME TO player_stats;
+ALTER TABLE player_sessions_new RENAME TO player_sessions;
+
+-- Same indexes as before (V3, V5, V8), keyed by player id
+CREATE INDEX IF NOT EXISTS idx_player_stats_joins ON player_stats(total_joins DESC, player_id);
+CREATE INDEX IF NOT EXISTS idx_player_stats_active_time ON player_stats(total_active_time DESC, player_id);
+CREATE INDEX IF NOT EXISTS idx_sessions_player ON player_sessions(player_id);
+CREATE INDEX IF NOT EXISTS idx_sessions_open ON player_sessions(quit_time) WHERE quit_time IS NULL;
@@ -0,0 +1,200 @@
+package com.vogulev.online_monitor;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AFKManagerTest {
+
+    private static final long START = 1_700_000_000_000L;
+    private static final long THRESHOLD = 60_000L;
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private final List<String> transitions = new ArrayList<>();
+    private long now;
+    private AFKManager afkManager;
+
+    @BeforeEach
+    void setUp() {
+        now = START;
+        afkManager = new AFKManager(1, 0, () -> now);
+        afkManager.setListener(new AFKManager.Listener() {
+            @Override
+            public void onEnterAfk(final String playerName, final long lastActivity) {
+                transitions.add("enter " + playerName + " " + (lastActivity - START));
+            }
+
+            @Override
+            public void onExitAfk(final String playerName, final long lastActivity, final long exitTime) {
+                transitions.add("exit " + playerName + " " + (lastActivity - START) + " " + (exitTime - START));
+            }
+        });
+    }
+
+    private void advanceTo(final long offset) {
+        now = START + offset;
+        afkManager.tick();
+    }
+
+    @Test
+    void playerBecomesAfkWhenThresholdPasses() {
+        afkManager.register(ALICE, "Alice");
+
+        advanceTo(THRESHOLD - 1_000);
+        assertFalse(afkManager.isAFK(ALICE));
+
+        advanceTo(THRESHOLD);
+        assertTrue(afkManager.isAFK(ALICE));
+        assertEquals(1, afkManager.getAFKCount());
+        assertEquals(List.of("enter Alice 0"), transitions);
+    }
+
+    @Test
+    void activityMovesTheDeadline() {
+        afkManager.register(ALICE, "Alice");
+        advanceTo(30_000);
+        afkManager.updateActivity(ALICE);
+
+        advanceTo(THRESHOLD + 1_000);
+        assertFalse(afkManager.isAFK(ALICE));
+
+        advanceTo(30_000 + THRESHOLD);
+        assertTrue(afkManager.isAFK(ALICE));
+        assertEquals(List.of("enter Alice 30000"), transitions);
+    }
+
+    @Test
+    void activityEndsAfkOnce() {
+        afkManager.register(ALICE, "Alice");
+        advanceTo(THRESHOLD);
+
+        now = START + THRESHOLD + 5_000;
+        afkManager.updateActivity(ALICE);
+        afkManager.updateActivity(ALICE);
+
+        assertFalse(afkManager.isAFK(ALICE));
+        assertEquals(0, afkManager.getAFKCount());
+        assertEquals(List.of("enter Alice 0", "exit Alice 0 65000"), transitions);
+
+        // Tracked again from the new activity
+        advanceTo(THRESHOLD + 5_000 + THRESHOLD);
+        assertTrue(afkManager.isAFK(ALICE));
+    }
+
+    @Test
+    void lateTickCatchesUp() {
+        afkManager.register(ALICE, "Alice");
+        now = START + 30_000;
+        afkManager.register(BOB, "Bob");
+
+        advanceTo(10 * THRESHOLD);
+
+        assertTrue(afkManager.isAFK(ALICE));
+        assertTrue(afkManager.isAFK(BOB));
+        assertEquals(2, afkManager.getAFKCount());
+    }
+
+    @Test
+    void removingAnAfkPlayerReportsTheExit() {
+        afkManager.register(ALICE, "Alice");
+        advanceTo(THRESHOLD);
+
+        afkManager.removePlayer(ALICE);
+
+        assertEquals(0, afkManager.getAFKCount());
+        assertEquals(List.of("enter Alice 0", "exit Alice 0 60000"), transitions);
+        advanceTo(3 * THRESHOLD);
+        assertEquals(2, transitions.size());
+    }
+
+    @Test
+    void activityOfUntrackedPlayersIsIgnored() {
+        afkManager.updateActivity(ALICE);
+        advanceTo(2 * THRESHOLD);
+
+        assertFalse(afkManager.isAFK(ALICE));
+        assertEquals(0, afkManager.getTimeSinceActivity(ALICE));
+        assertTrue(afkManager.getAFKPlayers().isEmpty());
+        assertTrue(transitions.isEmpty());
+    }
+
+    @Test
+    void freedSlotsAreReused() {
+        afkManager.register(ALICE, "Alice");
+        afkManager.removePlayer(ALICE);
+        afkManager.register(BOB, "Bob");
+
+        advanceTo(THRESHOLD);
+
+        assertFalse(afkManager.isAFK(ALICE));
+        assertTrue(afkManager.isAFK(BOB));
+        assertEquals(List.of("enter Bob 0"), transitions);
+    }
+
+    @Test
+    void activityWithinTheThrottleWindowIsNotRecorded() {
+        final AFKManager throttled = new AFKManager(1, 1_000, () -> now);
+        throttled.register(ALICE, "Alice");
+
+        now = START + 600;
+        throttled.updateActivity(ALICE);
+        assertEquals(600, throttled.getTimeSinceActivity(ALICE));
+
+        now = START + 1_200;
+        throttled.updateActivity(ALICE);
+        assertEquals(0, throttled.getTimeSinceActivity(ALICE));
+    }
+
+    @Test
+    void throttleIsCappedBelowTheThreshold() {
+        final AFKManager throttled = new AFKManager(1, 10 * THRESHOLD, () -> now);
+        throttled.register(ALICE, "Alice");
+
+        now = START + THRESHOLD / 2;
+        throttled.updateActivity(ALICE);
+
+        assertEquals(0, throttled.getTimeSinceActivity(ALICE));
+    }
+
+    @Test
+    void recordingActivityDoesNotAllocate() {
+        final com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final int calls = 1_000_000;
+        final AFKManager throttled = new AFKManager(1, 1_000, () -> now);
+        throttled.register(ALICE, "Alice");
+        // Warm up, so the measured calls run compiled code like a busy server does
+        recordActivity(throttled, calls);
+
+        final long before = threads.getThreadAllocatedBytes(threadId);
+        recordActivity(throttled, calls);
+        final long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+
+        // A single boxed value or lambda per call would be at least 16 bytes per call
+        assertTrue(allocated < calls, allocated + " bytes allocated by " + 2 * calls + " calls");
+    }
+
+    /**
+     * Throttled calls at a fixed time, then recorded calls one throttle interval apart
+     */
+    private void recordActivity(final AFKManager manager, final int calls) {
+        for (int i = 0; i < calls; i++) {
+            manager.updateActivity(ALICE);
+        }
+        for (int i = 0; i < calls; i++) {
+            now += 1_000;
+            manager.updateActivity(ALICE);
+        }
+        assertEquals(0, manager.getTimeSinceActivity(ALICE));
+    }
+}
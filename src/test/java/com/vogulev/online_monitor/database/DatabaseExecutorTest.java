@@ -0,0 +1,127 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.vogulev.online_monitor.database.DatabaseExecutor.RejectionPolicy;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class DatabaseExecutorTest
+{
+
+    private final CountDownLatch started = new CountDownLatch(1);
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private DatabaseExecutor executor;
+
+
+    @BeforeEach
+    void setUp() throws InterruptedException
+    {
+        // Room for one queued task, behind a task that holds the writer thread
+        executor = new DatabaseExecutor(1, RejectionPolicy.DISCARD_OLDEST);
+        executor.execute(() ->
+        {
+            started.countDown();
+            awaitRelease();
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+
+    @AfterEach
+    void tearDown()
+    {
+        release.countDown();
+        executor.shutdown(5000L);
+    }
+
+
+    @Test
+    void mergedFlushesWriteEveryAccumulatedValue()
+    {
+        final Accumulator uniquePlayers = new Accumulator();
+        for (int i = 0; i < 100; i++)
+        {
+            uniquePlayers.record();
+        }
+
+        release.countDown();
+        executor.shutdown(5000L);
+
+        assertEquals(100, uniquePlayers.written.get());
+        assertEquals(1, uniquePlayers.flushes.get());
+    }
+
+
+    @Test
+    void discardedFlushKeepsItsValueForTheNextOne()
+    {
+        final Accumulator uniquePlayers = new Accumulator();
+        final Accumulator snapshots = new Accumulator();
+
+        uniquePlayers.record();
+        // The queue is full: the queued unique-player flush is discarded for this one
+        snapshots.record();
+        uniquePlayers.record();
+
+        release.countDown();
+        executor.shutdown(5000L);
+
+        assertEquals(2, uniquePlayers.written.get());
+        assertEquals(0, snapshots.written.get());
+        assertEquals(1, snapshots.pending.get());
+        assertEquals(2, executor.getMetrics().rejected());
+    }
+
+
+    private void awaitRelease()
+    {
+        try
+        {
+            release.await(5, TimeUnit.SECONDS);
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+
+    /**
+     * In-memory count written by a merging flush, the way DatabaseManager keeps unique players and snapshots
+     */
+    private final class Accumulator
+    {
+        private final String key = "flush-" + System.identityHashCode(this);
+
+        private final AtomicInteger pending = new AtomicInteger();
+
+        private final AtomicInteger written = new AtomicInteger();
+
+        private final AtomicInteger flushes = new AtomicInteger();
+
+
+        private void record()
+        {
+            pending.incrementAndGet();
+            executor.executeMerging(key, this::flush);
+        }
+
+
+        private void flush()
+        {
+            written.addAndGet(pending.getAndSet(0));
+            flushes.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class LeaderboardTest
+{
+
+    private Leaderboard leaderboard;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        leaderboard = new Leaderboard();
+    }
+
+
+    @Test
+    void ranksByScoreThenPlayerId()
+    {
+        leaderboard.set(3, 50);
+        leaderboard.set(1, 100);
+        leaderboard.set(2, 50);
+
+        assertEquals(1, leaderboard.rank(1));
+        assertEquals(2, leaderboard.rank(2));
+        assertEquals(3, leaderboard.rank(3));
+        assertEquals(0, leaderboard.rank(4));
+        assertNull(leaderboard.entry(4));
+        assertEquals(new Leaderboard.Entry(2, 2, 50), leaderboard.entry(2));
+    }
+
+
+    @Test
+    void pageReturnsEntriesInRankOrder()
+    {
+        for (int playerId = 1; playerId <= 25; playerId++)
+        {
+            leaderboard.set(playerId, playerId * 10L);
+        }
+
+        final List<Leaderboard.Entry> page = leaderboard.page(10, 10);
+
+        assertEquals(10, page.size());
+        assertEquals(new Leaderboard.Entry(11, 15, 150), page.get(0));
+        assertEquals(new Leaderboard.Entry(20, 6, 60), page.get(9));
+        assertEquals(5, leaderboard.page(20, 10).size());
+        assertTrue(leaderboard.page(25, 10).isEmpty());
+        assertTrue(leaderboard.page(0, 0).isEmpty());
+    }
+
+
+    @Test
+    void updateMovesThePlayerWithoutDuplicating()
+    {
+        leaderboard.set(1, 100);
+        leaderboard.set(2, 200);
+        leaderboard.set(3, 300);
+
+        leaderboard.add(1, 250);
+
+        assertEquals(3, leaderboard.size());
+        assertEquals(350, leaderboard.score(1));
+        assertEquals(1, leaderboard.rank(1));
+        assertEquals(2, leaderboard.rank(3));
+        assertEquals(3, leaderboard.rank(2));
+
+        leaderboard.set(1, 0);
+
+        assertEquals(3, leaderboard.size());
+        assertEquals(3, leaderboard.rank(1));
+        assertEquals(List.of(3, 2, 1), playerIds(leaderboard.page(0, 10)));
+    }
+
+
+    @Test
+    void addStartsUnknownPlayersAtZero()
+    {
+        leaderboard.add(7, 5);
+        leaderboard.add(7, 5);
+
+        assertEquals(1, leaderboard.size());
+        assertEquals(10, leaderboard.score(7));
+        assertEquals(0, leaderboard.score(8));
+    }
+
+
+    @Test
+    void matchesASortedListUnderRandomUpdates()
+    {
+        final Random random = new Random(42);
+        final Map<Integer, Long> model = new HashMap<>();
+        for (int i = 0; i < 5_000; i++)
+        {
+            final int playerId = random.nextInt(300);
+            final long delta = random.nextInt(1_000) - 200;
+            leaderboard.add(playerId, delta);
+            model.merge(playerId, delta, Long::sum);
+        }
+
+        final List<Map.Entry<Integer, Long>> expected = new ArrayList<>(model.entrySet());
+        expected.sort(Comparator.comparing(Map.Entry<Integer, Long>::getValue).reversed()
+            .thenComparing(Map.Entry::getKey));
+
+        assertEquals(expected.size(), leaderboard.size());
+        final List<Leaderboard.Entry> all = leaderboard.page(0, expected.size());
+        for (int i = 0; i < expected.size(); i++)
+        {
+            final Map.Entry<Integer, Long> entry = expected.get(i);
+            assertEquals(new Leaderboard.Entry(i + 1, entry.getKey(), entry.getValue()), all.get(i));
+            assertEquals(i + 1, leaderboard.rank(entry.getKey()));
+        }
+    }
+
+
+    private static List<Integer> playerIds(final List<Leaderboard.Entry> entries)
+    {
+        return entries.stream().map(Leaderboard.Entry::playerId).toList();
+    }
+}
@@ -0,0 +1,146 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.configuration.FluentConfiguration;
+import org.flywaydb.core.api.output.MigrateResult;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Runs the bundled migrations on a fresh SQLite database and checks the resulting schema and data:
+ * the whole chain, the V9 move of name-keyed history to player ids and the V11 daily buckets
+ */
+class MigrationTest
+{
+
+    private static final String ALICE_UUID = "11111111-1111-1111-1111-111111111111";
+
+    @TempDir
+    Path tempDir;
+
+
+    @Test
+    void migratesFromEmptyDatabaseToLatest() throws SQLException
+    {
+        final String url = "jdbc:sqlite:" + tempDir.resolve("empty.db");
+
+        final MigrateResult result = flyway(url, null).migrate();
+
+        assertEquals(11, result.migrationsExecuted);
+        assertEquals("11", result.targetSchemaVersion);
+        final List<String> tables = query(url, "SELECT name FROM sqlite_master WHERE type = 'table' ORDER BY name");
+        for (final String table : List.of("online_daily", "online_hourly", "online_snapshots", "player_daily_stats",
+            "player_sessions", "player_stats", "players", "server_counters", "server_stats"))
+        {
+            assertTrue(tables.contains(table), "missing table " + table);
+        }
+        assertEquals(List.of("0"), query(url, "SELECT value FROM server_counters WHERE name = 'active_sessions'"));
+    }
+
+
+    @Test
+    void v9CarriesNameKeyedHistoryIntoPlayerIds() throws SQLException
+    {
+        final String url = "jdbc:sqlite:" + tempDir.resolve("history.db");
+        assertEquals(8, flyway(url, "8").migrate().migrationsExecuted);
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement())
+        {
+            stmt.executeUpdate("INSERT INTO player_stats (player_name, total_joins, total_playtime, first_join, " +
+                "last_join, deaths) VALUES ('Alice', 2, 5000, 1000, 2000, 1)");
+            // Same player under an earlier name
+            stmt.executeUpdate("INSERT INTO player_stats (player_name, total_joins, total_playtime, first_join, " +
+                "last_join, deaths) VALUES ('AliceOld', 1, 700, 500, 500, 2)");
+            // Recorded before UUIDs were stored
+            stmt.executeUpdate("INSERT INTO player_stats (player_name, total_joins, total_playtime, first_join, " +
+                "last_join) VALUES ('Legacy', 3, 900, 100, 300)");
+            stmt.executeUpdate("INSERT INTO player_sessions (player_name, player_uuid, join_time, quit_time, " +
+                "session_duration) VALUES ('AliceOld', '" + ALICE_UUID + "', 500, 1200, 700)");
+            stmt.executeUpdate("INSERT INTO player_sessions (player_name, player_uuid, join_time, quit_time, " +
+                "session_duration) VALUES ('Alice', '" + ALICE_UUID + "', 1000, 3000, 2000)");
+            stmt.executeUpdate("INSERT INTO player_sessions (player_name, player_uuid, join_time, quit_time, " +
+                "session_duration) VALUES ('Legacy', NULL, 100, 400, 300)");
+        }
+
+        final MigrateResult result = flyway(url, "9").migrate();
+
+        assertEquals(1, result.migrationsExecuted);
+        assertEquals(List.of("1|" + ALICE_UUID + "|Alice", "2|null|Legacy"),
+            query(url, "SELECT id || '|' || COALESCE(uuid, 'null') || '|' || name FROM players ORDER BY id"));
+        assertEquals(List.of("1|3|5700|500|2000|3", "2|3|900|100|300|0"),
+            query(url, "SELECT player_id || '|' || total_joins || '|' || total_playtime || '|' || first_join || " +
+                "'|' || last_join || '|' || deaths FROM player_stats ORDER BY player_id"));
+        assertEquals(List.of("1|1", "2|1", "3|2"),
+            query(url, "SELECT id || '|' || player_id FROM player_sessions ORDER BY id"));
+    }
+
+
+    @Test
+    void v11AddsEmptyDailyBucketsKeyedByDayAndPlayer() throws SQLException
+    {
+        final String url = "jdbc:sqlite:" + tempDir.resolve("daily.db");
+        assertEquals(10, flyway(url, "10").migrate().migrationsExecuted);
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement())
+        {
+            stmt.executeUpdate("INSERT INTO players (id, uuid, name) VALUES (1, '" + ALICE_UUID + "', 'Alice')");
+            stmt.executeUpdate("INSERT INTO player_sessions (player_id, join_time, quit_time, session_duration) " +
+                "VALUES (1, 1000, 3000, 2000)");
+        }
+
+        final MigrateResult result = flyway(url, null).migrate();
+
+        assertEquals(1, result.migrationsExecuted);
+        assertEquals("11", result.targetSchemaVersion);
+        // Backfill depends on the configured timezone and is left to the plugin
+        assertEquals(List.of("0"), query(url, "SELECT COUNT(*) FROM player_daily_stats"));
+        assertEquals(List.of("day|1", "player_id|2"),
+            query(url, "SELECT name || '|' || pk FROM pragma_table_info('player_daily_stats') WHERE pk > 0 ORDER BY pk"));
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement())
+        {
+            stmt.executeUpdate("INSERT INTO player_daily_stats (day, player_id) VALUES ('2024-01-01', 1)");
+        }
+        assertEquals(List.of("0|0|0|0|0|0|0|0|0"),
+            query(url, "SELECT joins || '|' || playtime || '|' || active_time || '|' || deaths || '|' || mob_kills || '|' || " +
+                "player_kills || '|' || blocks_broken || '|' || blocks_placed || '|' || messages_sent " +
+                "FROM player_daily_stats"));
+    }
+
+
+    private static Flyway flyway(final String url, final String target)
+    {
+        final FluentConfiguration configuration = Flyway.configure(MigrationTest.class.getClassLoader()).dataSource(url, null, null);
+        return (target != null ? configuration.target(target) : configuration).load();
+    }
+
+
+    private static List<String> query(final String url, final String sql) throws SQLException
+    {
+        final List<String> rows = new ArrayList<>();
+        try (Connection conn = DriverManager.getConnection(url);
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql))
+        {
+            while (rs.next())
+            {
+                rows.add(rs.getString(1));
+            }
+        }
+        return rows;
+    }
+}
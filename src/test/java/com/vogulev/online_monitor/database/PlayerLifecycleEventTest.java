@@ -0,0 +1,119 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.vogulev.online_monitor.database.PlayerLifecycleEvent.DayPlaytime;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class PlayerLifecycleEventTest
+{
+
+    private static final UUID PLAYER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private static final ZoneId MOSCOW = ZoneId.of("Europe/Moscow");
+
+    private static final ZoneId BERLIN = ZoneId.of("Europe/Berlin");
+
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+
+    @Test
+    void sessionWithinOneDayIsNotSplit()
+    {
+        final PlayerLifecycleEvent.Quit quit = quit(MOSCOW, "2024-05-10T12:00", 2 * HOUR, 30 * MINUTE);
+
+        assertEquals(List.of(new DayPlaytime(LocalDate.parse("2024-05-10"), 2 * HOUR, 90 * MINUTE)),
+            quit.playtimeByDay(MOSCOW));
+    }
+
+
+    @Test
+    void sessionOverMidnightIsSplitInProportion()
+    {
+        // 23:30 - 00:30, 20 minutes AFK
+        final PlayerLifecycleEvent.Quit quit = quit(MOSCOW, "2024-05-11T00:30", HOUR, 20 * MINUTE);
+
+        assertEquals(List.of(
+            new DayPlaytime(LocalDate.parse("2024-05-10"), 30 * MINUTE, 20 * MINUTE),
+            new DayPlaytime(LocalDate.parse("2024-05-11"), 30 * MINUTE, 20 * MINUTE)), quit.playtimeByDay(MOSCOW));
+    }
+
+
+    @Test
+    void longSessionCoversEveryDay()
+    {
+        // 22:00 on the 10th - 02:00 on the 13th
+        final PlayerLifecycleEvent.Quit quit = quit(MOSCOW, "2024-05-13T02:00", 52 * HOUR, 0);
+
+        final List<DayPlaytime> days = quit.playtimeByDay(MOSCOW);
+
+        assertEquals(4, days.size());
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-05-10"), 2 * HOUR, 2 * HOUR), days.get(0));
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-05-11"), 24 * HOUR, 24 * HOUR), days.get(1));
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-05-12"), 24 * HOUR, 24 * HOUR), days.get(2));
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-05-13"), 2 * HOUR, 2 * HOUR), days.get(3));
+    }
+
+
+    @Test
+    void daylightSavingDayHasItsLocalLength()
+    {
+        // Clocks go forward on 2024-03-31 in Berlin, that day has 23 hours
+        final PlayerLifecycleEvent.Quit quit = quit(BERLIN, "2024-04-01T01:00", 26 * HOUR, 0);
+
+        final List<DayPlaytime> days = quit.playtimeByDay(BERLIN);
+
+        assertEquals(3, days.size());
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-03-30"), 2 * HOUR, 2 * HOUR), days.get(0));
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-03-31"), 23 * HOUR, 23 * HOUR), days.get(1));
+        assertEquals(new DayPlaytime(LocalDate.parse("2024-04-01"), HOUR, HOUR), days.get(2));
+    }
+
+
+    @Test
+    void activeTimeAddsUpDespiteRounding()
+    {
+        // 3 ms before midnight and 4 ms after, 5 ms active
+        final PlayerLifecycleEvent.Quit quit = quit(MOSCOW, "2024-05-11T00:00", 7, 2, 4);
+
+        final List<DayPlaytime> days = quit.playtimeByDay(MOSCOW);
+
+        assertEquals(2, days.size());
+        assertEquals(7, days.stream().mapToLong(DayPlaytime::playtime).sum());
+        assertEquals(5, days.stream().mapToLong(DayPlaytime::activeTime).sum());
+    }
+
+
+    @Test
+    void emptySessionHasNoDays()
+    {
+        assertTrue(quit(MOSCOW, "2024-05-10T12:00", 0, 0).playtimeByDay(MOSCOW).isEmpty());
+    }
+
+
+    private static PlayerLifecycleEvent.Quit quit(final ZoneId zone, final String localEnd, final long duration,
+        final long afk)
+    {
+        return quit(zone, localEnd, duration, afk, 0);
+    }
+
+
+    private static PlayerLifecycleEvent.Quit quit(final ZoneId zone, final String localEnd, final long duration,
+        final long afk, final long extraMillis)
+    {
+        final long end = LocalDateTime.parse(localEnd).atZone(zone).toInstant().toEpochMilli() + extraMillis;
+        return new PlayerLifecycleEvent.Quit(PLAYER, "Alice", duration, afk, end);
+    }
+}
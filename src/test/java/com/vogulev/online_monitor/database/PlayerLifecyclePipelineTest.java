@@ -0,0 +1,227 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.vogulev.online_monitor.database.DatabaseExecutor.RejectionPolicy;
+import com.vogulev.online_monitor.database.repositories.PlayerDailyStatsRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerRepository;
+import com.vogulev.online_monitor.database.repositories.PlayerStatsRepository;
+import com.vogulev.online_monitor.database.repositories.ServerCountersRepository;
+import com.vogulev.online_monitor.database.repositories.SessionRepository;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+/**
+ * Writes player joins and quits through the pipeline into a migrated SQLite database
+ */
+class PlayerLifecyclePipelineTest
+{
+
+    private static final int PLAYERS = 1000;
+
+    @TempDir
+    Path tempDir;
+
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private ConnectionManager connectionManager;
+
+    private DatabaseExecutor executor;
+
+    private PlayerLifecyclePipeline pipeline;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        final YamlConfiguration config = new YamlConfiguration();
+        // Fail at once on a lock held by another connection instead of waiting for it
+        config.set("database.sqlite.busy-timeout-ms", 0);
+        connectionManager = new ConnectionManager();
+        connectionManager.connect(config, tempDir.toFile());
+
+        final PlayerRepository playerRepo = new PlayerRepository(connectionManager);
+        final PlayerDailyStatsRepository dailyStatsRepo = new PlayerDailyStatsRepository(connectionManager);
+        final ServerCountersRepository countersRepo = new ServerCountersRepository(connectionManager);
+        countersRepo.load();
+        executor = new DatabaseExecutor(10000, RejectionPolicy.BLOCK);
+        pipeline = new PlayerLifecyclePipeline(connectionManager, executor, playerRepo,
+            new PlayerStatsRepository(connectionManager, playerRepo, dailyStatsRepo), dailyStatsRepo,
+            new SessionRepository(connectionManager), countersRepo, new LeaderboardEngine(),
+            new PlayerProfileCache(PLAYERS * 2, 300));
+    }
+
+
+    @AfterEach
+    void tearDown()
+    {
+        release.countDown();
+        executor.shutdown(5000L);
+        connectionManager.disconnect();
+    }
+
+
+    @Test
+    void busyDatabaseIsRetriedWhileTheWriterRunsOtherTasks() throws Exception
+    {
+        final CountDownLatch otherTaskRan = new CountDownLatch(1);
+        try (Connection lock = DriverManager.getConnection(url());
+             Statement stmt = lock.createStatement())
+        {
+            stmt.execute("BEGIN EXCLUSIVE");
+            pipeline.enqueue(join(1));
+            executor.execute(otherTaskRan::countDown);
+
+            assertTrue(otherTaskRan.await(5, TimeUnit.SECONDS));
+            // Several retries fail on the lock before it is released
+            Thread.sleep(500);
+            assertEquals(0, count("SELECT COUNT(*) FROM player_sessions"));
+            stmt.execute("COMMIT");
+        }
+
+        awaitCount("SELECT COUNT(*) FROM player_sessions", 1);
+    }
+
+
+    @Test
+    void failingEventIsDroppedAloneFromItsBatch() throws Exception
+    {
+        blockWriter();
+        for (int i = 1; i <= 10; i++)
+        {
+            pipeline.enqueue(join(i));
+        }
+        // players.name is NOT NULL
+        pipeline.enqueue(new PlayerLifecycleEvent.Join(player(11), null, System.currentTimeMillis()));
+        for (int i = 12; i <= 21; i++)
+        {
+            pipeline.enqueue(join(i));
+        }
+        release.countDown();
+
+        awaitCount("SELECT COUNT(*) FROM player_sessions", 20);
+        assertEquals(20, count("SELECT COUNT(*) FROM players"));
+        assertEquals(20, count("SELECT SUM(total_joins) FROM player_stats"));
+    }
+
+
+    /**
+     * Compares batched transactions with one transaction per event on the same kind of workload:
+     * a join and a quit of every player
+     */
+    @Test
+    void batchedFlushWritesFasterThanOneTransactionPerEvent() throws Exception
+    {
+        blockWriter();
+
+        final long perEventStart = System.nanoTime();
+        for (int i = 0; i < PLAYERS; i++)
+        {
+            pipeline.enqueue(join(i));
+            pipeline.flush();
+            pipeline.enqueue(quit(i));
+            pipeline.flush();
+        }
+        final long perEventNanos = System.nanoTime() - perEventStart;
+
+        for (int i = PLAYERS; i < 2 * PLAYERS; i++)
+        {
+            pipeline.enqueue(join(i));
+            pipeline.enqueue(quit(i));
+        }
+        final long batchedStart = System.nanoTime();
+        pipeline.flush();
+        final long batchedNanos = System.nanoTime() - batchedStart;
+
+        assertEquals(2 * PLAYERS, count("SELECT COUNT(*) FROM player_sessions WHERE quit_time IS NOT NULL"));
+        final double speedup = (double) perEventNanos / batchedNanos;
+        System.out.printf("%d events: %d ms with one transaction per event, %d ms batched (%.1fx, %.0f events/s)%n",
+            2 * PLAYERS, perEventNanos / 1_000_000, batchedNanos / 1_000_000, speedup,
+            2 * PLAYERS / (batchedNanos / 1e9));
+        assertTrue(speedup >= 5, "batched flush only " + speedup + "x faster");
+    }
+
+
+    /**
+     * Holds the writer thread, so queued events wait for an explicit flush or for {@link #release}
+     */
+    private void blockWriter() throws InterruptedException
+    {
+        final CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() ->
+        {
+            started.countDown();
+            try
+            {
+                release.await(30, TimeUnit.SECONDS);
+            }
+            catch (final InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+    }
+
+
+    private static UUID player(final int index)
+    {
+        return new UUID(0, index);
+    }
+
+
+    private static PlayerLifecycleEvent.Join join(final int index)
+    {
+        return new PlayerLifecycleEvent.Join(player(index), "Player" + index, System.currentTimeMillis());
+    }
+
+
+    private static PlayerLifecycleEvent.Quit quit(final int index)
+    {
+        return new PlayerLifecycleEvent.Quit(player(index), "Player" + index, 60000, 0, System.currentTimeMillis());
+    }
+
+
+    private String url()
+    {
+        return "jdbc:sqlite:" + tempDir.resolve("statistics.db");
+    }
+
+
+    private long count(final String sql) throws SQLException
+    {
+        try (Connection conn = connectionManager.getReadConnection();
+             Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery(sql))
+        {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+
+    private void awaitCount(final String sql, final long expected) throws Exception
+    {
+        final long deadline = System.currentTimeMillis() + 10000;
+        while (count(sql) != expected && System.currentTimeMillis() < deadline)
+        {
+            Thread.sleep(20);
+        }
+        assertEquals(expected, count(sql));
+    }
+}
@@ -0,0 +1,100 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.util.Map;
+import java.util.UUID;
+
+import com.vogulev.online_monitor.database.PlayerStatsDelta.Counter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+
+class PlayerStatsBufferTest
+{
+
+    private static final UUID ALICE = UUID.fromString("00000000-0000-0000-0000-000000000001");
+
+    private static final UUID BOB = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    private PlayerStatsBuffer buffer;
+
+
+    @BeforeEach
+    void setUp()
+    {
+        buffer = new PlayerStatsBuffer();
+    }
+
+
+    @Test
+    void drainTakesAllPendingDeltas()
+    {
+        buffer.increment(ALICE, "Alice", Counter.DEATHS);
+        buffer.add(ALICE, "Alice", Counter.BLOCKS_BROKEN, 5);
+        buffer.increment(BOB, "Bob", Counter.MESSAGES_SENT);
+
+        final Map<UUID, PlayerStatsDelta> drained = buffer.drain();
+
+        assertEquals(2, drained.size());
+        assertEquals(1, drained.get(ALICE).get(Counter.DEATHS));
+        assertEquals(5, drained.get(ALICE).get(Counter.BLOCKS_BROKEN));
+        assertEquals(1, drained.get(BOB).get(Counter.MESSAGES_SENT));
+        assertEquals(0, buffer.size());
+        assertTrue(buffer.drain().isEmpty());
+    }
+
+
+    @Test
+    void drainedDeltasStayVisibleUntilComplete()
+    {
+        buffer.add(ALICE, "Alice", Counter.MOB_KILLS, 3);
+        final Map<UUID, PlayerStatsDelta> drained = buffer.drain();
+        buffer.add(ALICE, "Alice", Counter.MOB_KILLS, 2);
+
+        assertEquals(5, buffer.getPending(ALICE, Counter.MOB_KILLS));
+
+        buffer.complete(drained);
+
+        assertEquals(2, buffer.getPending(ALICE, Counter.MOB_KILLS));
+    }
+
+
+    @Test
+    void restoreMergesIntoNewerDeltas()
+    {
+        buffer.add(ALICE, "Alice", Counter.BLOCKS_PLACED, 4);
+        buffer.touch(ALICE, "Alice", 1_000);
+        final Map<UUID, PlayerStatsDelta> drained = buffer.drain();
+        buffer.add(ALICE, "Alice", Counter.BLOCKS_PLACED, 1);
+        buffer.touch(ALICE, "Alice", 500);
+
+        buffer.restore(drained);
+
+        assertEquals(5, buffer.getPending(ALICE, Counter.BLOCKS_PLACED));
+        final Map<UUID, PlayerStatsDelta> retried = buffer.drain();
+        assertEquals(5, retried.get(ALICE).get(Counter.BLOCKS_PLACED));
+        assertEquals(1_000, retried.get(ALICE).getLastActivity());
+    }
+
+
+    @Test
+    void emptyDeltasAreNotDrained()
+    {
+        buffer.add(ALICE, "Alice", Counter.DEATHS, 0);
+
+        assertTrue(buffer.drain().isEmpty());
+    }
+
+
+    @Test
+    void latestNameIsKept()
+    {
+        buffer.increment(ALICE, "Alice", Counter.DEATHS);
+        buffer.increment(ALICE, "Alice2", Counter.DEATHS);
+
+        assertEquals("Alice2", buffer.drain().get(ALICE).getPlayerName());
+    }
+}
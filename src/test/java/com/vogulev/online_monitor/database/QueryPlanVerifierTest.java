@@ -0,0 +1,55 @@
+package com.vogulev.online_monitor.database;
+
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+
+/**
+ * Explains the frequent statements on a SQLite database migrated with the bundled migrations
+ */
+class QueryPlanVerifierTest
+{
+
+    @TempDir
+    Path tempDir;
+
+
+    @Test
+    void migratedDatabaseUsesIndexesForEveryStatement() throws SQLException
+    {
+        final String url = "jdbc:sqlite:" + tempDir.resolve("migrated.db");
+        Flyway.configure(QueryPlanVerifierTest.class.getClassLoader()).dataSource(url, null, null).load().migrate();
+
+        try (Connection conn = DriverManager.getConnection(url))
+        {
+            assertEquals(List.of(), new QueryPlanVerifier(conn).verify(true));
+        }
+    }
+
+
+    @Test
+    void statementsThatCannotBeExplainedFailOnSqlite() throws SQLException
+    {
+        final String url = "jdbc:sqlite:" + tempDir.resolve("empty.db");
+
+        try (Connection conn = DriverManager.getConnection(url))
+        {
+            final QueryPlanVerifier verifier = new QueryPlanVerifier(conn);
+
+            assertFalse(verifier.verify(false).isEmpty());
+            assertThrows(IllegalStateException.class, () -> verifier.verify(true));
+        }
+    }
+}
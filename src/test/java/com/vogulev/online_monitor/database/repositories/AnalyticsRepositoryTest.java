@@ -0,0 +1,82 @@
+package com.vogulev.online_monitor.database.repositories;
+
+import com.vogulev.online_monitor.database.ConnectionManager;
+import com.vogulev.online_monitor.database.repositories.AnalyticsRepository.OnlineSample;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hour-of-day statistics in a zone with a half-hour offset, on a migrated SQLite database
+ */
+class AnalyticsRepositoryTest {
+
+    private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+
+    @TempDir
+    Path tempDir;
+
+    private ConnectionManager connectionManager;
+    private AnalyticsRepository analyticsRepo;
+    // Start of a UTC hour of yesterday: 05:30-06:30 in Asia/Kolkata (+05:30)
+    private long utcMidnight;
+
+    @BeforeEach
+    void setUp() {
+        connectionManager = new ConnectionManager();
+        connectionManager.connect(new YamlConfiguration(), tempDir.toFile());
+        connectionManager.setZone(ZoneId.of("Asia/Kolkata"));
+        analyticsRepo = new AnalyticsRepository(connectionManager);
+
+        final long day = TimeUnit.DAYS.toMillis(1);
+        utcMidnight = Math.floorDiv(System.currentTimeMillis(), day) * day - day;
+        // Both in the UTC hour 00:00, but in the local hours 05:00 and 06:00
+        assertTrue(analyticsRepo.recordOnlineSnapshots(List.of(
+                new OnlineSample(10, utcMidnight + 10 * MINUTE),
+                new OnlineSample(20, utcMidnight + 40 * MINUTE))));
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionManager.disconnect();
+    }
+
+    @Test
+    void hoursCoveredBySnapshotsUseTheLocalHourOfEachSnapshot() {
+        assertEquals(Map.of(5, 10.0, 6, 20.0), analyticsRepo.getHourlyAverages(7));
+
+        final Map<String, Integer> expectedPeaks = new LinkedHashMap<>();
+        expectedPeaks.put("06:00", 20);
+        expectedPeaks.put("05:00", 10);
+        assertEquals(expectedPeaks, analyticsRepo.getPeakHours(7));
+    }
+
+    @Test
+    void hoursWithoutSnapshotsFallBackToTheirRollup() throws SQLException {
+        // A later hour keeps its snapshots, the first one has lost them to retention
+        assertTrue(analyticsRepo.recordOnlineSnapshots(List.of(new OnlineSample(30, utcMidnight + HOUR + 40 * MINUTE))));
+        try (Connection conn = connectionManager.getConnection();
+             Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM online_snapshots WHERE timestamp < " + (utcMidnight + HOUR));
+        }
+
+        // The rollup of 00:00 UTC starts at 05:30 local; the snapshot at 01:40 UTC is 07:10 local
+        assertEquals(Map.of(5, 15.0, 7, 30.0), analyticsRepo.getHourlyAverages(7));
+    }
+}